@@ -22,6 +22,7 @@ testOutputDirectoryRoot => Root directory where tests may write data while runni
 
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.1"
 }
 
 // Was returning "unspecified" rather than null, leading to elvis operator below
@@ -248,6 +249,13 @@ tasks.register<Copy>("copyJarsToExampleDir") {
     }
 }
 
+// Microbenchmarks live in src/jmh/java and are run with "./gradlew jmh".  The gc profiler reports
+// allocations per operation (gc.alloc.rate.norm) alongside timings.
+jmh {
+    profilers.add("gc")
+    includes.addAll(findProperty("jmhIncludes")?.toString()?.split(",") ?: listOf())
+}
+
 // Ensure that tests are ran by JUnit and that test environment gets configured
 tasks.test {
     dependsOn(tasks.findByName("copyJarsToEngine"))
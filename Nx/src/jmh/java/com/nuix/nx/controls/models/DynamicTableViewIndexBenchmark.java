@@ -0,0 +1,148 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.controls.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/***
+ * Compares resolving displayed rows of a 1M record {@link DynamicTableModel} through the previous
+ * HashMap&lt;Integer,Integer&gt; filter map against {@link DynamicTableViewIndex}.  A filter keeping every other
+ * record is applied so neither mapping is the identity.  "scroll" resolves a screen of rows at a random position,
+ * "paint" additionally fetches every cell of those rows and "build" constructs the mapping after filtering.
+ * Run with the gc profiler (configured in build.gradle.kts) to also compare allocation.
+ * @author Jason Wells
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamicTableViewIndexBenchmark {
+	private static final int RECORD_COUNT = 1000000;
+	private static final int VISIBLE_ROWS = 50;
+	private static final int COLUMN_COUNT = 3;
+
+	private List<Object> records;
+	private DynamicTableValueCallback callback = (record, column, setValue, value) -> ((String[])record)[column];
+	private DynamicTableModel model;
+	private Map<Integer,Integer> filterMap;
+	private DynamicTableViewIndex viewIndex;
+	private int rowCount;
+	private int[] scrollPositions = new int[1024];
+	private int next;
+
+	@Setup
+	public void setup(){
+		records = new ArrayList<Object>(RECORD_COUNT);
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			records.add(new String[]{"Record "+i, (i % 2 == 0) ? "even" : "odd", Integer.toString(i)});
+		}
+		model = new DynamicTableModel(Arrays.asList("Name", "Parity", "Number"), records, callback, false);
+		model.setFilter("even");
+
+		filterMap = buildFilterMap();
+		viewIndex = buildViewIndex();
+		rowCount = viewIndex.size();
+
+		Random random = new Random(0);
+		for (int i = 0; i < scrollPositions.length; i++) {
+			scrollPositions[i] = random.nextInt(rowCount - VISIBLE_ROWS);
+		}
+	}
+
+	private int nextPosition(){
+		next = (next + 1) & (scrollPositions.length - 1);
+		return scrollPositions[next];
+	}
+
+	private static boolean keep(int recordIndex){
+		return recordIndex % 2 == 0;
+	}
+
+	@Benchmark
+	public Map<Integer,Integer> buildFilterMap(){
+		Map<Integer,Integer> map = new HashMap<Integer,Integer>();
+		int filterIndex = 0;
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			if(keep(i)){
+				map.put(filterIndex, i);
+				filterIndex++;
+			}
+		}
+		return map;
+	}
+
+	@Benchmark
+	public DynamicTableViewIndex buildViewIndex(){
+		// Built the way DynamicTableModel builds its view after filtering
+		int[] keptRecordIndices = new int[RECORD_COUNT];
+		int filterIndex = 0;
+		for (int i = 0; i < RECORD_COUNT; i++) {
+			if(keep(i)){
+				keptRecordIndices[filterIndex] = i;
+				filterIndex++;
+			}
+		}
+		return DynamicTableViewIndex.of(keptRecordIndices, filterIndex);
+	}
+
+	@Benchmark
+	public void scrollFilterMap(Blackhole blackhole){
+		int first = nextPosition();
+		for (int row = first; row < first + VISIBLE_ROWS; row++) {
+			blackhole.consume(filterMap.get(row).intValue());
+		}
+	}
+
+	@Benchmark
+	public void scrollViewIndex(Blackhole blackhole){
+		int first = nextPosition();
+		for (int row = first; row < first + VISIBLE_ROWS; row++) {
+			blackhole.consume(viewIndex.getRecordIndex(row));
+		}
+	}
+
+	@Benchmark
+	public void paintFilterMap(Blackhole blackhole){
+		int first = nextPosition();
+		for (int row = first; row < first + VISIBLE_ROWS; row++) {
+			for (int column = 0; column < COLUMN_COUNT; column++) {
+				Object record = records.get(filterMap.get(row));
+				blackhole.consume(callback.interact(record, column, false, null));
+			}
+		}
+	}
+
+	@Benchmark
+	public void paintModel(Blackhole blackhole){
+		int first = nextPosition();
+		for (int row = first; row < first + VISIBLE_ROWS; row++) {
+			for (int column = 1; column <= COLUMN_COUNT; column++) {
+				blackhole.consume(model.getValueAt(row, column));
+			}
+		}
+	}
+}
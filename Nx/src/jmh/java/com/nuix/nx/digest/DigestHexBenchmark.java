@@ -0,0 +1,92 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/***
+ * Compares hexadecimal MD5 parsing and formatting through DatatypeConverter against {@link DigestHex}.
+ * Run with the gc profiler (configured in build.gradle.kts) to see gc.alloc.rate.norm, the bytes allocated
+ * per call, for each approach.
+ * @author Jason Wells
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestHexBenchmark {
+	private static final int DIGEST_COUNT = 4096;
+
+	private String[] hexDigests = new String[DIGEST_COUNT];
+	private long[] digests = new long[DIGEST_COUNT * 2];
+	private char[] formatBuffer = new char[32];
+	private DigestHelper helper = new DigestHelper();
+	private int next;
+
+	@Setup
+	public void setup(){
+		Random random = new Random(0);
+		byte[] md5 = new byte[16];
+		for (int i = 0; i < DIGEST_COUNT; i++) {
+			random.nextBytes(md5);
+			hexDigests[i] = DatatypeConverter.printHexBinary(md5);
+			digests[i * 2] = DigestSet.readLong(md5, 0);
+			digests[i * 2 + 1] = DigestSet.readLong(md5, 8);
+			// Only every other digest is present so lookups see both hits and misses
+			if(i % 2 == 0){
+				helper.getDigestSet().add(md5);
+			}
+		}
+	}
+
+	private int nextIndex(){
+		next = (next + 1) & (DIGEST_COUNT - 1);
+		return next;
+	}
+
+	@Benchmark
+	public boolean containsViaDatatypeConverter(){
+		return helper.getDigestSet().contains(DatatypeConverter.parseHexBinary(hexDigests[nextIndex()]));
+	}
+
+	@Benchmark
+	public boolean containsViaDigestHex(){
+		return helper.currentlyContains(hexDigests[nextIndex()]);
+	}
+
+	@Benchmark
+	public String formatViaDatatypeConverter(){
+		int index = nextIndex();
+		byte[] md5 = new byte[16];
+		DigestSet.writeLong(digests[index * 2], md5, 0);
+		DigestSet.writeLong(digests[index * 2 + 1], md5, 8);
+		return DatatypeConverter.printHexBinary(md5);
+	}
+
+	@Benchmark
+	public char[] formatViaDigestHex(){
+		int index = nextIndex();
+		DigestHex.format(digests, index * 2, DigestAlgorithm.MD5, formatBuffer, 0);
+		return formatBuffer;
+	}
+}
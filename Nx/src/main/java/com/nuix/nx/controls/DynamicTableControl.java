@@ -19,6 +19,7 @@ import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextField;
@@ -47,6 +48,8 @@ import org.jetbrains.annotations.NotNull;
  */
 @SuppressWarnings("serial")
 public class DynamicTableControl extends JPanel {
+	// Filtering which takes longer than this shows a progress bar until it completes
+	private static final int FILTER_PROGRESS_DELAY_MILLIS = 300;
 
 	private JXTable dataTable;
 	private DynamicTableModel tableModel;
@@ -66,6 +69,9 @@ public class DynamicTableControl extends JPanel {
 	private JSeparator separator_1;
 	private JLabel lblFilter;
 	private Timer filterUpdateTimer;
+	private Timer filterProgressTimer;
+	private JProgressBar filterProgressBar;
+	private long filterStartedMillis;
 	private JSeparator separator_2;
 	private JButton btnAddRecord;
 	private Supplier<Object> addRecordCallback = null;
@@ -80,7 +86,10 @@ public class DynamicTableControl extends JPanel {
 				try {
 					// Possible for this to fire before were properly ready so we check for nulls
 					if(tableModel != null && txtFilter != null) {
-						tableModel.setFilter(txtFilter.getText());
+						// Filtered in the background so typing stays responsive on large tables
+						tableModel.setFilterAsync(txtFilter.getText(), null);
+						filterStartedMillis = System.currentTimeMillis();
+						filterProgressTimer.restart();
 					}
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -88,6 +97,23 @@ public class DynamicTableControl extends JPanel {
 			}
 		});
 		filterUpdateTimer.setRepeats(false);
+		
+		filterProgressTimer = new Timer(100, new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if(!tableModel.isFiltering()) {
+					filterProgressBar.setVisible(false);
+					filterProgressTimer.stop();
+				} else if(System.currentTimeMillis() - filterStartedMillis >= FILTER_PROGRESS_DELAY_MILLIS) {
+					filterProgressBar.setValue((int)(tableModel.getFilterProgress() * 100));
+					filterProgressBar.setVisible(true);
+				}
+			}
+		});
+		filterProgressBar = new JProgressBar(0, 100);
+		filterProgressBar.setString("Filtering...");
+		filterProgressBar.setStringPainted(true);
+		filterProgressBar.setVisible(false);
 		filterUpdateTimer.start();
 		
 		lblLblcounts = new JLabel("Checked: 0 Visible: 0 Total: 0");
@@ -315,6 +341,11 @@ public class DynamicTableControl extends JPanel {
 					gbc_lblLblcounts.gridy = showFilterControls ? 2 : 1;
 					add(lblLblcounts, gbc_lblLblcounts);
 				}
+				GridBagConstraints gbc_filterProgressBar = new GridBagConstraints();
+				gbc_filterProgressBar.anchor = GridBagConstraints.EAST;
+				gbc_filterProgressBar.gridx = 2;
+				gbc_filterProgressBar.gridy = showFilterControls ? 2 : 1;
+				add(filterProgressBar, gbc_filterProgressBar);
 				TableColumn checkColumn = dataTable.getColumnModel().getColumn(0);
 				checkColumn.setMinWidth(25);
 				checkColumn.setMaxWidth(25);
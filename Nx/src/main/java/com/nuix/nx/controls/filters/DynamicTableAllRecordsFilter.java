@@ -15,4 +15,12 @@ public class DynamicTableAllRecordsFilter extends DynamicTableFilterProvider {
 		return true;
 	}
 
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true, it holds no state between calls.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -23,4 +23,12 @@ public class DynamicTableCheckedRecordsFilter extends DynamicTableFilterProvider
 		return isChecked == true;
 	}
 
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true, it holds no state between calls.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -15,7 +15,7 @@ public class DynamicTableContainsFilter extends DynamicTableFilterProvider {
 		boolean result = false;
 		for(Map.Entry<String, Object> entry : rowValues.entrySet()) {
 			// Easy way to get string value of most common types
-			String stringValue = String.format("%s", entry.getValue());
+			String stringValue = String.valueOf(entry.getValue());
 			// Does string value contain the filter expression?
 			if(stringValue.contains(filterExpression)) {
 				// Any match will be considered a success and keeps the record so we
@@ -27,4 +27,31 @@ public class DynamicTableContainsFilter extends DynamicTableFilterProvider {
 		return result;
 	}
 
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true when the new expression contains the previous one, since a value containing
+	 * the new expression also contains the previous one.
+	 */
+	@Override
+	public boolean refines(String previousExpression, String newExpression) {
+		return newExpression.contains(previousExpression);
+	}
+
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns the expression, which a kept record has in one of its values.
+	 */
+	@Override
+	public String getRequiredSubstring(String filterExpression) {
+		return filterExpression;
+	}
+
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true, it holds no state between calls.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -44,4 +44,45 @@ public abstract class DynamicTableFilterProvider {
 	 * and/or {@link #keepRecord(int, boolean, String, Object, Map)}.
 	 */
 	public void afterFiltering() {}
+	
+	/***
+	 * Whether a new filter expression is a narrowing of the previous one, meaning every record this provider keeps
+	 * for the new expression would also have been kept for the previous expression.  For example with a "contains"
+	 * filter, an expression made by typing more characters onto the previous one can only match fewer records.  When
+	 * true, {@link DynamicTableModel} only re-evaluates the records which survived the previous filtering, which keeps
+	 * typing responsive on large tables.  Only called when this provider also handled the previous expression.  Default
+	 * implementation returns false, so every record is re-evaluated.
+	 * @param previousExpression The expression this provider most recently filtered with.
+	 * @param newExpression The expression about to be filtered with.
+	 * @return True if results for the new expression are guaranteed to be a subset of results for the previous one.
+	 */
+	public boolean refines(String previousExpression, String newExpression) {
+		return false;
+	}
+	
+	/***
+	 * A substring which every record kept for the expression has in at least one of its values, comparing case
+	 * insensitively.  When {@link DynamicTableModel} has its trigram index enabled (see
+	 * {@link DynamicTableModel#setTrigramIndexEnabled(boolean)}) it uses this to skip calling
+	 * {@link #keepRecord(int, boolean, String, Object, Map)} for records which cannot contain the substring.  A value's
+	 * substring is matched against its string form, as given by String.valueOf.  Default implementation returns null,
+	 * so keepRecord is called for every record.
+	 * @param filterExpression The filter expression provided by the user.
+	 * @return The substring kept records must contain, or null if there is no such substring.
+	 */
+	public String getRequiredSubstring(String filterExpression) {
+		return null;
+	}
+	
+	/***
+	 * Whether {@link #keepRecord(int, boolean, String, Object, Map)} may be called from multiple threads at once.  When true,
+	 * {@link DynamicTableModel} filters large tables in parallel chunks on the fork-join pool, provided the model's values
+	 * can also be read concurrently (see {@link DynamicTableModel#setValueCallbackThreadSafe(boolean)}).  {@link #beforeFiltering(String, List)}
+	 * and {@link #afterFiltering()} are still called once each from the filtering thread.  Override and return true only if
+	 * keepRecord does not modify state shared between calls.  Default implementation returns false.
+	 * @return True if keepRecord is safe to call concurrently.
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -28,7 +28,7 @@ public class DynamicTableRegexFilter extends DynamicTableFilterProvider {
 		boolean result = false;
 		for(Map.Entry<String, Object> entry : rowValues.entrySet()) {
 			// Easy way to get string value of most common types
-			String stringValue = String.format("%s", entry.getValue());
+			String stringValue = String.valueOf(entry.getValue());
 			// Does string value match against our regex?
 			if(filterPattern.matcher(stringValue).find()) {
 				// Any match will be considered a success and keeps the record so we
@@ -50,5 +50,31 @@ public class DynamicTableRegexFilter extends DynamicTableFilterProvider {
 		filterPattern = null;
 	}
 
-	
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true when the new expression contains the previous one, since the expression is
+	 * matched literally, so a value matching the new expression also matches the previous one.
+	 */
+	@Override
+	public boolean refines(String previousExpression, String newExpression) {
+		return newExpression.contains(previousExpression);
+	}
+
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns the expression, which is matched literally.
+	 */
+	@Override
+	public String getRequiredSubstring(String filterExpression) {
+		return filterExpression;
+	}
+
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true, the compiled pattern is shared but each call creates its own matcher.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
@@ -23,4 +23,12 @@ public class DynamicTableUncheckedRecordsFilter extends DynamicTableFilterProvid
 		return isChecked == false;
 	}
 
+	/***
+	 * {@inheritDoc}<br>
+	 * This implementation returns true, it holds no state between calls.
+	 */
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
 }
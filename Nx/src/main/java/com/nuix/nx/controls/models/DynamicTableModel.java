@@ -5,16 +5,25 @@ http://www.apache.org/licenses/LICENSE-2.0
 
 package com.nuix.nx.controls.models;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
 
+import javax.swing.SwingUtilities;
 import javax.swing.table.AbstractTableModel;
 
 import com.nuix.nx.controls.filters.DynamicTableAllRecordsFilter;
@@ -23,6 +32,9 @@ import com.nuix.nx.controls.filters.DynamicTableContainsFilter;
 import com.nuix.nx.controls.filters.DynamicTableFilterProvider;
 import com.nuix.nx.controls.filters.DynamicTableRegexFilter;
 import com.nuix.nx.controls.filters.DynamicTableUncheckedRecordsFilter;
+import com.nuix.nx.digest.DigestAlgorithm;
+import com.nuix.nx.digest.DigestHex;
+import com.nuix.nx.digest.DigestSet;
 
 /***
  * Table model used to store data for a {@link com.nuix.nx.controls.DynamicTableControl}
@@ -32,27 +44,62 @@ import com.nuix.nx.controls.filters.DynamicTableUncheckedRecordsFilter;
 @SuppressWarnings("serial")
 public class DynamicTableModel extends AbstractTableModel {
 	// Built in handling for filters ":checked:" and ":unchecked:"
-	private static final DynamicTableFilterProvider checkedRecordsFilter = new DynamicTableCheckedRecordsFilter();
-	private static final DynamicTableFilterProvider uncheckedRecordsFilter = new DynamicTableUncheckedRecordsFilter();
+	// Each model has its own so that filtering one table never waits on filtering another
+	private final DynamicTableFilterProvider checkedRecordsFilter = new DynamicTableCheckedRecordsFilter();
+	private final DynamicTableFilterProvider uncheckedRecordsFilter = new DynamicTableUncheckedRecordsFilter();
 	
 	// Built in handling for when there are no externally provided filters that want to handle a filter expression.
 	// Logic goes:
 	// 1. If expression is null or empty or only whitespace, all records filter is used
 	// 2. If regex filter says it will handle the expression (expression compiles successfully to regex), then it will handle
 	// 3. Finally a "text contains" filter is used which just checks which records contain the provided expression
-	private static final DynamicTableFilterProvider allRecordsFilter = new DynamicTableAllRecordsFilter();
-	private static final DynamicTableFilterProvider regexRecordsFilter = new DynamicTableRegexFilter();
-	private static final DynamicTableFilterProvider textContainsRecordsFilter = new DynamicTableContainsFilter();
+	private final DynamicTableFilterProvider allRecordsFilter = new DynamicTableAllRecordsFilter();
+	private final DynamicTableFilterProvider regexRecordsFilter = new DynamicTableRegexFilter();
+	private final DynamicTableFilterProvider textContainsRecordsFilter = new DynamicTableContainsFilter();
+	
+	// Thread safe filter providers are run in parallel on tables with at least this many records, in chunks of this many records
+	private static final int PARALLEL_FILTER_THRESHOLD = 20000;
+	private static final int PARALLEL_FILTER_CHUNK_SIZE = 4096;
+	// Record hashes are computed in parallel for at least this many records
+	private static final int PARALLEL_HASH_THRESHOLD = 20000;
+	
+	// Filtering requested through setFilterAsync runs on these threads.  A model cancels its previous filtering before
+	// starting another, so models do not queue behind each other and each has at most one filtering still running.
+	private static final ExecutorService asyncFilterExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "DynamicTableModel Filtering");
+		thread.setDaemon(true);
+		return thread;
+	});
 	
 	private List<String> headers;
 	private List<Object> records;
-	private List<Boolean> recordSelection;
+	// Bit i is set when record i is checked
+	private BitSet checkedRecords = new BitSet();
+	private int checkedRecordCount = 0;
+	// Maps each record to the index it was last seen at, built when first needed by isSelected
+	private Map<Object,Integer> recordIndexLookup = null;
 	private DynamicTableValueCallback valueCallback;
+	private DynamicTableValueCallback serializedValueCallback;
 	private String filterExpression = "";
 	private ChoiceTableModelChangeListener changeListener;
-	private Map<Integer,Integer> filterMap;
+	private DynamicTableViewIndex viewIndex;
+	private int sortColumn = -1;
+	private boolean sortAscending = true;
 	private Set<Integer> additionalEditableColumns = new HashSet<Integer>();
 	private boolean defaultCheckState = false;
+	private DynamicTableValueCache valueCache = null;
+	private DynamicTableTrigramIndex trigramIndex = null;
+	// Fingerprint of each record as 2 longs (see DynamicTableRecordHasher), only kept while the value cache is enabled
+	private long[] recordFingerprints = null;
+	private boolean valueCallbackThreadSafe = false;
+	// Provider and expression of the most recent filtering, used to decide whether a new expression can be applied
+	// incrementally.  Cleared whenever the records or their values change in a way that could un-filter a record.
+	private DynamicTableFilterProvider lastFilterProvider = null;
+	private String lastFilterExpression = null;
+	// Held for reading while filtering reads records and cached values, and for writing while they are changed, so a
+	// filtering running in the background never sees them change part way through a chunk of records
+	private final ReentrantReadWriteLock recordsLock = new ReentrantReadWriteLock();
+	private FilterRun asyncFilterRun = null;
 	
 	private List<DynamicTableFilterProvider> customFilterProviders = new ArrayList<>();
 	
@@ -67,12 +114,17 @@ public class DynamicTableModel extends AbstractTableModel {
 		this.headers = headers;
 		this.records = records;
 		this.valueCallback = valueCallback;
+		// Unless the callback is declared thread safe (see setValueCallbackThreadSafe), only one thread at a time calls into
+		// it, for when filtering runs in parallel or in the background while the table is painted.  Values already in the
+		// value cache are still read concurrently.
+		this.serializedValueCallback = (record, column, setValue, value) -> {
+			synchronized(valueCallback) {
+				return valueCallback.interact(record, column, setValue, value);
+			}
+		};
 		this.defaultCheckState = defaultCheckState;
-		recordSelection = new ArrayList<Boolean>();
-		for (int i = 0; i < records.size(); i++) {
-			recordSelection.add(defaultCheckState);
-		}
-		filterMap = new HashMap<Integer,Integer>();
+		resetCheckedRecords();
+		viewIndex = DynamicTableViewIndex.identity(records.size());
 		applyFiltering();
 	}
 	
@@ -113,18 +165,17 @@ public class DynamicTableModel extends AbstractTableModel {
 
 	@Override
 	public int getRowCount() {
-		return filterMap.size();
+		return viewIndex.size();
 	}
 
 	@Override
 	public Object getValueAt(int rowIndex, int columnIndex) {
 		if(columnIndex == 0)
-			return recordSelection.get(resolveFilterIndex(rowIndex));
+			return checkedRecords.get(resolveFilterIndex(rowIndex));
 		else{
 			try {
-				Object record = records.get(resolveFilterIndex(rowIndex));
-				Object value = valueCallback.interact(record,columnIndex-1,false,null);
-				return value;
+				int recordIndex = resolveFilterIndex(rowIndex);
+				return getRecordValue(recordIndex, records.get(recordIndex), columnIndex-1);
 			} catch (Exception e) {
 				e.printStackTrace();
 				return "Error Occurred: "+e.getMessage();
@@ -142,11 +193,33 @@ public class DynamicTableModel extends AbstractTableModel {
 		//System.out.println("Setting "+rowIndex+"("+resolveFilterIndex(rowIndex)+"),"+columnIndex+" to "+aValue);
 		try {
 			if(columnIndex == 0){
-				recordSelection.set(resolveFilterIndex(rowIndex), (Boolean)aValue);
+				setRecordChecked(resolveFilterIndex(rowIndex), (Boolean)aValue);
 			}
 			else if(additionalEditableColumns.contains(columnIndex-1)){
-				Object record = records.get(resolveFilterIndex(rowIndex));
-				valueCallback.interact(record,columnIndex-1,true,aValue);
+				int recordIndex = resolveFilterIndex(rowIndex);
+				Object record = records.get(recordIndex);
+				// Filtering in the background may already have judged the record by its old values, so it is restarted
+				FilterRun interruptedRun = cancelAsyncFiltering();
+				recordsLock.writeLock().lock();
+				try {
+					currentValueCallback().interact(record,columnIndex-1,true,aValue);
+					// Setting one value may change what the callback yields for other columns of the record
+					if(valueCache != null){
+						valueCache.invalidateRecord(recordIndex);
+					}
+					if(trigramIndex != null){
+						trigramIndex.recordChanged(recordIndex, indexedValues(recordIndex));
+					}
+					recordFingerprints = null;
+				} finally {
+					recordsLock.writeLock().unlock();
+				}
+				// The edit may make a record match which the current filtering hid, so the next filter cannot only
+				// narrow the records currently displayed
+				lastFilterExpression = null;
+				if(interruptedRun != null){
+					setFilterAsync(interruptedRun.expression, interruptedRun.whenFinished);
+				}
 			}
 			notifyChanged();
 		} catch (Exception e) {
@@ -198,95 +271,598 @@ public class DynamicTableModel extends AbstractTableModel {
 	
 	/***
 	 * Filter the displayed records.  When a method such as {@link #getValueAt(int, int)} is called by DynamicTable, the given method will use
-	 * the index mapping stored in {@value #filterMap} to determine for the given display index what item to fetch from
+	 * the index mapping stored in {@link #viewIndex} to determine for the given display index what item to fetch from
 	 * the actual underlying full collection of records.  The act of applying filtering is therefore really just building
 	 * a modified mapping.  This method takes the filter expression that has been provided and iteratively apply it to each record
 	 * while building a new index mapping.  Once a new mapping has been constructed the associated DynamicTable is informed that data
 	 * has changed and it will re-populate.
 	 */
 	private void applyFiltering(){
-		Map<Integer,Integer> tempFilterMap = new HashMap<Integer,Integer>();
-		
-		DynamicTableFilterProvider filterProviderToUse = null;
-		
+		// Filtering synchronously supersedes any filtering still running in the background
+		cancelAsyncFiltering();
+		FilterRun run = new FilterRun(filterExpression, false, null);
+		run.compute();
+		publishFilterRun(run);
+	}
+	
+	/***
+	 * Determines which filter provider will handle a filter expression.
+	 * @param expression The filter expression
+	 * @return The filter provider to use
+	 */
+	private DynamicTableFilterProvider chooseFilterProvider(String expression){
 		// If filter expression is empty or null, we interpret that as a "all records" filter
 		// so we can effectively just build a filter map where each index is present and maps to
 		// the same index value (key == value).
-		if(filterExpression == null || filterExpression.trim().isEmpty()) {
-			filterProviderToUse = allRecordsFilter;
-		} else {
-			// If we reach here, that means we have an expression so we need to determine who will
-			// handle the filtering.  We will first check a few built in DynamicTableFilterProviders, then
-			// any user supplied ones and then finally the fall back built-in regex based filter if nobody
-			// takes ownership for handling the provided filter expression.
-			if(checkedRecordsFilter.handlesExpression(filterExpression)) {
-				filterProviderToUse = checkedRecordsFilter;
-			} else if(uncheckedRecordsFilter.handlesExpression(filterExpression)) {
-				filterProviderToUse = uncheckedRecordsFilter;
+		if(expression == null || expression.trim().isEmpty()) {
+			return allRecordsFilter;
+		}
+		
+		// If we reach here, that means we have an expression so we need to determine who will
+		// handle the filtering.  We will first check a few built in DynamicTableFilterProviders, then
+		// any user supplied ones and then finally the fall back built-in regex based filter if nobody
+		// takes ownership for handling the provided filter expression.
+		if(checkedRecordsFilter.handlesExpression(expression)) {
+			return checkedRecordsFilter;
+		} else if(uncheckedRecordsFilter.handlesExpression(expression)) {
+			return uncheckedRecordsFilter;
+		}
+		
+		// Now we will see if there is a user provided filter that wants to handle filtering
+		if(customFilterProviders != null) {
+			for(DynamicTableFilterProvider customFilterProvider : customFilterProviders) {
+				if(customFilterProvider.handlesExpression(expression)) {
+					return customFilterProvider;
+				}
+			}
+		}
+		
+		// Finally, if we still haven't determined a filter provider to use, then we are going to use
+		// the built in Regex based filter if it tells us that the provided filter can be compiled into
+		// a regex properly.  If it cannot, we will finally fall back to a basic "text contains" type filter.
+		if(regexRecordsFilter.handlesExpression(expression)) { return regexRecordsFilter; }
+		else { return textContainsRecordsFilter; }
+	}
+	
+	/***
+	 * Makes the view index computed by a filter run the one displayed.  Must be called on the EDT.
+	 */
+	private void publishFilterRun(FilterRun run){
+		viewIndex = run.result;
+		lastFilterProvider = run.provider;
+		lastFilterExpression = run.expression;
+		
+		// Tell the outside world we changed the data
+		this.fireTableDataChanged();
+	}
+	
+	/***
+	 * Set the current filter string, filtering the records on a background thread so that the EDT is not blocked
+	 * while a large table is filtered.  The records and their checked states are captured when this is called and the
+	 * table keeps displaying the previous filtering until the new one is complete, at which point it is displayed with
+	 * a single table data change.  Filtering still in progress from an earlier call is cancelled, as is filtering in
+	 * progress when {@link #setFilter(String)} is called or records are added, removed or replaced.  Must be called
+	 * on the EDT.
+	 * @param filter The filter string to use
+	 * @param whenFinished Optional callback run on the EDT once the new filtering is displayed.  It is not run if the
+	 * filtering is cancelled.
+	 */
+	public void setFilterAsync(String filter, Runnable whenFinished){
+		cancelAsyncFiltering();
+		FilterRun run = new FilterRun(filter, true, whenFinished);
+		asyncFilterRun = run;
+		asyncFilterExecutor.execute(() -> {
+			try {
+				run.compute();
+			} catch (CancellationException e) {
+				return;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			SwingUtilities.invokeLater(() -> {
+				// A newer filtering, or a change to the records, may have superseded this one while it was queued
+				if(asyncFilterRun != run) {
+					return;
+				}
+				asyncFilterRun = null;
+				if(run.result != null) {
+					filterExpression = run.expression;
+					publishFilterRun(run);
+					if(changeListener != null){
+						changeListener.dataChanged();
+					}
+					if(run.whenFinished != null){
+						run.whenFinished.run();
+					}
+				}
+			});
+		});
+	}
+	
+	/***
+	 * Cancels the filtering running in the background, if any.  Must be called on the EDT.
+	 * @return The cancelled filter run, or null if none was running
+	 */
+	private FilterRun cancelAsyncFiltering(){
+		FilterRun run = asyncFilterRun;
+		if(run != null){
+			run.cancelled = true;
+			asyncFilterRun = null;
+		}
+		return run;
+	}
+	
+	/***
+	 * Whether filtering started by {@link #setFilterAsync(String, Runnable)} is still in progress
+	 * @return True if a background filtering has not yet been displayed
+	 */
+	public boolean isFiltering(){
+		return asyncFilterRun != null;
+	}
+	
+	/***
+	 * Gets how far through the records the filtering started by {@link #setFilterAsync(String, Runnable)} is
+	 * @return Fraction of the records filtered so far, between 0.0 and 1.0, or 1.0 when no filtering is in progress
+	 */
+	public double getFilterProgress(){
+		FilterRun run = asyncFilterRun;
+		if(run == null || run.candidateCount == 0){
+			return 1.0;
+		}
+		return (double)run.processed.get() / run.candidateCount;
+	}
+	
+	/***
+	 * A single filtering of the records, building a new view index from a filter expression.  Everything the filtering
+	 * depends on is captured when the run is created, optionally including a copy of the records and their checked
+	 * states, so that a run can be computed on a background thread while the EDT keeps using the model.  Records are
+	 * filtered in chunks, each holding {@link DynamicTableModel#recordsLock} for reading, and a cancelled run stops at
+	 * the start of its next chunk or comparison when sorting.
+	 */
+	private class FilterRun {
+		private final String expression;
+		private final Runnable whenFinished;
+		private final DynamicTableFilterProvider provider;
+		private final List<Object> runRecords;
+		private final BitSet runSelection;
+		private final String[] columnNames;
+		private final DynamicTableValueCallback callback;
+		private final DynamicTableValueCache cache;
+		private final DynamicTableTrigramIndex index;
+		private final boolean parallel;
+		private final boolean incremental;
+		private final boolean previousViewIsIdentity;
+		private int[] candidates;
+		private volatile int candidateCount;
+		private final int runSortColumn;
+		private final boolean runSortAscending;
+		private final AtomicInteger processed = new AtomicInteger();
+		private volatile boolean cancelled = false;
+		private DynamicTableViewIndex result = null;
+		
+		/***
+		 * Captures the state of the model for a new filtering.  Must be called on the EDT.
+		 * @param expression The filter expression to apply
+		 * @param copyRecords Whether to filter a copy of the records and checked states, required when the run will
+		 * be computed off the EDT
+		 * @param whenFinished Callback for the caller to run once the result is displayed, may be null
+		 */
+		FilterRun(String expression, boolean copyRecords, Runnable whenFinished){
+			this.expression = expression;
+			this.whenFinished = whenFinished;
+			provider = chooseFilterProvider(expression);
+			runRecords = copyRecords ? new ArrayList<Object>(records) : records;
+			runSelection = copyRecords ? (BitSet)checkedRecords.clone() : checkedRecords;
+			columnNames = headers.toArray(new String[headers.size()]);
+			callback = valueCallbackThreadSafe ? valueCallback : serializedValueCallback;
+			cache = valueCache;
+			index = trigramIndex;
+			parallel = provider.isThreadSafe() && valuesReadableConcurrently();
+			
+			// When the provider tells us the new expression only narrows the previous one, only the records which
+			// survived the previous filtering can survive this one, so only they are re-evaluated.  Otherwise every
+			// record is a candidate.
+			incremental = provider == lastFilterProvider && lastFilterExpression != null &&
+					!lastFilterExpression.trim().isEmpty() && provider.refines(lastFilterExpression, expression);
+			previousViewIsIdentity = viewIndex.isIdentity();
+			candidates = incremental ? viewIndex.toArray() : null;
+			candidateCount = incremental ? candidates.length : runRecords.size();
+			runSortColumn = sortColumn;
+			runSortAscending = sortAscending;
+		}
+		
+		/***
+		 * Filters and sorts the candidate records into {@link #result}.
+		 * @throws CancellationException If the run was cancelled before completing
+		 */
+		void compute(){
+			int[] keptRecordIndices;
+			int filterIndex;
+			
+			narrowCandidatesByIndex();
+			
+			// Providers keep state between beforeFiltering and afterFiltering, so a provider is used by one filtering
+			// at a time.  The built in providers belong to this model, so this only waits for a cancelled filtering of
+			// this model to stop, or for another model sharing a custom provider.
+			synchronized(provider) {
+				checkCancelled();
+				// Now that we have determined the filter to use, we use it to actual filter the records and build our
+				// new index mapping.  First we call beforeFilter method, then keepRecord on each record and finally afterFilter.
+				provider.beforeFiltering(expression, runRecords);
+				try {
+					int chunkCount = (candidateCount + PARALLEL_FILTER_CHUNK_SIZE - 1) / PARALLEL_FILTER_CHUNK_SIZE;
+					if(parallel && candidateCount >= PARALLEL_FILTER_THRESHOLD) {
+						// Each chunk is filtered on the fork-join pool into its own array, then the arrays are concatenated in
+						// chunk order so the kept records stay in candidate order
+						int[][] chunkResults = new int[chunkCount][];
+						int[] chunkKeptCounts = new int[chunkCount];
+						IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+							int from = chunk * PARALLEL_FILTER_CHUNK_SIZE;
+							int to = Math.min(candidateCount, from + PARALLEL_FILTER_CHUNK_SIZE);
+							chunkResults[chunk] = new int[to - from];
+							chunkKeptCounts[chunk] = filterRecords(from, to, chunkResults[chunk], 0);
+						});
+						keptRecordIndices = new int[candidateCount];
+						filterIndex = 0;
+						for (int chunk = 0; chunk < chunkCount; chunk++) {
+							System.arraycopy(chunkResults[chunk], 0, keptRecordIndices, filterIndex, chunkKeptCounts[chunk]);
+							filterIndex += chunkKeptCounts[chunk];
+						}
+					} else {
+						keptRecordIndices = new int[candidateCount];
+						filterIndex = 0;
+						for (int from = 0; from < candidateCount; from += PARALLEL_FILTER_CHUNK_SIZE) {
+							int to = Math.min(candidateCount, from + PARALLEL_FILTER_CHUNK_SIZE);
+							filterIndex += filterRecords(from, to, keptRecordIndices, filterIndex);
+						}
+					}
+				} finally {
+					provider.afterFiltering();
+				}
+			}
+			
+			// When every record was kept the mapping is the identity so we can skip the array entirely.  Narrowing
+			// keeps the previous order, so survivors are already sorted.
+			DynamicTableViewIndex tempViewIndex;
+			if(filterIndex == runRecords.size() && (!incremental || previousViewIsIdentity)) {
+				tempViewIndex = DynamicTableViewIndex.identity(filterIndex);
 			} else {
-				
-				// Now we will see if there is a user provided filter that wants to handle filtering
-				if(customFilterProviders != null) {
-					for(DynamicTableFilterProvider customFilterProvider : customFilterProviders) {
-						if(customFilterProvider.handlesExpression(filterExpression)) {
-							filterProviderToUse = customFilterProvider;
-							break;
+				tempViewIndex = DynamicTableViewIndex.of(keptRecordIndices, filterIndex);
+			}
+			if(runSortColumn >= 0 && !incremental){
+				recordsLock.readLock().lock();
+				try {
+					tempViewIndex = tempViewIndex.sorted(this::compareRecords);
+				} finally {
+					recordsLock.readLock().unlock();
+				}
+			}
+			result = tempViewIndex;
+		}
+		
+		/***
+		 * When the trigram index is enabled and the provider names a substring kept records must contain, drops the
+		 * candidates which the index shows cannot contain it.  Incremental candidates keep their display order.
+		 */
+		private void narrowCandidatesByIndex(){
+			String requiredSubstring = index == null ? null : provider.getRequiredSubstring(expression);
+			if(requiredSubstring == null){
+				return;
+			}
+			recordsLock.readLock().lock();
+			try {
+				// The index follows the live records, which only match the copy this run filters while it is not cancelled
+				checkCancelled();
+				int[] indexed = index.candidates(requiredSubstring);
+				if(indexed == null){
+					return;
+				}
+				if(incremental){
+					BitSet indexedSet = new BitSet(runRecords.size());
+					for(int recordIndex : indexed){
+						indexedSet.set(recordIndex);
+					}
+					int retained = 0;
+					for (int position = 0; position < candidateCount; position++) {
+						if(indexedSet.get(candidates[position])){
+							candidates[retained++] = candidates[position];
 						}
 					}
+					candidates = Arrays.copyOf(candidates, retained);
+				} else {
+					candidates = indexed;
 				}
+				candidateCount = candidates.length;
+			} finally {
+				recordsLock.readLock().unlock();
+			}
+		}
+		
+		private void checkCancelled(){
+			if(cancelled){
+				throw new CancellationException("Filtering was superseded");
+			}
+		}
+		
+		/***
+		 * Runs the filter provider over a range of candidate records, recording the indices of records it keeps.
+		 * @param from Position in candidates of the first record to filter
+		 * @param to Position in candidates after the last record to filter
+		 * @param kept Array receiving the indices of kept records
+		 * @param keptOffset Position in kept of the first kept record
+		 * @return Number of records kept
+		 */
+		private int filterRecords(int from, int to, int[] kept, int keptOffset){
+			recordsLock.readLock().lock();
+			try {
+				// Checked while holding the lock, a change to the records cancels the run before taking the lock
+				checkCancelled();
+				Map<String,Object> recordValues = new HashMap<String,Object>();
+				int keptCount = 0;
 				
-				// Finally, if we still haven't determined a filter provider to use, then we are going to use
-				// the built in Regex based filter if it tells us that the provided filter can be compiled into
-				// a regex properly.  If it cannot, we will finally fall back to a basic "text contains" type filter.
-				if(filterProviderToUse == null) {
-					if(regexRecordsFilter.handlesExpression(filterExpression)) { filterProviderToUse = regexRecordsFilter; }
-					else { filterProviderToUse = textContainsRecordsFilter; }
+				for (int position = from; position < to; position++) {
+					int i = candidates == null ? position : candidates[position];
+					boolean recordIsChecked = runSelection.get(i);
+					
+					// Convert record to columns map using values callback to that filter can inspect displayed values without
+					// needing deeper knowledge of the underlying record
+					Object record = runRecords.get(i);
+					recordValues.clear();
+					for (int c = 0; c < columnNames.length; c++) {
+						Object colValue = "";
+						try {
+							colValue = getValue(i, record, c);
+						} catch (Exception e) {
+							e.printStackTrace();
+						}
+						recordValues.put(columnNames[c], colValue);
+					}
+					
+					if(provider.keepRecord(i, recordIsChecked, expression, record, recordValues)) {
+						// Here we record the actual mapping where the filtered position is the index that will be
+						// asked for externally and i is the actual index into the full records collection.
+						kept[keptOffset + keptCount] = i;
+						keptCount++;
+					}
 				}
+				return keptCount;
+			} finally {
+				recordsLock.readLock().unlock();
+				processed.addAndGet(to - from);
 			}
 		}
 		
-		// Now that we have determined the filter to use, we use it to actual filter the records and build our
-		// new index mapping.  First we call beforeFilter method, then keepRecord on each record and finally afterFilter.
-		filterProviderToUse.beforeFiltering(filterExpression, records);
+		private Object getValue(int recordIndex, Object record, int column){
+			if(cache != null){
+				return cache.get(recordIndex, column, record, callback);
+			} else {
+				return callback.interact(record, column, false, null);
+			}
+		}
 		
-		int columnCount = headers.size();
-		Map<String,Object> recordValues = new HashMap<String,Object>();
-		int filterIndex = 0;
+		/***
+		 * Compares two records by their value in the sort column.  Values which are Comparable with each other
+		 * are compared directly, otherwise their string forms are compared ignoring case.
+		 */
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private int compareRecords(int recordIndexA, int recordIndexB){
+			checkCancelled();
+			Object a = safeValue(recordIndexA);
+			Object b = safeValue(recordIndexB);
+			int result;
+			if(a == null || b == null){
+				result = a == null ? (b == null ? 0 : -1) : 1;
+			} else if(a instanceof Comparable && a.getClass() == b.getClass()){
+				result = ((Comparable)a).compareTo(b);
+			} else {
+				result = a.toString().compareToIgnoreCase(b.toString());
+			}
+			return runSortAscending ? result : -result;
+		}
 		
-		for (int i = 0; i < records.size(); i++) {
-			boolean recordIsChecked = recordSelection.get(i);
-			
-			// Convert record to columns map using values callback to that filter can inspect displayed values without
-			// needing deeper knowledge of the underlying record
+		private Object safeValue(int recordIndex){
+			try {
+				return getValue(recordIndex, runRecords.get(recordIndex), runSortColumn);
+			} catch (Exception e) {
+				e.printStackTrace();
+				return "";
+			}
+		}
+	}
+	
+	/***
+	 * Declares whether the value callback may be called from multiple threads at once.  When a filter provider is
+	 * thread safe (see {@link DynamicTableFilterProvider#isThreadSafe()}) large tables are filtered in parallel, but only
+	 * if the callback is declared thread safe or every value has been cached by {@link #preloadValueCache(boolean)}.
+	 * Unless the callback is declared thread safe, calls into it are made one at a time, including calls made while
+	 * painting the table during filtering started by {@link #setFilterAsync(String, Runnable)}.  Defaults to false.
+	 * @param valueCallbackThreadSafe True if the value callback is safe to call concurrently
+	 */
+	public void setValueCallbackThreadSafe(boolean valueCallbackThreadSafe){
+		this.valueCallbackThreadSafe = valueCallbackThreadSafe;
+	}
+	
+	/***
+	 * Gets the value of a cell for a record, from the value cache when it is enabled.
+	 * @param recordIndex Index of the record in the full collection of records
+	 * @param record The record
+	 * @param column Column index relative to user data
+	 * @return The value yielded by the value callback
+	 */
+	private Object getRecordValue(int recordIndex, Object record, int column){
+		return getRecordValue(recordIndex, record, column, currentValueCallback());
+	}
+	
+	/***
+	 * Whether values can be read from multiple threads at once without queueing on the serialized value callback,
+	 * or calling script code from the threads of a pool, because the callback is thread safe or every value is cached.
+	 */
+	private boolean valuesReadableConcurrently(){
+		return valueCallbackThreadSafe || (valueCache != null && valueCache.isFullyCached());
+	}
+	
+	private DynamicTableValueCallback currentValueCallback(){
+		return valueCallbackThreadSafe ? valueCallback : serializedValueCallback;
+	}
+	
+	private Object getRecordValue(int recordIndex, Object record, int column, DynamicTableValueCallback callback){
+		if(valueCache != null){
+			return valueCache.get(recordIndex, column, record, callback);
+		} else {
+			return callback.interact(record, column, false, null);
+		}
+	}
+	
+	/***
+	 * Enables or disables caching of the values yielded by the value callback.  When enabled each cell's value
+	 * is fetched from the callback once and then reused when painting and filtering, which avoids repeatedly
+	 * calling into script code for large tables.  Only enable this when the callback yields the same value for
+	 * a record each time it is asked.  Edits made through the table, {@link #addRecord(Object)}, {@link #remove(int)}
+	 * and {@link #setRecords(List)} keep the cache up to date, call {@link #invalidateValueCache()} after changing
+	 * records any other way.
+	 * @param enabled Whether values should be cached
+	 */
+	public void setValueCacheEnabled(boolean enabled){
+		if(enabled && valueCache == null){
+			valueCache = new DynamicTableValueCache(headers.size(), records.size());
+		} else if(!enabled){
+			valueCache = null;
+			recordFingerprints = null;
+		}
+	}
+	
+	/***
+	 * Whether values yielded by the value callback are being cached
+	 * @return True if the value cache is enabled
+	 */
+	public boolean isValueCacheEnabled(){
+		return valueCache != null;
+	}
+	
+	/***
+	 * Discards all cached values so they will be fetched from the value callback again.  Does nothing if
+	 * the value cache is not enabled.
+	 */
+	public void invalidateValueCache(){
+		if(valueCache != null || trigramIndex != null){
+			recordsLock.writeLock().lock();
+			try {
+				if(valueCache != null){
+					valueCache.reset(records.size());
+				}
+				if(trigramIndex != null){
+					trigramIndex = buildTrigramIndex();
+				}
+				recordFingerprints = null;
+			} finally {
+				recordsLock.writeLock().unlock();
+			}
+			fireTableDataChanged();
+		}
+		lastFilterExpression = null;
+	}
+	
+	/***
+	 * Fills the value cache by fetching the value of every cell up front, enabling the cache if it is not
+	 * already enabled.
+	 * @param parallel Whether to fetch values on multiple threads.  Only pass true if the value callback is safe to
+	 * call concurrently.
+	 */
+	public void preloadValueCache(boolean parallel){
+		setValueCacheEnabled(true);
+		int columnCount = headers.size();
+		IntStream recordIndices = IntStream.range(0, records.size());
+		if(parallel){
+			recordIndices = recordIndices.parallel();
+		}
+		AtomicBoolean failed = new AtomicBoolean(false);
+		recordIndices.forEach(i -> {
 			Object record = records.get(i);
-			recordValues.clear();
 			for (int c = 0; c < columnCount; c++) {
-				Object colValue = "";
 				try {
-					colValue = valueCallback.interact(record, c, false, null);
+					valueCache.get(i, c, record, valueCallback);
 				} catch (Exception e) {
+					failed.set(true);
 					e.printStackTrace();
 				}
-				recordValues.put(headers.get(c), colValue);
 			}
-			
-			boolean keepRecord = filterProviderToUse.keepRecord(i, recordIsChecked, filterExpression, record, recordValues);
-			if(keepRecord) {
-				// Here we record the actual mapping where filter index is the index that will be
-				// asked for externally and i is the actual index into the full records collection.
-				tempFilterMap.put(filterIndex, i);
-				filterIndex++;
+		});
+		// A value which could not be fetched is left to be fetched again when next needed
+		if(!failed.get()){
+			valueCache.markFullyCached();
+		}
+	}
+	
+	/***
+	 * Gets the number of cell values answered from the value cache
+	 * @return Value cache hit count, 0 if the cache is not enabled
+	 */
+	public long getValueCacheHits(){
+		return valueCache == null ? 0 : valueCache.getHits();
+	}
+	
+	/***
+	 * Gets the number of cell values which had to be fetched from the value callback while the cache was enabled
+	 * @return Value cache miss count, 0 if the cache is not enabled
+	 */
+	public long getValueCacheMisses(){
+		return valueCache == null ? 0 : valueCache.getMisses();
+	}
+	
+	/***
+	 * Enables or disables a trigram index of the displayed values (see {@link DynamicTableTrigramIndex}).  While enabled,
+	 * filtering with a provider which names a substring kept records must contain (see
+	 * {@link DynamicTableFilterProvider#getRequiredSubstring(String)}), such as the built in text filters, only inspects
+	 * the records the index shows could contain it, which keeps filtering interactive on very large tables.  Enabling
+	 * the index fetches the value of every cell, so it works best alongside the value cache.  Like the value cache it
+	 * is kept up to date by edits made through the table, {@link #addRecord(Object)}, {@link #remove(int)} and
+	 * {@link #setRecords(List)}, call {@link #invalidateValueCache()} after changing records any other way.
+	 * @param enabled Whether displayed values should be indexed
+	 */
+	public void setTrigramIndexEnabled(boolean enabled){
+		if(enabled && trigramIndex == null){
+			recordsLock.writeLock().lock();
+			try {
+				trigramIndex = buildTrigramIndex();
+			} finally {
+				recordsLock.writeLock().unlock();
 			}
+		} else if(!enabled){
+			trigramIndex = null;
 		}
-		
-		filterProviderToUse.afterFiltering();
-		
-		// Make the models filter map the one we just built
-		filterMap = tempFilterMap;
-		
-		// Tell the outside world we changed the data
-		this.fireTableDataChanged();
-		
+	}
+	
+	/***
+	 * Whether displayed values are being indexed by trigram
+	 * @return True if the trigram index is enabled
+	 */
+	public boolean isTrigramIndexEnabled(){
+		return trigramIndex != null;
+	}
+	
+	private DynamicTableTrigramIndex buildTrigramIndex(){
+		DynamicTableTrigramIndex index = new DynamicTableTrigramIndex();
+		for (int i = 0; i < records.size(); i++) {
+			index.recordAdded(indexedValues(i));
+		}
+		return index;
+	}
+	
+	/***
+	 * Gets the string form of each displayed value of a record, as indexed by the trigram index
+	 */
+	private String[] indexedValues(int recordIndex){
+		Object record = records.get(recordIndex);
+		String[] values = new String[headers.size()];
+		for (int c = 0; c < values.length; c++) {
+			try {
+				values[c] = String.valueOf(getRecordValue(recordIndex, record, c));
+			} catch (Exception e) {
+				e.printStackTrace();
+				values[c] = "";
+			}
+		}
+		return values;
 	}
 	
 	/***
@@ -296,14 +872,35 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @return
 	 */
 	private int resolveFilterIndex(int filteredIndex){
-		if(filterMap.size() < 1){
+		if(viewIndex.size() < 1){
 			return filteredIndex;
 		}
 		else{
-			return filterMap.get(filteredIndex);
+			return viewIndex.getRecordIndex(filteredIndex);
 		}
 	}
 	
+	/***
+	 * Sorts the displayed records by the values in a column.  The sort is kept when the filter changes.  While
+	 * sorted the rows cannot be shifted by {@link #shiftRows(int[], int)}.
+	 * @param column Column index relative to user data, so 0 is the first record column.  Pass -1 to display records in their original order.
+	 * @param ascending True to sort ascending, false to sort descending
+	 */
+	public void setSortColumn(int column, boolean ascending){
+		this.sortColumn = column;
+		this.sortAscending = ascending;
+		lastFilterExpression = null;
+		applyFiltering();
+	}
+	
+	/***
+	 * Gets the column records are currently sorted by
+	 * @return Column index relative to user data, or -1 if records are displayed in their original order
+	 */
+	public int getSortColumn(){
+		return sortColumn;
+	}
+	
 	/***
 	 * Set the current filter string
 	 * @param filter The filter string to use
@@ -315,13 +912,67 @@ public class DynamicTableModel extends AbstractTableModel {
 	}
 	
 	/***
-	 * Used to determine whether a given record is checked in the table
+	 * Used to determine whether a given record is checked in the table.  The record is found by identity in constant
+	 * time, falling back to searching the records for an equal record, for example when a script passes a copy of
+	 * a record.
 	 * @param record The record to check for
 	 * @return True if the record is present and found to be checked
 	 */
 	public boolean isSelected(Object record){
-		int recordIndex = records.lastIndexOf(record);
-		return recordSelection.get(recordIndex);
+		int recordIndex = indexOfRecord(record);
+		return recordIndex >= 0 && checkedRecords.get(recordIndex);
+	}
+	
+	/***
+	 * Finds the index of a record, being the last index holding that record to match List.lastIndexOf.
+	 * @param record The record to find
+	 * @return The record's index, or -1 if it is not present
+	 */
+	private int indexOfRecord(Object record){
+		if(recordIndexLookup == null){
+			buildRecordIndexLookup();
+		}
+		Integer recordIndex = recordIndexLookup.get(record);
+		if(recordIndex != null && recordIndex < records.size() && records.get(recordIndex) == record){
+			return recordIndex;
+		}
+		// The records list may have been changed directly since the lookup was built
+		if(recordIndex != null){
+			buildRecordIndexLookup();
+			recordIndex = recordIndexLookup.get(record);
+			if(recordIndex != null){
+				return recordIndex;
+			}
+		}
+		return records.lastIndexOf(record);
+	}
+	
+	private void buildRecordIndexLookup(){
+		recordIndexLookup = new IdentityHashMap<Object,Integer>(records.size());
+		for (int i = 0; i < records.size(); i++) {
+			recordIndexLookup.put(records.get(i), i);
+		}
+	}
+	
+	/***
+	 * Sets the checked state of a record, keeping the checked record count up to date
+	 */
+	private void setRecordChecked(int recordIndex, boolean checked){
+		if(checkedRecords.get(recordIndex) != checked){
+			checkedRecords.set(recordIndex, checked);
+			checkedRecordCount += checked ? 1 : -1;
+		}
+	}
+	
+	/***
+	 * Sets the checked state of every record to the default check state
+	 */
+	private void resetCheckedRecords(){
+		checkedRecords.clear();
+		if(defaultCheckState){
+			checkedRecords.set(0, records.size());
+		}
+		checkedRecordCount = checkedRecords.cardinality();
 	}
 	
 	/***
@@ -337,11 +988,23 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @param records The records to associate
 	 */
 	public void setRecords(List<Object> records){
-		this.records = records;
-		for (int i = 0; i < records.size(); i++) {
-			recordSelection.add(defaultCheckState);
+		cancelAsyncFiltering();
+		recordsLock.writeLock().lock();
+		try {
+			this.records = records;
+			resetCheckedRecords();
+			recordIndexLookup = null;
+			if(valueCache != null){
+				valueCache.reset(records.size());
+			}
+			if(trigramIndex != null){
+				trigramIndex = buildTrigramIndex();
+			}
+			recordFingerprints = null;
+		} finally {
+			recordsLock.writeLock().unlock();
 		}
-		filterMap = new HashMap<Integer,Integer>();
+		viewIndex = DynamicTableViewIndex.identity(records.size());
 		setFilter("");
 	}
 	
@@ -351,8 +1014,24 @@ public class DynamicTableModel extends AbstractTableModel {
 	 */
 	public void addRecord(Object record){
 		if(record != null) {
-			this.records.add(record);
-			recordSelection.add(defaultCheckState);
+			cancelAsyncFiltering();
+			recordsLock.writeLock().lock();
+			try {
+				this.records.add(record);
+				setRecordChecked(records.size() - 1, defaultCheckState);
+				if(recordIndexLookup != null){
+					recordIndexLookup.put(record, records.size() - 1);
+				}
+				if(valueCache != null){
+					valueCache.recordAdded();
+				}
+				if(trigramIndex != null){
+					trigramIndex.recordAdded(indexedValues(records.size() - 1));
+				}
+				recordFingerprints = null;
+			} finally {
+				recordsLock.writeLock().unlock();
+			}
 			setFilter("");
 		}
 	}
@@ -362,8 +1041,28 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @param rowIndex The index of the row containing the record to remove
 	 */
 	public void remove(int rowIndex){
-		this.records.remove(rowIndex);
-		recordSelection.remove(rowIndex);
+		cancelAsyncFiltering();
+		recordsLock.writeLock().lock();
+		try {
+			this.records.remove(rowIndex);
+			// Shift the checked states of the following records down into the removed record's place
+			setRecordChecked(rowIndex, false);
+			BitSet following = checkedRecords.get(rowIndex + 1, records.size() + 1);
+			checkedRecords.clear(rowIndex, records.size() + 1);
+			for (int i = following.nextSetBit(0); i >= 0; i = following.nextSetBit(i + 1)) {
+				checkedRecords.set(rowIndex + i);
+			}
+			recordIndexLookup = null;
+			if(valueCache != null){
+				valueCache.recordRemoved(rowIndex);
+			}
+			if(trigramIndex != null){
+				trigramIndex.recordRemoved(rowIndex);
+			}
+			recordFingerprints = null;
+		} finally {
+			recordsLock.writeLock().unlock();
+		}
 		setFilter("");
 	}
 	
@@ -373,8 +1072,8 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @param value The checked state to set
 	 */
 	public void setCheckedAtIndex(int index, boolean value){
-		if(index >= 0 && index < recordSelection.size()){
-			recordSelection.set(index, value);
+		if(index >= 0 && index < records.size()){
+			setRecordChecked(index, value);
 		}
 		notifyChanged();
 	}
@@ -384,9 +1083,16 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * is currently applied this is all records, otherwise it will be just the filtered subset.
 	 */
 	public void checkDisplayedRecords(){
-		for(Map.Entry<Integer,Integer> entry : filterMap.entrySet()){
-			recordSelection.set(entry.getValue(), true);
-			this.fireTableCellUpdated(entry.getKey(), 0);
+		if(viewIndex.isIdentity()){
+			checkedRecords.set(0, viewIndex.size());
+			checkedRecordCount = checkedRecords.cardinality();
+		} else {
+			for (int row = 0; row < viewIndex.size(); row++) {
+				setRecordChecked(viewIndex.getRecordIndex(row), true);
+			}
+		}
+		if(viewIndex.size() > 0){
+			this.fireTableRowsUpdated(0, viewIndex.size() - 1);
 		}
 		notifyChanged();
 	}
@@ -396,9 +1102,16 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * is currently applied this is all records, otherwise it will be just the filtered subset.
 	 */
 	public void uncheckDisplayedRecords(){
-		for(Map.Entry<Integer,Integer> entry : filterMap.entrySet()){
-			recordSelection.set(entry.getValue(), false);
-			this.fireTableCellUpdated(entry.getKey(), 0);
+		if(viewIndex.isIdentity()){
+			checkedRecords.clear(0, viewIndex.size());
+			checkedRecordCount = checkedRecords.cardinality();
+		} else {
+			for (int row = 0; row < viewIndex.size(); row++) {
+				setRecordChecked(viewIndex.getRecordIndex(row), false);
+			}
+		}
+		if(viewIndex.size() > 0){
+			this.fireTableRowsUpdated(0, viewIndex.size() - 1);
 		}
 		notifyChanged();
 	}
@@ -408,10 +1121,9 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @return A list of checked records
 	 */
 	public List<Object> getCheckedRecords(){
-		List<Object> result = new ArrayList<Object>();
-		for (int i = 0; i < recordSelection.size(); i++) {
-			if(recordSelection.get(i) == true)
-				result.add(records.get(i));
+		List<Object> result = new ArrayList<Object>(checkedRecordCount);
+		for (int i = checkedRecords.nextSetBit(0); i >= 0; i = checkedRecords.nextSetBit(i + 1)) {
+			result.add(records.get(i));
 		}
 		return result;
 	}
@@ -422,23 +1134,15 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @return An MD5 string based on a concatenation of the column values
 	 */
 	protected String hashRecord(Object record){
-		MessageDigest md = null;
-		try {
-			md = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		}
-		StringBuffer hashBuffer = new StringBuffer();
-		StringBuffer recordContent = new StringBuffer();
+		DynamicTableValueCallback callback = currentValueCallback();
+		DynamicTableRecordHasher hasher = DynamicTableRecordHasher.forCurrentThread();
+		hasher.begin();
 		for (int i = 0; i < headers.size(); i++) {
-			recordContent.append(valueCallback.interact(record, i,false,null).toString());
+			hasher.append(callback.interact(record, i,false,null));
 		}
-		md.update(recordContent.toString().getBytes());
-		byte[] digest = md.digest();
-		for (byte b : digest) {
-			hashBuffer.append(String.format("%02x", b & 0xff));
-		}
-		return hashBuffer.toString();
+		long[] fingerprint = new long[2];
+		hasher.finish(fingerprint, 0);
+		return DynamicTableRecordHasher.toHex(fingerprint, 0);
 	}
 	
 	/***
@@ -457,33 +1161,77 @@ public class DynamicTableModel extends AbstractTableModel {
 	}
 	
 	/***
-	 * Gets the MD5 hashes for all the currently checked records using {@link #getRecordHashes}
+	 * Gets the fingerprint of every record, the MD5 {@link #hashRecord(Object)} formats as hexadecimal, as 2 longs per
+	 * record.  Fingerprints are computed on multiple threads for large tables when values can be read concurrently, see
+	 * {@link #setValueCallbackThreadSafe(boolean)}, and while the value cache is enabled they are kept until the records
+	 * or their values change.
+	 * @return The fingerprints, those of record i starting at index i * 2
+	 */
+	private long[] getRecordFingerprints(){
+		long[] fingerprints = recordFingerprints;
+		if(fingerprints != null && fingerprints.length == records.size() * 2){
+			return fingerprints;
+		}
+		
+		int columnCount = headers.size();
+		long[] computed = new long[records.size() * 2];
+		IntStream recordIndices = IntStream.range(0, records.size());
+		if(records.size() >= PARALLEL_HASH_THRESHOLD && valuesReadableConcurrently()){
+			recordIndices = recordIndices.parallel();
+		}
+		recordIndices.forEach(i -> {
+			Object record = records.get(i);
+			DynamicTableRecordHasher hasher = DynamicTableRecordHasher.forCurrentThread();
+			hasher.begin();
+			for (int c = 0; c < columnCount; c++) {
+				hasher.append(getRecordValue(i, record, c));
+			}
+			hasher.finish(computed, i * 2);
+		});
+		if(valueCache != null){
+			recordFingerprints = computed;
+		}
+		return computed;
+	}
+	
+	/***
+	 * Gets the MD5 hashes for all the currently checked records, as {@link #hashRecord(Object)} would produce them
 	 * @return MD5 hashes for all the currently checked records
 	 */
 	public Set<String> getCheckedRecordHashes(){
-		return getRecordHashes(getCheckedRecords());
+		long[] fingerprints = getRecordFingerprints();
+		Set<String> hashes = new HashSet<String>();
+		for (int i = checkedRecords.nextSetBit(0); i >= 0; i = checkedRecords.nextSetBit(i + 1)) {
+			hashes.add(DynamicTableRecordHasher.toHex(fingerprints, i * 2));
+		}
+		return hashes;
 	}
 	
 	/***
 	 * Sets the checked state of loaded records to checked for records with MD5 hash values
 	 * matching those in the provided list.  Used to restore a selection of items which has
-	 * previously been saved.
+	 * previously been saved.  Listeners are notified once, after every record has been updated.
 	 * @param hashStrings The MD5 hashes to match to records to be checked
 	 */
 	public void setCheckedRecordsFromHashes(List<String> hashStrings){
-		Set<String> hashes = new HashSet<String>();
+		DigestSet hashes = new DigestSet(DigestAlgorithm.MD5, hashStrings.size());
+		long[] words = new long[2];
 		for(String hash : hashStrings){
-			hashes.add(hash);
+			try {
+				DigestHex.parse(hash, DigestAlgorithm.MD5, words, 0);
+				hashes.add(words[0], words[1]);
+			} catch (IllegalArgumentException e) {
+				// Not an MD5 so it cannot match any record
+			}
 		}
+		long[] fingerprints = getRecordFingerprints();
 		for (int i = 0; i < records.size(); i++) {
-			if(hashes.contains(hashRecord(records.get(i)))){
-				recordSelection.set(i, true);
-				this.fireTableCellUpdated(i, 0);
-			} else {
-				recordSelection.set(i, false);
-				this.fireTableCellUpdated(i, 0);
-			}
+			setRecordChecked(i, hashes.contains(fingerprints[i * 2], fingerprints[i * 2 + 1]));
 		}
+		if(viewIndex.size() > 0){
+			this.fireTableRowsUpdated(0, viewIndex.size() - 1);
+		}
+		notifyChanged();
 	}
 	
 	/***
@@ -491,12 +1239,7 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @return The checked record count
 	 */
 	public int getCheckedValueCount(){
-		int result = 0;
-		for (int i = 0; i < recordSelection.size(); i++) {
-			if(recordSelection.get(i) == true)
-				result++;
-		}
-		return result;
+		return checkedRecordCount;
 	}
 	
 	/***
@@ -506,7 +1249,7 @@ public class DynamicTableModel extends AbstractTableModel {
 	 * @return A count of currently visible records
 	 */
 	public int getVisibleValueCount(){
-		return filterMap.size();
+		return viewIndex.size();
 	}
 	
 	/***
@@ -537,12 +1280,17 @@ public class DynamicTableModel extends AbstractTableModel {
 	
 	/***
 	 * Shifts a given set of rows (based on row index) a given offset.  A value of -1 for the offset is up (earlier in the list)
-	 * while a value of 1 is down (later in the list).
+	 * while a value of 1 is down (later in the list).  While a filter or sort is applied rows do not correspond to
+	 * positions in the record list, so nothing is shifted and the positions are returned unchanged.
 	 * @param positions Position indices of the rows to be shifted
 	 * @param offset The offset to shift the rows.
 	 * @return The resulting new positions
 	 */
 	public int[] shiftRows(int[] positions, int offset){
+		// Row positions only correspond to record positions when displaying all records in their original order
+		if(!viewIndex.isIdentity()){
+			return positions;
+		}
 		List<Integer> selection = new ArrayList<Integer>();
 		for (int i = 0; i < positions.length; i++) {
 			if(positions[i] + offset < 0 || positions[i] + offset > records.size() - 1)
@@ -553,13 +1301,31 @@ public class DynamicTableModel extends AbstractTableModel {
 		Collections.sort(selection);
 		int minPos = selection.get(0);
 		Collections.reverse(selection);
-		List<Object> selectedObjects = new ArrayList<Object>();
-		for(int i : selection){
-			selectedObjects.add(records.remove(i));	
+		// Filtering in the background refers to records by their old positions, so it is restarted once they have moved
+		FilterRun interruptedRun = cancelAsyncFiltering();
+		recordsLock.writeLock().lock();
+		try {
+			List<Object> selectedObjects = new ArrayList<Object>();
+			for(int i : selection){
+				selectedObjects.add(records.remove(i));	
+			}
+			Collections.reverse(selectedObjects);
+			records.addAll(minPos+offset, selectedObjects);
+			recordIndexLookup = null;
+			if(valueCache != null){
+				valueCache.reset(records.size());
+			}
+			if(trigramIndex != null){
+				trigramIndex = buildTrigramIndex();
+			}
+			recordFingerprints = null;
+		} finally {
+			recordsLock.writeLock().unlock();
 		}
-		Collections.reverse(selectedObjects);
-		records.addAll(minPos+offset, selectedObjects);
 		this.fireTableDataChanged();
+		if(interruptedRun != null){
+			setFilterAsync(interruptedRun.expression, interruptedRun.whenFinished);
+		}
 		return new int[]{minPos+offset,minPos+offset+positions.length-1};
 	}
 	
@@ -0,0 +1,130 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.controls.models;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/***
+ * Computes the fingerprint {@link DynamicTableModel} uses to recognize a record when saving and restoring which records
+ * are checked: the MD5 of the record's column values concatenated together, encoded with the platform default charset.
+ * A hasher reuses its digest, encoder and buffers from one record to the next, so rather than creating one for each
+ * record, each thread uses its own from {@link #forCurrentThread()}.  A fingerprint is written as 2 longs, the first
+ * holding the first 8 bytes of the MD5 big-endian.
+ * @author Jason Wells
+ *
+ */
+public class DynamicTableRecordHasher {
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+	private static final ThreadLocal<DynamicTableRecordHasher> hashers = ThreadLocal.withInitial(DynamicTableRecordHasher::new);
+
+	private MessageDigest md5;
+	// Encodes the way String.getBytes() does, replacing rather than rejecting characters the charset cannot encode
+	private CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private StringBuilder content = new StringBuilder();
+	private ByteBuffer encoded = ByteBuffer.allocate(1024);
+	private byte[] digest = new byte[16];
+
+	private DynamicTableRecordHasher(){
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/***
+	 * Gets the hasher belonging to the calling thread
+	 * @return The calling thread's hasher
+	 */
+	public static DynamicTableRecordHasher forCurrentThread(){
+		return hashers.get();
+	}
+
+	/***
+	 * Starts the fingerprint of a new record, discarding any values appended for a previous record
+	 */
+	public void begin(){
+		content.setLength(0);
+	}
+
+	/***
+	 * Appends the next column value of the record being fingerprinted
+	 * @param value The column value, its toString form is hashed
+	 */
+	public void append(Object value){
+		content.append(String.valueOf(value));
+	}
+
+	/***
+	 * Completes the fingerprint of the record being fingerprinted
+	 * @param fingerprint Array receiving the fingerprint as 2 longs
+	 * @param offset Position in the array of the first long
+	 */
+	public void finish(long[] fingerprint, int offset){
+		encoder.reset();
+		CharBuffer input = CharBuffer.wrap(content);
+		encoded.clear();
+		while(encoder.encode(input, encoded, true) == CoderResult.OVERFLOW){
+			growEncoded();
+		}
+		while(encoder.flush(encoded) == CoderResult.OVERFLOW){
+			growEncoded();
+		}
+		encoded.flip();
+		md5.update(encoded);
+		try {
+			md5.digest(digest, 0, digest.length);
+		} catch (DigestException e) {
+			throw new IllegalStateException(e);
+		}
+		fingerprint[offset] = readLong(digest, 0);
+		fingerprint[offset + 1] = readLong(digest, 8);
+	}
+
+	private void growEncoded(){
+		ByteBuffer larger = ByteBuffer.allocate(encoded.capacity() * 2);
+		encoded.flip();
+		larger.put(encoded);
+		encoded = larger;
+	}
+
+	private static long readLong(byte[] bytes, int offset){
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return result;
+	}
+
+	/***
+	 * Formats a fingerprint as 32 lower case hexadecimal characters, the form in which record hashes are saved
+	 * @param fingerprint Array holding the fingerprint as 2 longs
+	 * @param offset Position in the array of the first long
+	 * @return The fingerprint as hexadecimal
+	 */
+	public static String toHex(long[] fingerprint, int offset){
+		char[] hex = new char[32];
+		for (int w = 0; w < 2; w++) {
+			long word = fingerprint[offset + w];
+			for (int i = 15; i >= 0; i--) {
+				hex[w * 16 + i] = HEX_CHARS[(int)word & 0xF];
+				word >>>= 4;
+			}
+		}
+		return new String(hex);
+	}
+}
@@ -0,0 +1,216 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.controls.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/***
+ * Inverted index of the trigrams (runs of 3 characters) in the displayed values of the records of a
+ * {@link DynamicTableModel}, used to find the few records which could contain a substring without inspecting every
+ * record.  Each trigram maps to a posting list, the ascending indices of the records with a value containing that
+ * trigram.  A record containing a substring must contain every trigram of it, so intersecting the posting lists of
+ * the substring's trigrams yields candidate records, which the filter provider then verifies.  Characters are indexed
+ * lower cased, so candidates are found regardless of case and a case sensitive filter simply rejects more of them.
+ * @author Jason Wells
+ *
+ */
+public class DynamicTableTrigramIndex {
+	private static final int INITIAL_POSTINGS_CAPACITY = 4;
+
+	private static class Postings {
+		int[] records = new int[INITIAL_POSTINGS_CAPACITY];
+		int size = 0;
+	}
+
+	private Map<Long,Postings> postingsByTrigram = new HashMap<Long,Postings>();
+	// The values each record was indexed with, needed to find its trigrams again when it is changed or removed
+	private List<String[]> recordValues = new ArrayList<String[]>();
+
+	/***
+	 * Gets the number of records indexed
+	 * @return Record count
+	 */
+	public int getRecordCount(){
+		return recordValues.size();
+	}
+
+	/***
+	 * Gets the number of distinct trigrams indexed
+	 * @return Trigram count
+	 */
+	public int getTrigramCount(){
+		return postingsByTrigram.size();
+	}
+
+	/***
+	 * Indexes a record appended to the end of the record list.
+	 * @param values The string form of each of the record's displayed values
+	 */
+	public void recordAdded(String[] values){
+		int recordIndex = recordValues.size();
+		recordValues.add(values);
+		for(long trigram : trigramsOf(values)){
+			Postings postings = postingsByTrigram.get(trigram);
+			if(postings == null){
+				postings = new Postings();
+				postingsByTrigram.put(trigram, postings);
+			}
+			// Records are added in index order so appending keeps the posting list ascending
+			if(postings.size == postings.records.length){
+				postings.records = Arrays.copyOf(postings.records, postings.size * 2);
+			}
+			postings.records[postings.size++] = recordIndex;
+		}
+	}
+
+	/***
+	 * Removes a record from the index and shifts the indices of the records after it down by one, to account for a
+	 * record removed from the record list.  Visits every posting list, so removing many records is better handled by
+	 * building a new index.
+	 * @param recordIndex Index the removed record had in the record list
+	 */
+	public void recordRemoved(int recordIndex){
+		recordValues.remove(recordIndex);
+		postingsByTrigram.values().removeIf(postings -> {
+			int position = Arrays.binarySearch(postings.records, 0, postings.size, recordIndex);
+			if(position >= 0){
+				System.arraycopy(postings.records, position + 1, postings.records, position, postings.size - position - 1);
+				postings.size--;
+			} else {
+				position = -position - 1;
+			}
+			for (int i = position; i < postings.size; i++) {
+				postings.records[i]--;
+			}
+			return postings.size == 0;
+		});
+	}
+
+	/***
+	 * Re-indexes a record whose displayed values have changed, for example after one of them has been edited.
+	 * @param recordIndex Index of the record in the record list
+	 * @param values The string form of each of the record's displayed values
+	 */
+	public void recordChanged(int recordIndex, String[] values){
+		long[] oldTrigrams = trigramsOf(recordValues.get(recordIndex));
+		long[] newTrigrams = trigramsOf(values);
+		recordValues.set(recordIndex, values);
+		for(long trigram : oldTrigrams){
+			if(Arrays.binarySearch(newTrigrams, trigram) < 0){
+				Postings postings = postingsByTrigram.get(trigram);
+				int position = Arrays.binarySearch(postings.records, 0, postings.size, recordIndex);
+				System.arraycopy(postings.records, position + 1, postings.records, position, postings.size - position - 1);
+				postings.size--;
+				if(postings.size == 0){
+					postingsByTrigram.remove(trigram);
+				}
+			}
+		}
+		for(long trigram : newTrigrams){
+			if(Arrays.binarySearch(oldTrigrams, trigram) < 0){
+				Postings postings = postingsByTrigram.get(trigram);
+				if(postings == null){
+					postings = new Postings();
+					postingsByTrigram.put(trigram, postings);
+				}
+				if(postings.size == postings.records.length){
+					postings.records = Arrays.copyOf(postings.records, postings.size * 2);
+				}
+				int position = -Arrays.binarySearch(postings.records, 0, postings.size, recordIndex) - 1;
+				System.arraycopy(postings.records, position, postings.records, position + 1, postings.size - position);
+				postings.records[position] = recordIndex;
+				postings.size++;
+			}
+		}
+	}
+
+	/***
+	 * Finds the records which may have a displayed value containing a substring, ignoring case.  Every record which
+	 * does is returned, along with some which do not, for example when the substring's trigrams are spread across
+	 * different values of the record, so candidates still need to be verified.
+	 * @param substring The substring to look for
+	 * @return Ascending indices of the candidate records, or null if the substring is shorter than a trigram, in which
+	 * case every record is a candidate
+	 */
+	public int[] candidates(String substring){
+		long[] trigrams = trigramsOf(new String[]{substring});
+		if(trigrams.length == 0){
+			return null;
+		}
+		Postings[] lists = new Postings[trigrams.length];
+		for (int t = 0; t < trigrams.length; t++) {
+			lists[t] = postingsByTrigram.get(trigrams[t]);
+			if(lists[t] == null){
+				return new int[0];
+			}
+		}
+
+		// Start from the shortest list, each intersection can then only shrink the result further
+		Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+		int[] result = Arrays.copyOf(lists[0].records, lists[0].size);
+		int resultSize = result.length;
+		for (int t = 1; t < lists.length && resultSize > 0; t++) {
+			resultSize = intersect(result, resultSize, lists[t]);
+		}
+		return resultSize == result.length ? result : Arrays.copyOf(result, resultSize);
+	}
+
+	/***
+	 * Keeps only the entries of result which are also in postings, binary searching postings from the position of
+	 * the previous match since both are ascending.
+	 * @return The number of entries kept at the start of result
+	 */
+	private static int intersect(int[] result, int resultSize, Postings postings){
+		int kept = 0;
+		int from = 0;
+		for (int i = 0; i < resultSize && from < postings.size; i++) {
+			int position = Arrays.binarySearch(postings.records, from, postings.size, result[i]);
+			if(position >= 0){
+				result[kept++] = result[i];
+				from = position + 1;
+			} else {
+				from = -position - 1;
+			}
+		}
+		return kept;
+	}
+
+	/***
+	 * Gets the distinct trigrams of some values, each packed as 3 lower cased 16 bit characters.  Trigrams never
+	 * span two values.
+	 * @return The trigrams in ascending order
+	 */
+	private static long[] trigramsOf(String[] values){
+		int count = 0;
+		for(String value : values){
+			count += Math.max(0, value.length() - 2);
+		}
+		long[] trigrams = new long[count];
+		count = 0;
+		for(String value : values){
+			if(value.length() < 3){
+				continue;
+			}
+			long trigram = ((long)Character.toLowerCase(value.charAt(0)) << 16) | Character.toLowerCase(value.charAt(1));
+			for (int i = 2; i < value.length(); i++) {
+				trigram = ((trigram << 16) | Character.toLowerCase(value.charAt(i))) & 0xFFFFFFFFFFFFL;
+				trigrams[count++] = trigram;
+			}
+		}
+		Arrays.sort(trigrams);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if(distinct == 0 || trigrams[distinct - 1] != trigrams[i]){
+				trigrams[distinct++] = trigrams[i];
+			}
+		}
+		return distinct == count ? trigrams : Arrays.copyOf(trigrams, distinct);
+	}
+}
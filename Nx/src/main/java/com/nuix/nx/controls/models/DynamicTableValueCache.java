@@ -0,0 +1,171 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.controls.models;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Caches the values yielded by a {@link DynamicTableValueCallback} so that painting and filtering a
+ * {@link DynamicTableModel} do not call back into (likely Ruby) code for the same cell over and over.  Values are
+ * held in an array per column indexed by record index, an entry not yet fetched holds a private marker so that
+ * null values can be cached as well.
+ * @author Jason Wells
+ *
+ */
+public class DynamicTableValueCache {
+	private static final Object NOT_CACHED = new Object();
+
+	private Object[][] columns;
+	private int recordCount;
+	// Set once every cell has been fetched, cleared by anything which leaves a cell not cached
+	private volatile boolean fullyCached = false;
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
+
+	/***
+	 * Creates a new empty cache.
+	 * @param columnCount Number of columns, not counting the check box column.
+	 * @param recordCount Number of records.
+	 */
+	public DynamicTableValueCache(int columnCount, int recordCount){
+		columns = new Object[columnCount][];
+		reset(recordCount);
+	}
+
+	/***
+	 * Discards all cached values and resizes the cache for a new number of records.
+	 * @param recordCount Number of records.
+	 */
+	public void reset(int recordCount){
+		this.recordCount = recordCount;
+		fullyCached = false;
+		for (int c = 0; c < columns.length; c++) {
+			columns[c] = new Object[Math.max(16, recordCount)];
+			Arrays.fill(columns[c], NOT_CACHED);
+		}
+	}
+
+	/***
+	 * Gets a cached value, fetching it from the callback and caching it if not yet present.  If the callback throws
+	 * the exception propagates and nothing is cached.
+	 * @param recordIndex Index of the record in the full record list.
+	 * @param column Column index relative to user data, so 0 is the first record column.
+	 * @param record The record, passed to the callback on a miss.
+	 * @param callback Callback yielding the value on a miss.
+	 * @return The cell value.
+	 */
+	public Object get(int recordIndex, int column, Object record, DynamicTableValueCallback callback){
+		Object value = columns[column][recordIndex];
+		if(value != NOT_CACHED){
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		value = callback.interact(record, column, false, null);
+		columns[column][recordIndex] = value;
+		return value;
+	}
+
+	/***
+	 * Whether a value is currently cached.
+	 * @param recordIndex Index of the record in the full record list.
+	 * @param column Column index relative to user data.
+	 * @return True if the cell's value is cached.
+	 */
+	public boolean isCached(int recordIndex, int column){
+		return columns[column][recordIndex] != NOT_CACHED;
+	}
+
+	/***
+	 * Records that every cell's value is cached, for example after fetching them all up front, so that reading
+	 * values will not call the value callback until a value is discarded or a record is added.
+	 */
+	public void markFullyCached(){
+		fullyCached = true;
+	}
+
+	/***
+	 * Whether every cell's value is cached, as recorded by {@link #markFullyCached()}.
+	 * @return True if reading any value is answered from the cache.
+	 */
+	public boolean isFullyCached(){
+		return fullyCached;
+	}
+
+	/***
+	 * Discards the cached values of every column of a record, for example after one of its values has been edited.
+	 * @param recordIndex Index of the record in the full record list.
+	 */
+	public void invalidateRecord(int recordIndex){
+		fullyCached = false;
+		for (int c = 0; c < columns.length; c++) {
+			columns[c][recordIndex] = NOT_CACHED;
+		}
+	}
+
+	/***
+	 * Discards the cached value of a single cell.
+	 * @param recordIndex Index of the record in the full record list.
+	 * @param column Column index relative to user data.
+	 */
+	public void invalidateCell(int recordIndex, int column){
+		fullyCached = false;
+		columns[column][recordIndex] = NOT_CACHED;
+	}
+
+	/***
+	 * Makes room for a record appended to the end of the record list.
+	 */
+	public void recordAdded(){
+		fullyCached = false;
+		for (int c = 0; c < columns.length; c++) {
+			if(recordCount == columns[c].length){
+				int oldLength = columns[c].length;
+				columns[c] = Arrays.copyOf(columns[c], oldLength * 2);
+				Arrays.fill(columns[c], oldLength, columns[c].length, NOT_CACHED);
+			}
+			columns[c][recordCount] = NOT_CACHED;
+		}
+		recordCount++;
+	}
+
+	/***
+	 * Shifts cached values down to account for a record removed from the record list.
+	 * @param recordIndex Index the removed record had in the full record list.
+	 */
+	public void recordRemoved(int recordIndex){
+		for (int c = 0; c < columns.length; c++) {
+			System.arraycopy(columns[c], recordIndex + 1, columns[c], recordIndex, recordCount - recordIndex - 1);
+			columns[c][recordCount - 1] = NOT_CACHED;
+		}
+		recordCount--;
+	}
+
+	/***
+	 * Gets the number of lookups answered from the cache.
+	 * @return Hit count.
+	 */
+	public long getHits(){
+		return hits.sum();
+	}
+
+	/***
+	 * Gets the number of lookups which had to call the value callback.
+	 * @return Miss count.
+	 */
+	public long getMisses(){
+		return misses.sum();
+	}
+
+	/***
+	 * Resets the hit and miss counters to 0.
+	 */
+	public void resetStatistics(){
+		hits.reset();
+		misses.reset();
+	}
+}
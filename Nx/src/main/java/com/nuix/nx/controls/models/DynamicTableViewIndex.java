@@ -0,0 +1,140 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.controls.models;
+
+import java.util.Arrays;
+
+/***
+ * Maps the rows displayed by a {@link DynamicTableModel} to indices in its full list of records.  The mapping is a
+ * plain int array, or no array at all when every record is displayed in its original order, so resolving a row
+ * while painting or scrolling is a single array read with no boxing or hashing.  Instances are immutable, filtering
+ * and sorting produce new instances.
+ * @author Jason Wells
+ *
+ */
+public class DynamicTableViewIndex {
+	/***
+	 * Compares two records by their index in the full record list, used to sort a view.
+	 */
+	public interface RecordComparator {
+		public int compare(int recordIndexA, int recordIndexB);
+	}
+
+	// Null when this is the identity mapping
+	private int[] recordIndices;
+	private int size;
+
+	private DynamicTableViewIndex(int[] recordIndices, int size){
+		this.recordIndices = recordIndices;
+		this.size = size;
+	}
+
+	/***
+	 * Creates a view displaying every record in its original order.
+	 * @param recordCount Number of records.
+	 * @return The identity view.
+	 */
+	public static DynamicTableViewIndex identity(int recordCount){
+		return new DynamicTableViewIndex(null, recordCount);
+	}
+
+	/***
+	 * Creates a view from an array of record indices.  The array is used directly rather than copied.
+	 * @param recordIndices Record index displayed at each row.
+	 * @param size Number of leading entries of the array in use.
+	 * @return The view.
+	 */
+	public static DynamicTableViewIndex of(int[] recordIndices, int size){
+		return new DynamicTableViewIndex(recordIndices, size);
+	}
+
+	/***
+	 * Gets the number of displayed rows.
+	 * @return Row count.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/***
+	 * Whether this view displays every record in its original order, so row and record indices are the same.
+	 * @return True if this is the identity view.
+	 */
+	public boolean isIdentity(){
+		return recordIndices == null;
+	}
+
+	/***
+	 * Gets the index in the full record list of the record displayed at a row.
+	 * @param row The displayed row.
+	 * @return The record index.
+	 */
+	public int getRecordIndex(int row){
+		if(row < 0 || row >= size){
+			throw new IndexOutOfBoundsException("Row "+row+" of "+size);
+		}
+		return recordIndices == null ? row : recordIndices[row];
+	}
+
+	/***
+	 * Creates a view of the rows of this view sorted by a comparator of their records.  The sort is stable, so
+	 * records which compare equal keep their relative order.
+	 * @param comparator Comparator of record indices.
+	 * @return The sorted view.
+	 */
+	public DynamicTableViewIndex sorted(RecordComparator comparator){
+		int[] result = toArray();
+		mergeSort(result, Arrays.copyOf(result, size), 0, size, comparator);
+		return new DynamicTableViewIndex(result, size);
+	}
+
+	/***
+	 * Sorts source[from, to) into destination, which initially holds the same values.
+	 */
+	private static void mergeSort(int[] destination, int[] source, int from, int to, RecordComparator comparator){
+		int length = to - from;
+		if(length < 16){
+			for (int i = from + 1; i < to; i++) {
+				int value = destination[i];
+				int j = i - 1;
+				while(j >= from && comparator.compare(destination[j], value) > 0){
+					destination[j + 1] = destination[j];
+					j--;
+				}
+				destination[j + 1] = value;
+			}
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		// Roles swap at each level so each level merges from the array the level below sorted into
+		mergeSort(source, destination, from, mid, comparator);
+		mergeSort(source, destination, mid, to, comparator);
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++) {
+			if(right >= to || (left < mid && comparator.compare(source[left], source[right]) <= 0)){
+				destination[i] = source[left++];
+			} else {
+				destination[i] = source[right++];
+			}
+		}
+	}
+
+	/***
+	 * Gets a copy of the record index displayed at each row.
+	 * @return Array of {@link #size()} record indices.
+	 */
+	public int[] toArray(){
+		if(recordIndices == null){
+			int[] result = new int[size];
+			for (int i = 0; i < size; i++) {
+				result[i] = i;
+			}
+			return result;
+		}
+		return Arrays.copyOf(recordIndices, size);
+	}
+}
@@ -0,0 +1,193 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.nuix.nx.callbacks.SimpleProgressCallback;
+
+import nuix.Case;
+import nuix.Item;
+
+/***
+ * Writes the digests of the items responsive to a search directly to a Nuix digest list, without first building a
+ * collection of every responsive item.  The search is split into batches by digest prefix, for example
+ * <code>(query) AND md5:3f*</code>, sized so each batch holds roughly the configured number of items.  Batches are
+ * run in ascending prefix order, so once each batch's digests are sorted they can be appended straight to the
+ * digest list file.  Only one batch of items and digests is held in memory at a time.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.CaseDigestExporter
+ *
+ * exporter = CaseDigestExporter.new($current_case)
+ * exporter.setProgressCallback{|current, total| puts "#{current}/#{total}"}
+ * written = exporter.exportDigestListByName("kind:email", "Case Emails")
+ * puts "Digests Written: #{written} in #{exporter.getBatchCount} batches"
+ * }
+ * </pre>
+ * Since batches are defined by digest prefix, items without a digest are not visited.
+ * @author Jason Wells
+ *
+ */
+public class CaseDigestExporter {
+	private static Logger logger = Logger.getLogger(CaseDigestExporter.class);
+
+	/***
+	 * Default target number of items per batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 250000;
+
+	// 16^4 batches, with more items than this a batch is allowed to exceed the batch size
+	private static final int MAX_PREFIX_LENGTH = 4;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private Case nuixCase;
+	private DigestAlgorithm algorithm;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private SimpleProgressCallback progressCallback = null;
+
+	private long itemsVisited;
+	private int batchCount;
+
+	/***
+	 * Creates an exporter of the MD5 digests of items in the specified case.
+	 * @param nuixCase The case to search.
+	 */
+	public CaseDigestExporter(Case nuixCase){
+		this(nuixCase, DigestAlgorithm.MD5);
+	}
+
+	/***
+	 * Creates an exporter of the digests of items in the specified case.
+	 * @param nuixCase The case to search.
+	 * @param algorithm The algorithm of the digests to export.
+	 */
+	public CaseDigestExporter(Case nuixCase, DigestAlgorithm algorithm){
+		this.nuixCase = nuixCase;
+		this.algorithm = algorithm;
+	}
+
+	/***
+	 * Sets the target number of items per batch.  Defaults to {@link #DEFAULT_BATCH_SIZE}.
+	 * @param batchSize Target items per batch.
+	 */
+	public void setBatchSize(int batchSize){
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/***
+	 * Sets a callback notified after each batch with the number of items visited so far and the total responsive items.
+	 * @param progressCallback The callback, null for no progress reporting.
+	 */
+	public void setProgressCallback(SimpleProgressCallback progressCallback){
+		this.progressCallback = progressCallback;
+	}
+
+	/***
+	 * Gets the number of items visited by the most recent export.
+	 * @return Items visited.
+	 */
+	public long getItemsVisited(){
+		return itemsVisited;
+	}
+
+	/***
+	 * Gets the number of batches the most recent export was split into.
+	 * @return Batch count.
+	 */
+	public int getBatchCount(){
+		return batchCount;
+	}
+
+	/***
+	 * Writes the distinct digests of the items responsive to a query to a new digest list file.
+	 * @param query The Nuix search query, an empty query exports every item with a digest.
+	 * @param output The location of the digest list file to write.
+	 * @return The number of distinct digests written.
+	 * @throws IOException If there is an issue searching the case or writing the digest list.
+	 */
+	public long exportDigestList(String query, File output) throws IOException{
+		itemsVisited = 0;
+		batchCount = 0;
+
+		long total = nuixCase.count(query == null ? "" : query);
+		int prefixLength = 0;
+		while(prefixLength < MAX_PREFIX_LENGTH && total / (1L << (4 * prefixLength)) > batchSize){
+			prefixLength++;
+		}
+		int prefixCount = 1 << (4 * prefixLength);
+
+		int words = algorithm.getWordCount();
+		long[] digests = new long[0];
+		char[] prefix = new char[prefixLength];
+		try(SortedDigestListWriter writer = new SortedDigestListWriter(output, algorithm)){
+			for (int p = 0; p < prefixCount; p++) {
+				for (int c = 0; c < prefixLength; c++) {
+					prefix[c] = HEX_DIGITS[(p >>> (4 * (prefixLength - 1 - c))) & 0xF];
+				}
+				String prefixString = new String(prefix);
+				Set<Item> items = nuixCase.searchUnsorted(batchQuery(query, prefixString));
+				batchCount++;
+
+				if(digests.length < items.size() * words){
+					digests = new long[items.size() * words];
+				}
+				int count = 0;
+				for(Item item : items){
+					String digest = algorithm.getItemDigest(item);
+					// Guards against an item outside the prefix which would break the sorted order across batches
+					if(digest == null || !digest.regionMatches(true, 0, prefixString, 0, prefixLength)){
+						continue;
+					}
+					try{
+						DigestHex.parse(digest, algorithm, digests, count * words);
+						count++;
+					} catch (IllegalArgumentException e){
+						logger.warn("Skipping item "+item.getGuid()+" with invalid "+algorithm.getHeaderName()+" "+digest);
+					}
+				}
+				itemsVisited += items.size();
+
+				DigestArrays.sort(digests, count, words);
+				int distinct = DigestArrays.dedupeSorted(digests, count, words);
+				for (int i = 0; i < distinct; i++) {
+					writer.write(digests, i * words);
+				}
+
+				if(progressCallback != null){
+					progressCallback.progressUpdated(itemsVisited, total);
+				}
+			}
+			return writer.getDigestsWritten();
+		}
+	}
+
+	/***
+	 * Writes the distinct digests of the items responsive to a query to the digest list with the provided name.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param query The Nuix search query, an empty query exports every item with a digest.
+	 * @param name The name of the digest list to write.
+	 * @return The number of distinct digests written.
+	 * @throws IOException If there is an issue searching the case or writing the digest list.
+	 */
+	public long exportDigestListByName(String query, String name) throws IOException{
+		return exportDigestList(query, DigestHelper.getDigestListLocation(name));
+	}
+
+	private String batchQuery(String query, String prefix){
+		String digestClause = algorithm.getSearchField()+":"+prefix+"*";
+		if(query == null || query.trim().isEmpty()){
+			return digestClause;
+		} else {
+			return "("+query+") AND "+digestClause;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import nuix.Item;
+
+/***
+ * Collects digests from many threads at once, such as from the callback provided to Processor.whenItemProcessed,
+ * which is called from each of the processing worker threads.  {@link DigestHelper} is not safe for that use.
+ * Digests are accumulated into a number of lock striped shards, with the shard chosen from the digest's own bits so
+ * each digest is only ever stored in one shard.  Digests are evenly distributed, so with more shards than producer
+ * threads producers rarely wait on each other.  A snapshot locks one shard at a time while copying it, so producers
+ * keep adding to the other shards while a snapshot is taken.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.ConcurrentDigestAccumulator
+ *
+ * accumulator = ConcurrentDigestAccumulator.new
+ * processor.whenItemProcessed do |info|
+ *   accumulator.add(info.getMd5)
+ * end
+ * processor.process
+ *
+ * saved = accumulator.saveDigestList(DigestHelper::getDigestListLocation("Processed"))
+ * puts "Digests Saved: #{saved}"
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class ConcurrentDigestAccumulator {
+	private DigestAlgorithm algorithm;
+	private DigestSet[] shards;
+	private ReentrantLock[] locks;
+	private int shardMask;
+	private LongAdder digestsAdded = new LongAdder();
+
+	/***
+	 * Creates an MD5 accumulator with a shard count based on the number of available processors.
+	 */
+	public ConcurrentDigestAccumulator(){
+		this(DigestAlgorithm.MD5);
+	}
+
+	/***
+	 * Creates an accumulator with a shard count based on the number of available processors.
+	 * @param algorithm The algorithm of the digests which will be added.
+	 */
+	public ConcurrentDigestAccumulator(DigestAlgorithm algorithm){
+		this(algorithm, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/***
+	 * Creates an accumulator.
+	 * @param algorithm The algorithm of the digests which will be added.
+	 * @param shardCount Number of shards, rounded up to a power of 2.  Should be at least the number of threads
+	 * expected to add digests concurrently.
+	 */
+	public ConcurrentDigestAccumulator(DigestAlgorithm algorithm, int shardCount){
+		this.algorithm = algorithm;
+		int count = Integer.highestOneBit(Math.max(1, Math.min(shardCount, 1 << 16)) * 2 - 1);
+		shards = new DigestSet[count];
+		locks = new ReentrantLock[count];
+		for (int i = 0; i < count; i++) {
+			shards[i] = new DigestSet(algorithm);
+			locks[i] = new ReentrantLock();
+		}
+		shardMask = count - 1;
+	}
+
+	/***
+	 * Gets the algorithm of the digests being accumulated.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the number of shards digests are accumulated into.
+	 * @return The shard count.
+	 */
+	public int getShardCount(){
+		return shards.length;
+	}
+
+	/***
+	 * Locks the shard which holds a digest.  Every digest has at least 2 words, both of which contribute.
+	 * @return Index of the locked shard, caller must unlock it.
+	 */
+	private int lockShard(long high, long low){
+		long bits = high ^ low;
+		int index = (int)(bits ^ (bits >>> 32)) & shardMask;
+		locks[index].lock();
+		return index;
+	}
+
+	/***
+	 * Adds an MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 */
+	public void add(long high, long low){
+		if(algorithm != DigestAlgorithm.MD5){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this accumulator holds "+algorithm.getHeaderName());
+		}
+		int index = lockShard(high, low);
+		try{
+			shards[index].add(high, low);
+		} finally {
+			locks[index].unlock();
+		}
+		digestsAdded.increment();
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 */
+	public void add(long[] digest, int offset){
+		int index = lockShard(digest[offset], digest[offset + 1]);
+		try{
+			shards[index].add(digest, offset);
+		} finally {
+			locks[index].unlock();
+		}
+		digestsAdded.increment();
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Digest as byte array, must match the width of the accumulator's algorithm.
+	 */
+	public void add(byte[] digest){
+		// Decode before taking a shard so the lock is held as briefly as possible
+		add(algorithm.toWords(digest), 0);
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Digest as hexadecimal string.  Null or empty values are ignored.
+	 */
+	public void add(String digest){
+		if(digest == null || digest.isEmpty()){ return; }
+		// Parse before taking a shard so the lock is held as briefly as possible
+		long[] words = new long[algorithm.getWordCount()];
+		DigestHex.parse(digest, algorithm, words, 0);
+		add(words, 0);
+	}
+
+	/***
+	 * Adds the digest of an item, using the item digest matching this accumulator's algorithm.
+	 * @param item The item to add.  Items with a null or empty digest are ignored.
+	 */
+	public void add(Item item){
+		add(algorithm.getItemDigest(item));
+	}
+
+	/***
+	 * Gets the number of digests added so far, including duplicates.
+	 * @return The count of digests added.
+	 */
+	public long getDigestsAdded(){
+		return digestsAdded.sum();
+	}
+
+	/***
+	 * Gets the number of distinct digests added so far.  Cheaper than taking a {@link #snapshot()} since each digest
+	 * is only held by one shard, so the shard sizes can simply be summed.
+	 * @return The count of distinct digests added.
+	 */
+	public long getDistinctDigestCount(){
+		long size = 0;
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].lock();
+			try{
+				size += shards[i].size();
+			} finally {
+				locks[i].unlock();
+			}
+		}
+		return size;
+	}
+
+	/***
+	 * Merges the shards into a new DigestHelper.  Each shard is locked only while it is being copied, so digests
+	 * may continue to be added while the snapshot is taken.  Digests added during the snapshot may or may not be
+	 * included in it.
+	 * @return A DigestHelper containing the distinct digests accumulated so far.
+	 */
+	public DigestHelper snapshot(){
+		DigestSet merged = new DigestSet(algorithm);
+		for (int i = 0; i < shards.length; i++) {
+			locks[i].lock();
+			try{
+				merged.addAll(shards[i]);
+			} finally {
+				locks[i].unlock();
+			}
+		}
+		return new DigestHelper(merged);
+	}
+
+	/***
+	 * Saves a Nuix digest list of a {@link #snapshot()} of the digests accumulated so far.
+	 * @param location The location in which to save the Nuix formatted digest list file.
+	 * @return The number of digests saved.
+	 * @throws IOException If there is an issue with the output stream.
+	 */
+	public int saveDigestList(File location) throws IOException{
+		return snapshot().saveDigestList(location);
+	}
+
+	/***
+	 * Saves a digest list of a {@link #snapshot()} to the appropriate location with provided name.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param name The name of the digest list to save.
+	 * @return The number of digests saved.
+	 * @throws IOException If there is an issue with the output stream.
+	 */
+	public int saveDigestListByName(String name) throws IOException{
+		return saveDigestList(DigestHelper.getDigestListLocation(name));
+	}
+}
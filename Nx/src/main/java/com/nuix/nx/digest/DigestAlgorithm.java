@@ -0,0 +1,185 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.nio.ByteBuffer;
+
+import nuix.Item;
+
+/***
+ * The digest algorithms supported in Nuix digest lists.  Each algorithm has a fixed record width in bytes.  In memory
+ * a digest is held as {@link #getWordCount()} big-endian longs, with the final long zero padded when the width is not
+ * a multiple of 8 (SHA-1 for example).  Comparing those longs as unsigned values gives the same order as comparing the
+ * digest bytes lexicographically, which is the order digests are stored in a digest list file.
+ * @author Jason Wells
+ *
+ */
+public enum DigestAlgorithm {
+	MD5("MD5", 16, "md5"),
+	SHA1("SHA-1", 20, "sha1"),
+	SHA256("SHA-256", 32, "sha256");
+
+	private String headerName;
+	private int width;
+	private int wordCount;
+	private String searchField;
+
+	private DigestAlgorithm(String headerName, int width, String searchField){
+		this.headerName = headerName;
+		this.width = width;
+		this.searchField = searchField;
+		this.wordCount = (width + 7) / 8;
+	}
+
+	/***
+	 * Gets the algorithm name as written in a digest list header.
+	 * @return The algorithm name.
+	 */
+	public String getHeaderName(){
+		return headerName;
+	}
+
+	/***
+	 * Gets the Nuix search field holding item digests of this algorithm, for example "md5" as in md5:abc*
+	 * @return The search field name.
+	 */
+	public String getSearchField(){
+		return searchField;
+	}
+
+	/***
+	 * Gets the width of a digest in bytes.
+	 * @return The digest width in bytes.
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/***
+	 * Gets the number of longs used to hold a digest in memory.
+	 * @return The number of longs per digest.
+	 */
+	public int getWordCount(){
+		return wordCount;
+	}
+
+	/***
+	 * Resolves an algorithm from its name.  Comparison ignores case and dashes so "SHA1", "sha-1" and "SHA-1" are equivalent.
+	 * @param name The algorithm name, for example as read from a digest list header.
+	 * @return The matching algorithm, or null if the name is not recognized.
+	 */
+	public static DigestAlgorithm fromName(String name){
+		if(name == null){ return null; }
+		String normalized = name.replace("-", "").trim();
+		for(DigestAlgorithm algorithm : values()){
+			if(algorithm.headerName.replace("-", "").equalsIgnoreCase(normalized)){
+				return algorithm;
+			}
+		}
+		return null;
+	}
+
+	/***
+	 * Gets the digest of the provided item for this algorithm as a hexadecimal string.
+	 * @param item The item to get the digest of.
+	 * @return The item's digest as hexadecimal, may be null or empty if the item has no such digest.
+	 */
+	public String getItemDigest(Item item){
+		switch(this){
+		case SHA1:
+			return item.getDigests().getSha1();
+		case SHA256:
+			return item.getDigests().getSha256();
+		default:
+			return item.getDigests().getMd5();
+		}
+	}
+
+	/***
+	 * Throws an IllegalArgumentException if the provided digest is not the width of this algorithm.
+	 * @param digest The digest bytes to check.
+	 */
+	public void checkWidth(byte[] digest){
+		if(digest == null || digest.length != width){
+			throw new IllegalArgumentException(headerName+" digest must be exactly "+width+" bytes");
+		}
+	}
+
+	/***
+	 * Converts digest bytes into words.
+	 * @param digest The digest bytes, must be {@link #getWidth()} bytes long.
+	 * @param words Destination array.
+	 * @param offset Offset in the destination array of the first word.
+	 */
+	public void toWords(byte[] digest, long[] words, int offset){
+		checkWidth(digest);
+		for (int w = 0; w < wordCount; w++) {
+			long value = 0;
+			for (int b = 0; b < 8; b++) {
+				int index = w * 8 + b;
+				value = (value << 8) | (index < width ? (digest[index] & 0xFF) : 0);
+			}
+			words[offset + w] = value;
+		}
+	}
+
+	/***
+	 * Converts digest bytes into a new array of words.
+	 * @param digest The digest bytes, must be {@link #getWidth()} bytes long.
+	 * @return The digest as words.
+	 */
+	public long[] toWords(byte[] digest){
+		long[] words = new long[wordCount];
+		toWords(digest, words, 0);
+		return words;
+	}
+
+	/***
+	 * Converts words back into digest bytes.
+	 * @param words Source array.
+	 * @param offset Offset in the source array of the first word.
+	 * @return The digest bytes.
+	 */
+	public byte[] toBytes(long[] words, int offset){
+		byte[] digest = new byte[width];
+		writeRecord(words, offset, digest);
+		return digest;
+	}
+
+	/***
+	 * Reads a digest record from a buffer into words.
+	 * @param buffer Big-endian buffer to read from.
+	 * @param position Absolute position of the record in the buffer.
+	 * @param words Destination array.
+	 * @param offset Offset in the destination array of the first word.
+	 */
+	public void readRecord(ByteBuffer buffer, int position, long[] words, int offset){
+		int fullWords = width / 8;
+		for (int w = 0; w < fullWords; w++) {
+			words[offset + w] = buffer.getLong(position + w * 8);
+		}
+		if(fullWords < wordCount){
+			// Only SHA-1 has a partial word, its final 4 bytes
+			long tail = 0;
+			for (int b = fullWords * 8; b < width; b++) {
+				tail = (tail << 8) | (buffer.get(position + b) & 0xFF);
+			}
+			words[offset + fullWords] = tail << ((wordCount * 8 - width) * 8);
+		}
+	}
+
+	/***
+	 * Writes a digest record held as words into a byte array in file form.
+	 * @param words Source array.
+	 * @param offset Offset in the source array of the first word.
+	 * @param record Destination of {@link #getWidth()} bytes.
+	 */
+	public void writeRecord(long[] words, int offset, byte[] record){
+		for (int i = 0; i < width; i++) {
+			record[i] = (byte)(words[offset + i / 8] >>> (56 - (i % 8) * 8));
+		}
+	}
+}
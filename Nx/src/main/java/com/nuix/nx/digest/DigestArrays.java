@@ -0,0 +1,148 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+/***
+ * Helper methods for working with digests stored as consecutive runs of longs (see {@link DigestAlgorithm#getWordCount()})
+ * in a flat long array.  Ordering is unsigned lexicographic order of the underlying digest bytes, the order used by Nuix
+ * digest list files.
+ * @author Jason Wells
+ *
+ */
+class DigestArrays {
+	private static final int INSERTION_SORT_THRESHOLD = 24;
+
+	private DigestArrays(){}
+
+	/***
+	 * Compares two MD5 digests in unsigned lexicographic order of their bytes.
+	 */
+	static int compare(long highA, long lowA, long highB, long lowB){
+		int result = Long.compareUnsigned(highA, highB);
+		if(result != 0){ return result; }
+		return Long.compareUnsigned(lowA, lowB);
+	}
+
+	/***
+	 * Compares two digests in unsigned lexicographic order of their bytes.
+	 */
+	static int compare(long[] a, int offsetA, long[] b, int offsetB, int words){
+		for (int w = 0; w < words; w++) {
+			int result = Long.compareUnsigned(a[offsetA + w], b[offsetB + w]);
+			if(result != 0){ return result; }
+		}
+		return 0;
+	}
+
+	/***
+	 * Whether two digests are equal.
+	 */
+	static boolean equals(long[] a, int offsetA, long[] b, int offsetB, int words){
+		for (int w = 0; w < words; w++) {
+			if(a[offsetA + w] != b[offsetB + w]){ return false; }
+		}
+		return true;
+	}
+
+	/***
+	 * Whether a digest is all zero.
+	 */
+	static boolean isZero(long[] a, int offset, int words){
+		for (int w = 0; w < words; w++) {
+			if(a[offset + w] != 0){ return false; }
+		}
+		return true;
+	}
+
+	/***
+	 * Sorts the first count digests in the provided array.
+	 * @param digests Array of digests, each occupying words consecutive longs.
+	 * @param count Number of digests to sort.
+	 * @param words Number of longs per digest.
+	 */
+	static void sort(long[] digests, int count, int words){
+		quickSort(digests, 0, count - 1, words, new long[words]);
+	}
+
+	/***
+	 * Removes adjacent duplicate digests from an already sorted array, compacting the remaining digests to the front.
+	 * @param digests Sorted array of digests, each occupying words consecutive longs.
+	 * @param count Number of digests in use.
+	 * @param words Number of longs per digest.
+	 * @return The number of distinct digests now at the front of the array.
+	 */
+	static int dedupeSorted(long[] digests, int count, int words){
+		if(count < 2){ return count; }
+		int write = 1;
+		for (int read = 1; read < count; read++) {
+			if(!equals(digests, read * words, digests, (write - 1) * words, words)){
+				System.arraycopy(digests, read * words, digests, write * words, words);
+				write++;
+			}
+		}
+		return write;
+	}
+
+	private static void quickSort(long[] digests, int left, int right, int words, long[] pivot){
+		// Recurse into the smaller partition and loop on the larger so stack depth stays logarithmic
+		while(right - left > INSERTION_SORT_THRESHOLD){
+			int middle = (left + right) >>> 1;
+			medianOfThree(digests, left, middle, right, words);
+			System.arraycopy(digests, middle * words, pivot, 0, words);
+
+			int i = left;
+			int j = right;
+			while(i <= j){
+				while(compare(digests, i * words, pivot, 0, words) < 0){ i++; }
+				while(compare(digests, j * words, pivot, 0, words) > 0){ j--; }
+				if(i <= j){
+					swap(digests, i, j, words);
+					i++;
+					j--;
+				}
+			}
+
+			if(j - left < right - i){
+				quickSort(digests, left, j, words, pivot);
+				left = i;
+			} else {
+				quickSort(digests, i, right, words, pivot);
+				right = j;
+			}
+		}
+		insertionSort(digests, left, right, words, pivot);
+	}
+
+	private static void medianOfThree(long[] digests, int a, int b, int c, int words){
+		if(compare(digests, b * words, digests, a * words, words) < 0){ swap(digests, a, b, words); }
+		if(compare(digests, c * words, digests, b * words, words) < 0){
+			swap(digests, b, c, words);
+			if(compare(digests, b * words, digests, a * words, words) < 0){ swap(digests, a, b, words); }
+		}
+	}
+
+	private static void insertionSort(long[] digests, int left, int right, int words, long[] scratch){
+		for (int i = left + 1; i <= right; i++) {
+			System.arraycopy(digests, i * words, scratch, 0, words);
+			int j = i - 1;
+			while(j >= left && compare(digests, j * words, scratch, 0, words) > 0){
+				System.arraycopy(digests, j * words, digests, (j + 1) * words, words);
+				j--;
+			}
+			System.arraycopy(scratch, 0, digests, (j + 1) * words, words);
+		}
+	}
+
+	private static void swap(long[] digests, int a, int b, int words){
+		int ia = a * words;
+		int ib = b * words;
+		for (int w = 0; w < words; w++) {
+			long value = digests[ia + w];
+			digests[ia + w] = digests[ib + w];
+			digests[ib + w] = value;
+		}
+	}
+}
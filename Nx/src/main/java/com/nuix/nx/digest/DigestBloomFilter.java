@@ -0,0 +1,284 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * A blocked Bloom filter over digests.  All of the bits for a given digest fall within a single 512 bit block
+ * (one cache line), so a lookup touches one block of memory regardless of how many hash functions are used.
+ * A negative answer is definitive, a positive answer means the digest is probably present and should be
+ * confirmed against the full digest structure.
+ * @author Jason Wells
+ *
+ */
+public class DigestBloomFilter {
+	private static final String MAGIC = "F2BF";
+	private static final int VERSION = 1;
+	private static final int BLOCK_LONGS = 8;
+	private static final int BLOCK_BITS = BLOCK_LONGS * 64;
+	// Blocked filters lose a little accuracy versus classic Bloom filters, so we over provision bits to compensate
+	private static final double BLOCKING_OVERHEAD = 1.25;
+	private static final int MAX_HASH_COUNT = 16;
+
+	private long[] bits;
+	private int blockCount;
+	private int hashCount;
+
+	private DigestBloomFilter(long[] bits, int hashCount){
+		this.bits = bits;
+		this.blockCount = bits.length / BLOCK_LONGS;
+		this.hashCount = hashCount;
+	}
+
+	/***
+	 * Creates an empty filter sized for the expected number of digests and desired false positive rate.
+	 * @param expectedDigests Number of digests which will be added.
+	 * @param falsePositiveRate Desired false positive rate, for example 0.01 for 1%.
+	 */
+	public DigestBloomFilter(long expectedDigests, double falsePositiveRate){
+		if(falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0){
+			throw new IllegalArgumentException("False positive rate must be between 0 and 1 exclusive");
+		}
+		expectedDigests = Math.max(1, expectedDigests);
+		double ln2 = Math.log(2);
+		double totalBits = -expectedDigests * Math.log(falsePositiveRate) / (ln2 * ln2);
+		long blocks = Math.max(1, (long)Math.ceil(totalBits * BLOCKING_OVERHEAD / BLOCK_BITS));
+		if(blocks * BLOCK_LONGS > Integer.MAX_VALUE - 8){
+			throw new IllegalArgumentException("Bloom filter for "+expectedDigests+" digests at rate "+falsePositiveRate+" is too large");
+		}
+		bits = new long[(int)blocks * BLOCK_LONGS];
+		blockCount = (int)blocks;
+		hashCount = (int)Math.max(1, Math.min(MAX_HASH_COUNT, Math.round(totalBits / expectedDigests * ln2)));
+	}
+
+	private static long mix(long value){
+		value ^= (value >>> 33);
+		value *= 0xff51afd7ed558ccdL;
+		value ^= (value >>> 33);
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= (value >>> 33);
+		return value;
+	}
+
+	private int blockFor(long blockHash){
+		// Maps the top 32 bits of the hash onto [0, blockCount) without a division
+		return (int)(((blockHash >>> 32) * blockCount) >>> 32);
+	}
+
+	/***
+	 * Adds a digest to this filter.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 */
+	public void add(long high, long low){
+		long blockHash = mix(high ^ Long.rotateLeft(low, 32));
+		long bitHash = mix(low + 0x9e3779b97f4a7c15L * high);
+		int base = blockFor(blockHash) * BLOCK_LONGS;
+		int h1 = (int)bitHash;
+		int h2 = (int)(bitHash >>> 32) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+			bits[base + (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	/***
+	 * Whether the digest may be present in this filter.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return False if the digest is definitely not present, true if it probably is.
+	 */
+	public boolean mightContain(long high, long low){
+		long blockHash = mix(high ^ Long.rotateLeft(low, 32));
+		long bitHash = mix(low + 0x9e3779b97f4a7c15L * high);
+		int base = blockFor(blockHash) * BLOCK_LONGS;
+		int h1 = (int)bitHash;
+		int h2 = (int)(bitHash >>> 32) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+			if((bits[base + (bit >>> 6)] & (1L << bit)) == 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/***
+	 * Adds a digest of any supported algorithm to this filter.
+	 * @param digest Array holding the digest as big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @param words Number of longs making up the digest, see {@link DigestAlgorithm#getWordCount()}.
+	 */
+	public void add(long[] digest, int offset, int words){
+		add(digest[offset], foldLow(digest, offset, words));
+	}
+
+	/***
+	 * Whether a digest of any supported algorithm may be present in this filter.
+	 * @param digest Array holding the digest as big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @param words Number of longs making up the digest, see {@link DigestAlgorithm#getWordCount()}.
+	 * @return False if the digest is definitely not present, true if it probably is.
+	 */
+	public boolean mightContain(long[] digest, int offset, int words){
+		return mightContain(digest[offset], foldLow(digest, offset, words));
+	}
+
+	/***
+	 * Folds the longs after the first into a single long.  For MD5 this is just the second long, so MD5 digests
+	 * hash the same through either form of add and mightContain.
+	 */
+	private static long foldLow(long[] digest, int offset, int words){
+		long low = digest[offset + 1];
+		for (int w = 2; w < words; w++) {
+			low ^= Long.rotateLeft(digest[offset + w], w * 16);
+		}
+		return low;
+	}
+
+	/***
+	 * Gets the number of hash functions used by this filter.
+	 * @return The hash function count.
+	 */
+	public int getHashCount(){
+		return hashCount;
+	}
+
+	/***
+	 * Gets the number of bytes of heap used by this filter's bits.
+	 * @return Size of the filter in bytes.
+	 */
+	public long getSizeInBytes(){
+		return (long)bits.length * Long.BYTES;
+	}
+
+	/***
+	 * Builds a filter from every digest in a digest list file, streaming the file rather than loading it.
+	 * @param digestList The digest list file.
+	 * @param falsePositiveRate Desired false positive rate, for example 0.01 for 1%.
+	 * @return A filter containing every digest in the file.
+	 * @throws IOException If there is an issue reading the digest list.
+	 */
+	public static DigestBloomFilter build(File digestList, double falsePositiveRate) throws IOException{
+		try(DigestListReader reader = new DigestListReader(digestList)){
+			DigestBloomFilter filter = new DigestBloomFilter(reader.getDigestCount(), falsePositiveRate);
+			int words = reader.getAlgorithm().getWordCount();
+			while(reader.next()){
+				filter.add(reader.getDigest(), 0, words);
+			}
+			return filter;
+		}
+	}
+
+	/***
+	 * Builds a filter from every digest in a digest set.
+	 * @param digestSet The digests to add.
+	 * @param falsePositiveRate Desired false positive rate, for example 0.01 for 1%.
+	 * @return A filter containing every digest in the set.
+	 */
+	public static DigestBloomFilter build(DigestSet digestSet, double falsePositiveRate){
+		DigestBloomFilter filter = new DigestBloomFilter(digestSet.size(), falsePositiveRate);
+		int words = digestSet.getAlgorithm().getWordCount();
+		digestSet.forEach((digests, offset) -> filter.add(digests, offset, words));
+		return filter;
+	}
+
+	/***
+	 * Gets the location a filter for the given digest list is stored at, being the digest list's location with ".bloom" appended.
+	 * @param digestList The digest list file.
+	 * @return The location of the filter file.
+	 */
+	public static File getFilterLocation(File digestList){
+		return new File(digestList.getPath()+".bloom");
+	}
+
+	/***
+	 * Saves this filter.  The size and modified time of the digest list it was built from are recorded so that
+	 * {@link #load(File, File)} can detect a filter which no longer matches its digest list.
+	 * @param location Where to save the filter.
+	 * @param digestList The digest list this filter was built from.
+	 * @throws IOException If there is an issue writing the file.
+	 */
+	public void save(File location, File digestList) throws IOException{
+		try(DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(location), 1024 * 1024))){
+			outputStream.write(MAGIC.getBytes(StandardCharsets.US_ASCII));
+			outputStream.writeInt(VERSION);
+			outputStream.writeLong(digestList.length());
+			outputStream.writeLong(digestList.lastModified());
+			outputStream.writeInt(hashCount);
+			outputStream.writeInt(bits.length);
+			for (int i = 0; i < bits.length; i++) {
+				outputStream.writeLong(bits[i]);
+			}
+		}
+	}
+
+	/***
+	 * Loads a previously saved filter if it is still current for the given digest list.
+	 * @param location The location of the saved filter.
+	 * @param digestList The digest list the filter is expected to have been built from.
+	 * @return The loaded filter, or null if the file does not exist or was built from a different version of the digest list.
+	 * @throws IOException If there is an issue reading the file or it is not a valid filter file.
+	 */
+	public static DigestBloomFilter load(File location, File digestList) throws IOException{
+		if(!location.exists()){
+			return null;
+		}
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(32).order(ByteOrder.BIG_ENDIAN);
+			while(header.hasRemaining() && channel.read(header) >= 0){}
+			if(header.hasRemaining()){
+				throw new IOException("Bloom filter "+location+" is too short to contain a header");
+			}
+			header.flip();
+			byte[] magic = new byte[4];
+			header.get(magic);
+			if(!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII)) || header.getInt() != VERSION){
+				throw new IOException("Bloom filter "+location+" is not a supported filter file");
+			}
+			long listLength = header.getLong();
+			long listModified = header.getLong();
+			if(listLength != digestList.length() || listModified != digestList.lastModified()){
+				return null;
+			}
+			int hashCount = header.getInt();
+			int longCount = header.getInt();
+			if(longCount <= 0 || longCount % BLOCK_LONGS != 0 || channel.size() != 32L + (long)longCount * Long.BYTES){
+				throw new IOException("Bloom filter "+location+" has an unexpected size");
+			}
+
+			long[] bits = new long[longCount];
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.BIG_ENDIAN);
+			int read = 0;
+			while(read < longCount){
+				buffer.clear();
+				buffer.limit((int)Math.min(buffer.capacity(), (long)(longCount - read) * Long.BYTES));
+				while(buffer.hasRemaining()){
+					if(channel.read(buffer) < 0){
+						throw new IOException("Bloom filter "+location+" ended unexpectedly");
+					}
+				}
+				buffer.flip();
+				LongBuffer longs = buffer.asLongBuffer();
+				int count = longs.remaining();
+				longs.get(bits, read, count);
+				read += count;
+			}
+			return new DigestBloomFilter(bits, hashCount);
+		}
+	}
+}
@@ -0,0 +1,498 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import nuix.Item;
+
+/***
+ * Counts how many times each digest occurs, for example how many items in a case share each MD5, to support
+ * de-duplication reporting.  Laid out like {@link DigestSet}: digests are stored as primitive longs in a single open
+ * addressing table using linear probing, with a parallel int array of counts, so each distinct MD5 costs 20 bytes
+ * per table slot rather than the several objects per entry of a HashMap&lt;String,Integer&gt;.  The table fills to
+ * 85% before doubling, so 100 million distinct MD5 digests fit in 2^27 slots, about 2.7GB, and 100 million items
+ * with typical duplication in considerably less.  Doubling briefly holds the old and new tables together, about 4GB
+ * when growing to that size, which can be avoided by constructing with the expected number of distinct digests.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestCountMap
+ *
+ * counts = DigestCountMap.new
+ * counts.addAll($current_case.searchUnsorted("flag:audited"))
+ * puts "#{counts.getTotalCount} items, #{counts.size} distinct digests"
+ *
+ * counts.getHeavyHitters(10).each{|hitter| puts "#{hitter.getDigest}: #{hitter.getCount}"}
+ * counts.writeHistogramCsv(java.io.File.new("C:\\Reports\\duplication.csv"))
+ *
+ * # Processing callbacks arrive on several worker threads, so synchronize access
+ * lock = Mutex.new
+ * processor.whenItemProcessed do |info|
+ *   lock.synchronize{ counts.add(info.getMd5) }
+ * end
+ * }
+ * </pre>
+ * Instances are not safe for concurrent modification.  Per thread instances can be combined with {@link #addAll(DigestCountMap)}.
+ * @author Jason Wells
+ *
+ */
+public class DigestCountMap {
+	// Higher than DigestSet's so a whole case's worth of digests takes one less doubling, see the class comment
+	private static final double LOAD_FACTOR = 0.85;
+	private static final int MIN_CAPACITY = 16;
+	// Keeps the backing array under the maximum Java array length for the widest supported digest
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private DigestAlgorithm algorithm;
+	private int words;
+	private long[] zeroDigest;
+	private long[] scratch;
+
+	// Slot i occupies table[i*words] through table[i*words+words-1] and counts[i].  A slot of all 0 longs is empty,
+	// the count of the all zero digest itself is tracked separately by zeroCount.
+	private long[] table;
+	private int[] counts;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+	private int zeroCount;
+	private long totalCount;
+
+	/***
+	 * A digest and the number of times it occurred, as returned by {@link DigestCountMap#getHeavyHitters(int)}.
+	 */
+	public static class DigestCount {
+		private String digest;
+		private int count;
+
+		private DigestCount(String digest, int count){
+			this.digest = digest;
+			this.count = count;
+		}
+
+		/***
+		 * Gets the digest.
+		 * @return The digest as an uppercase hexadecimal string.
+		 */
+		public String getDigest(){
+			return digest;
+		}
+
+		/***
+		 * Gets the number of times the digest occurred.
+		 * @return The occurrence count.
+		 */
+		public int getCount(){
+			return count;
+		}
+
+		@Override
+		public String toString(){
+			return digest+": "+count;
+		}
+	}
+
+	/***
+	 * Creates a new empty MD5 instance with a default initial capacity.
+	 */
+	public DigestCountMap(){
+		this(DigestAlgorithm.MD5, 1024);
+	}
+
+	/***
+	 * Creates a new empty instance with a default initial capacity.
+	 * @param algorithm The algorithm of the digests to count.
+	 */
+	public DigestCountMap(DigestAlgorithm algorithm){
+		this(algorithm, 1024);
+	}
+
+	/***
+	 * Creates a new empty instance sized to hold the specified number of distinct digests without needing to grow.
+	 * @param algorithm The algorithm of the digests to count.
+	 * @param expectedSize The number of distinct digests this instance is expected to hold.
+	 */
+	public DigestCountMap(DigestAlgorithm algorithm, int expectedSize){
+		this.algorithm = algorithm;
+		this.words = algorithm.getWordCount();
+		this.zeroDigest = new long[words];
+		this.scratch = new long[words];
+		allocate(capacityFor(expectedSize));
+	}
+
+	private int maxCapacity(){
+		return Integer.highestOneBit(MAX_ARRAY_LENGTH / words);
+	}
+
+	private int capacityFor(long expectedSize){
+		long needed = (long)Math.ceil(expectedSize / LOAD_FACTOR);
+		if(needed > maxCapacity()){
+			throw new IllegalStateException("DigestCountMap cannot hold more than "+(long)(maxCapacity() * LOAD_FACTOR)+" "+
+					algorithm.getHeaderName()+" digests");
+		}
+		int capacity = MIN_CAPACITY;
+		while(capacity < needed){
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity){
+		table = new long[capacity * words];
+		counts = new int[capacity];
+		mask = capacity - 1;
+		resizeThreshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	/***
+	 * Mixes a digest into a table index, the same mixing used by {@link DigestSet}.
+	 */
+	private int slotFor(long[] digest, int offset){
+		long low = digest[offset + 1];
+		for (int w = 2; w < words; w++) {
+			low ^= Long.rotateLeft(digest[offset + w], w * 16);
+		}
+		long h = digest[offset] ^ Long.rotateLeft(low, 32);
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		return (int)h & mask;
+	}
+
+	private static int saturatedAdd(int count, int amount){
+		long sum = (long)count + amount;
+		return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)sum;
+	}
+
+	/***
+	 * Gets the algorithm of the digests this map counts.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Adds occurrences of a digest.  Counts saturate at Integer.MAX_VALUE.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @param amount Number of occurrences to add, must be positive.
+	 * @return The digest's count after adding.
+	 */
+	public int add(long[] digest, int offset, int amount){
+		if(amount < 1){
+			throw new IllegalArgumentException("Amount must be positive: "+amount);
+		}
+		totalCount += amount;
+		if(DigestArrays.isZero(digest, offset, words)){
+			if(zeroCount == 0){ size++; }
+			zeroCount = saturatedAdd(zeroCount, amount);
+			return zeroCount;
+		}
+
+		int slot = slotFor(digest, offset);
+		while(true){
+			int i = slot * words;
+			if(DigestArrays.isZero(table, i, words)){
+				System.arraycopy(digest, offset, table, i, words);
+				counts[slot] = amount;
+				size++;
+				if(size > resizeThreshold){
+					grow();
+				}
+				return amount;
+			} else if(DigestArrays.equals(table, i, digest, offset, words)){
+				counts[slot] = saturatedAdd(counts[slot], amount);
+				return counts[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Adds one occurrence of a digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return The digest's count after adding.
+	 */
+	public int add(long[] digest, int offset){
+		return add(digest, offset, 1);
+	}
+
+	/***
+	 * Adds one occurrence of an MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return The digest's count after adding.
+	 */
+	public int add(long high, long low){
+		checkMd5();
+		scratch[0] = high;
+		scratch[1] = low;
+		return add(scratch, 0, 1);
+	}
+
+	/***
+	 * Adds one occurrence of a digest.
+	 * @param digest Digest as hexadecimal string.  Null or empty values are ignored.
+	 * @return The digest's count after adding, 0 if the digest was null or empty.
+	 */
+	public int add(String digest){
+		if(digest == null || digest.isEmpty()){ return 0; }
+		DigestHex.parse(digest, algorithm, scratch, 0);
+		return add(scratch, 0, 1);
+	}
+
+	/***
+	 * Adds one occurrence of the digest of an item, using the item digest matching this map's algorithm.
+	 * @param item The item to count.  Items with a null or empty digest are ignored.
+	 * @return The digest's count after adding, 0 if the item has no digest.
+	 */
+	public int add(Item item){
+		return add(algorithm.getItemDigest(item));
+	}
+
+	/***
+	 * Adds one occurrence of the digest of each item in a collection.
+	 * @param items The items to count.  Items with a null or empty digest are ignored.
+	 */
+	public void addAll(Collection<Item> items){
+		for(Item item : items){
+			add(item);
+		}
+	}
+
+	/***
+	 * Adds the counts of another map to this map, for example to combine maps filled on separate threads.
+	 * @param other The map whose counts should be added.  Must count digests of the same algorithm.
+	 */
+	public void addAll(DigestCountMap other){
+		if(other.algorithm != algorithm){
+			throw new IllegalArgumentException("Cannot add "+other.algorithm.getHeaderName()+" counts to a map of "+algorithm.getHeaderName()+" digests");
+		}
+		if(other.zeroCount > 0){
+			add(zeroDigest, 0, other.zeroCount);
+		}
+		for (int slot = 0; slot < other.counts.length; slot++) {
+			if(other.counts[slot] > 0){
+				add(other.table, slot * words, other.counts[slot]);
+			}
+		}
+	}
+
+	private void checkMd5(){
+		if(algorithm != DigestAlgorithm.MD5){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this map holds "+algorithm.getHeaderName());
+		}
+	}
+
+	/***
+	 * Gets the number of occurrences of a digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return The digest's count, 0 if it has not been added.
+	 */
+	public int getCount(long[] digest, int offset){
+		if(DigestArrays.isZero(digest, offset, words)){
+			return zeroCount;
+		}
+
+		int slot = slotFor(digest, offset);
+		while(true){
+			int i = slot * words;
+			if(DigestArrays.equals(table, i, digest, offset, words)){
+				return counts[slot];
+			} else if(DigestArrays.isZero(table, i, words)){
+				return 0;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Gets the number of occurrences of a digest.
+	 * @param digest Digest as hexadecimal string.
+	 * @return The digest's count, 0 if it has not been added.
+	 */
+	public int getCount(String digest){
+		long[] parsed = new long[words];
+		DigestHex.parse(digest, algorithm, parsed, 0);
+		return getCount(parsed, 0);
+	}
+
+	private void grow(){
+		if(mask + 1 >= maxCapacity()){
+			throw new IllegalStateException("DigestCountMap cannot hold more than "+(long)(maxCapacity() * LOAD_FACTOR)+" "+
+					algorithm.getHeaderName()+" digests");
+		}
+		long[] oldTable = table;
+		int[] oldCounts = counts;
+		allocate((mask + 1) << 1);
+		for (int oldSlot = 0; oldSlot < oldCounts.length; oldSlot++) {
+			if(oldCounts[oldSlot] > 0){
+				int slot = slotFor(oldTable, oldSlot * words);
+				while(counts[slot] != 0){
+					slot = (slot + 1) & mask;
+				}
+				System.arraycopy(oldTable, oldSlot * words, table, slot * words, words);
+				counts[slot] = oldCounts[oldSlot];
+			}
+		}
+	}
+
+	/***
+	 * Gets the number of distinct digests counted.
+	 * @return The number of distinct digests.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/***
+	 * Gets the total number of occurrences added across all digests, for example the number of items counted.
+	 * @return The total count.
+	 */
+	public long getTotalCount(){
+		return totalCount;
+	}
+
+	/***
+	 * Gets the approximate number of bytes of heap used by the backing table of this map.
+	 * @return Approximate heap footprint in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return (long)table.length * Long.BYTES + (long)counts.length * Integer.BYTES;
+	}
+
+	private String formatSlot(int slot){
+		char[] hex = new char[algorithm.getWidth() * 2];
+		if(slot < 0){
+			DigestHex.format(zeroDigest, 0, algorithm, hex, 0);
+		} else {
+			DigestHex.format(table, slot * words, algorithm, hex, 0);
+		}
+		return new String(hex);
+	}
+
+	/***
+	 * Gets the most frequently occurring digests.  Runs in a single pass over the table keeping a min-heap of the
+	 * top candidates, so only the requested number of results are materialized.
+	 * @param limit Maximum number of digests to return.
+	 * @return Up to limit digests with their counts, most frequent first.
+	 */
+	public List<DigestCount> getHeavyHitters(int limit){
+		limit = Math.max(0, Math.min(limit, size));
+		// Heap of slot indices ordered by count, -1 standing in for the zero digest
+		int[] heap = new int[limit];
+		int heapSize = 0;
+		if(limit > 0 && zeroCount > 0){
+			heap[heapSize++] = -1;
+		}
+		for (int slot = 0; slot < counts.length && limit > 0; slot++) {
+			int count = counts[slot];
+			if(count == 0){ continue; }
+			if(heapSize < limit){
+				heap[heapSize] = slot;
+				siftUp(heap, heapSize);
+				heapSize++;
+			} else if(count > countOf(heap[0])){
+				heap[0] = slot;
+				siftDown(heap, heapSize, 0);
+			}
+		}
+
+		List<DigestCount> result = new ArrayList<DigestCount>(heapSize);
+		while(heapSize > 0){
+			int slot = heap[0];
+			result.add(new DigestCount(formatSlot(slot), countOf(slot)));
+			heap[0] = heap[--heapSize];
+			siftDown(heap, heapSize, 0);
+		}
+		// Heap yields least frequent first
+		Collections.reverse(result);
+		return result;
+	}
+
+	private int countOf(int slot){
+		return slot < 0 ? zeroCount : counts[slot];
+	}
+
+	private void siftUp(int[] heap, int index){
+		int slot = heap[index];
+		while(index > 0){
+			int parent = (index - 1) >>> 1;
+			if(countOf(heap[parent]) <= countOf(slot)){ break; }
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = slot;
+	}
+
+	private void siftDown(int[] heap, int heapSize, int index){
+		if(heapSize == 0){ return; }
+		int slot = heap[index];
+		while(true){
+			int child = index * 2 + 1;
+			if(child >= heapSize){ break; }
+			if(child + 1 < heapSize && countOf(heap[child + 1]) < countOf(heap[child])){
+				child++;
+			}
+			if(countOf(heap[child]) >= countOf(slot)){ break; }
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = slot;
+	}
+
+	/***
+	 * Gets the distribution of counts: for each occurrence count, how many distinct digests occurred that many
+	 * times.  For example an entry of 3 to 1500 means 1500 digests were each shared by 3 items.
+	 * @return Sorted map of occurrence count to number of digests with that count.
+	 */
+	public SortedMap<Integer,Long> getHistogram(){
+		SortedMap<Integer,Long> histogram = new TreeMap<Integer,Long>();
+		if(zeroCount > 0){
+			histogram.merge(zeroCount, 1L, Long::sum);
+		}
+		for (int slot = 0; slot < counts.length; slot++) {
+			if(counts[slot] > 0){
+				histogram.merge(counts[slot], 1L, Long::sum);
+			}
+		}
+		return histogram;
+	}
+
+	/***
+	 * Writes the distribution of counts as CSV, with a row per occurrence count giving the number of digests with
+	 * that count and the number of items they account for.
+	 * @param location Where to write the CSV file.
+	 * @throws IOException If there is an issue writing the file.
+	 */
+	public void writeHistogramCsv(File location) throws IOException{
+		try(CSVPrinter printer = CSVFormat.EXCEL.print(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(location), StandardCharsets.UTF_8)))){
+			printer.printRecord("Occurrences", "Digests", "Items");
+			for(Map.Entry<Integer,Long> entry : getHistogram().entrySet()){
+				printer.printRecord(entry.getKey(), entry.getValue(), (long)entry.getKey() * entry.getValue());
+			}
+		}
+	}
+}
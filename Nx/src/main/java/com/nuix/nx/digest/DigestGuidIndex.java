@@ -0,0 +1,260 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/***
+ * A read-only view over a digest to item GUID index file written by {@link DigestGuidIndexBuilder}, answering
+ * "which items have this digest" without searching the case.  The file holds (digest, GUID) pairs sorted by digest
+ * followed by a sparse index of the first digest of every block of pairs.  The sparse index is held in memory and
+ * the pairs are memory mapped, so a lookup is a binary search of the sparse index followed by a scan of at most
+ * a couple of blocks of the mapped file.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestGuidIndex
+ *
+ * index = DigestGuidIndex.new(java.io.File.new("C:\\Indexes\\case_md5.idx"))
+ * begin
+ *   hit_md5s.each do |md5|
+ *     guids = index.lookup(md5)
+ *     puts "#{md5}: #{guids.join(", ")}"
+ *   end
+ * ensure
+ *   index.close
+ * end
+ * }
+ * </pre>
+ * Instances are safe to query from multiple threads.
+ * @author Jason Wells
+ *
+ */
+public class DigestGuidIndex implements Closeable {
+	/***
+	 * Magic bytes at the start of an index file.
+	 */
+	public static final String MAGIC = "NXGI";
+	/***
+	 * Current version of the index file format.
+	 */
+	public static final int VERSION = 1;
+
+	// Power of 2 records per mapped segment, a segment of the widest record (SHA-256 plus GUID) stays under 2GB
+	private static final int SEGMENT_RECORD_BITS = 25;
+	private static final long SEGMENT_RECORD_MASK = (1L << SEGMENT_RECORD_BITS) - 1;
+	private static final int MAX_ALGORITHM_NAME_LENGTH = 64;
+
+	private File location;
+	private DigestAlgorithm algorithm;
+	private int words;
+	private int recordBytes;
+	private int blockRecords;
+	private long pairCount;
+	private long[] blockFirstDigests;
+	private int blockCount;
+	private MappedByteBuffer[] segments;
+
+	/***
+	 * Opens an index file for lookups.
+	 * @param location The index file written by {@link DigestGuidIndexBuilder}.
+	 * @throws IOException If the file cannot be read or is not a valid index.
+	 */
+	public DigestGuidIndex(File location) throws IOException{
+		this.location = location;
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			long fileSize = channel.size();
+			ByteBuffer fixed = ByteBuffer.allocate(10).order(ByteOrder.BIG_ENDIAN);
+			readFully(channel, fixed, 0);
+			fixed.flip();
+			byte[] magic = new byte[4];
+			fixed.get(magic);
+			if(!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))){
+				throw new IOException("Digest GUID index "+location+" does not begin with "+MAGIC);
+			}
+			int version = fixed.getInt();
+			if(version != VERSION){
+				throw new IOException("Digest GUID index "+location+" has unsupported version "+version);
+			}
+			int nameLength = fixed.getShort() & 0xFFFF;
+			if(nameLength < 1 || nameLength > MAX_ALGORITHM_NAME_LENGTH){
+				throw new IOException("Digest GUID index "+location+" has invalid algorithm name length "+nameLength);
+			}
+
+			ByteBuffer rest = ByteBuffer.allocate(nameLength + 12).order(ByteOrder.BIG_ENDIAN);
+			readFully(channel, rest, 10);
+			rest.flip();
+			byte[] name = new byte[nameLength];
+			rest.get(name);
+			String algorithmName = new String(name, StandardCharsets.US_ASCII);
+			algorithm = DigestAlgorithm.fromName(algorithmName);
+			if(algorithm == null){
+				throw new IOException("Digest GUID index "+location+" uses unsupported algorithm "+algorithmName);
+			}
+			blockRecords = rest.getInt();
+			pairCount = rest.getLong();
+			if(blockRecords < 1 || pairCount < 0){
+				throw new IOException("Digest GUID index "+location+" has an invalid header");
+			}
+
+			words = algorithm.getWordCount();
+			recordBytes = recordBytes(algorithm);
+			long headerLength = headerLength(algorithm);
+			blockCount = (int)((pairCount + blockRecords - 1) / blockRecords);
+			long recordsLength = pairCount * recordBytes;
+			long expectedSize = headerLength + recordsLength + (long)blockCount * words * 8;
+			if(fileSize != expectedSize){
+				throw new IOException("Digest GUID index "+location+" is "+fileSize+" bytes, expected "+expectedSize);
+			}
+
+			ByteBuffer sparse = channel.map(MapMode.READ_ONLY, headerLength + recordsLength, (long)blockCount * words * 8);
+			blockFirstDigests = new long[blockCount * words];
+			sparse.order(ByteOrder.BIG_ENDIAN).asLongBuffer().get(blockFirstDigests);
+
+			long recordsPerSegment = 1L << SEGMENT_RECORD_BITS;
+			int segmentCount = (int)((pairCount + recordsPerSegment - 1) / recordsPerSegment);
+			segments = new MappedByteBuffer[segmentCount];
+			long position = headerLength;
+			for (int s = 0; s < segmentCount; s++) {
+				long length = Math.min(recordsPerSegment * recordBytes, headerLength + recordsLength - position);
+				segments[s] = channel.map(MapMode.READ_ONLY, position, length);
+				segments[s].order(ByteOrder.BIG_ENDIAN);
+				position += length;
+			}
+		}
+	}
+
+	/***
+	 * Bytes per (digest, GUID) record, the digest stored as whole words followed by the GUID as two longs.
+	 */
+	static int recordBytes(DigestAlgorithm algorithm){
+		return (algorithm.getWordCount() + 2) * 8;
+	}
+
+	/***
+	 * Bytes in the header of an index of the given algorithm.
+	 */
+	static int headerLength(DigestAlgorithm algorithm){
+		return 4 + 4 + 2 + algorithm.getHeaderName().length() + 4 + 8;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position);
+			if(read < 0){
+				throw new IOException("Digest GUID index is too short to contain a header");
+			}
+			position += read;
+		}
+	}
+
+	/***
+	 * Gets the file this view was opened against.
+	 * @return The index file.
+	 */
+	public File getLocation(){
+		return location;
+	}
+
+	/***
+	 * Gets the algorithm of the indexed digests.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the number of distinct (digest, GUID) pairs in the index.
+	 * @return The pair count.
+	 */
+	public long getPairCount(){
+		return pairCount;
+	}
+
+	private int compareRecordDigest(long index, long[] digest, int offset){
+		MappedByteBuffer segment = segments[(int)(index >>> SEGMENT_RECORD_BITS)];
+		int position = (int)(index & SEGMENT_RECORD_MASK) * recordBytes;
+		for (int w = 0; w < words; w++) {
+			int result = Long.compareUnsigned(segment.getLong(position + w * 8), digest[offset + w]);
+			if(result != 0){ return result; }
+		}
+		return 0;
+	}
+
+	private String recordGuid(long index){
+		MappedByteBuffer segment = segments[(int)(index >>> SEGMENT_RECORD_BITS)];
+		int position = (int)(index & SEGMENT_RECORD_MASK) * recordBytes + words * 8;
+		return new UUID(segment.getLong(position), segment.getLong(position + 8)).toString();
+	}
+
+	/***
+	 * Gets the GUIDs of the items with a given digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return The GUIDs of items with the digest, in ascending order, empty if there are none.
+	 */
+	public List<String> lookup(long[] digest, int offset){
+		List<String> guids = new ArrayList<String>();
+		// Find the first block starting at or after the digest, matches can begin in the block before it
+		int low = 0;
+		int high = blockCount;
+		while(low < high){
+			int mid = (low + high) >>> 1;
+			if(DigestArrays.compare(blockFirstDigests, mid * words, digest, offset, words) < 0){
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		long index = (long)Math.max(0, low - 1) * blockRecords;
+		for (; index < pairCount; index++) {
+			int result = compareRecordDigest(index, digest, offset);
+			if(result > 0){
+				break;
+			} else if(result == 0){
+				guids.add(recordGuid(index));
+			}
+		}
+		return guids;
+	}
+
+	/***
+	 * Gets the GUIDs of the items with a given digest.
+	 * @param digest Digest as hexadecimal string.
+	 * @return The GUIDs of items with the digest, in ascending order, empty if there are none.
+	 * @throws IllegalArgumentException If the digest is not valid hexadecimal of the index's algorithm.
+	 */
+	public List<String> lookup(String digest){
+		long[] parsed = new long[words];
+		DigestHex.parse(digest, algorithm, parsed, 0);
+		return lookup(parsed, 0);
+	}
+
+	/***
+	 * Releases this view's references to the mapped file.  The mapping itself is released by the JVM once
+	 * it is no longer reachable.
+	 */
+	@Override
+	public void close(){
+		segments = new MappedByteBuffer[0];
+		blockFirstDigests = new long[0];
+		blockCount = 0;
+		pairCount = 0;
+	}
+}
@@ -0,0 +1,438 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import nuix.Item;
+
+/***
+ * Builds a digest to item GUID index file which can be opened with {@link DigestGuidIndex} to resolve digests,
+ * for example hits from a hash list, back to the items that have them without a search per digest.  Items are
+ * streamed in, their (digest, GUID) pairs are collected into a fixed size buffer which is sorted and spilled to a
+ * temporary run file whenever it fills, and the runs are merged into the final index when {@link #build(File)} is
+ * called, at most a fixed number at a time with more runs merged in passes.  Memory use is bounded by the run size
+ * regardless of how many items are added.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestGuidIndexBuilder
+ *
+ * builder = DigestGuidIndexBuilder.new
+ * $current_case.searchUnsorted("has-exclusion:0").each{|item| builder.add(item)}
+ * pairs = builder.build(java.io.File.new("C:\\Indexes\\case_md5.idx"))
+ * puts "Indexed #{pairs} digest/GUID pairs"
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestGuidIndexBuilder implements Closeable {
+	private static Logger logger = Logger.getLogger(DigestGuidIndexBuilder.class);
+
+	/***
+	 * Default number of pairs buffered in memory before a sorted run is written to disk.
+	 */
+	public static final int DEFAULT_RUN_PAIRS = 1 << 20;
+	/***
+	 * Default number of pairs per block of the sparse index.
+	 */
+	public static final int DEFAULT_BLOCK_PAIRS = 256;
+
+	private static final int BUFFER_BYTES = 1024 * 1024;
+	// Limits how many run files are opened at once while merging, more runs than this are merged in passes
+	private static final int MAX_MERGE_FAN_IN = 64;
+	// Smaller than BUFFER_BYTES since one is held for every run being merged
+	private static final int RUN_READ_BUFFER_BYTES = 64 * 1024;
+
+	private DigestAlgorithm algorithm;
+	private int digestWords;
+	private int recordWords;
+	private int runPairs = DEFAULT_RUN_PAIRS;
+	private int blockPairs = DEFAULT_BLOCK_PAIRS;
+	private File tempDirectory = null;
+
+	private long[] buffer = null;
+	private int bufferedPairs = 0;
+	private List<File> runs = new ArrayList<File>();
+	private long pairsAdded = 0;
+
+	/***
+	 * Creates a builder of an index of MD5 digests.
+	 */
+	public DigestGuidIndexBuilder(){
+		this(DigestAlgorithm.MD5);
+	}
+
+	/***
+	 * Creates a builder of an index of the given digest algorithm.
+	 * @param algorithm The algorithm of the digests to index.
+	 */
+	public DigestGuidIndexBuilder(DigestAlgorithm algorithm){
+		this.algorithm = algorithm;
+		digestWords = algorithm.getWordCount();
+		recordWords = digestWords + 2;
+	}
+
+	/***
+	 * Gets the algorithm of the digests being indexed.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Sets the number of pairs buffered in memory before being sorted and written to a temporary run file.
+	 * Defaults to {@link #DEFAULT_RUN_PAIRS}, about 32MB for MD5.  Must be set before adding any pairs.
+	 * @param runPairs Pairs per run.
+	 */
+	public void setRunPairs(int runPairs){
+		if(buffer != null){
+			throw new IllegalStateException("Run size must be set before adding pairs");
+		}
+		this.runPairs = Math.max(1024, runPairs);
+	}
+
+	/***
+	 * Sets the number of pairs per block of the sparse index.  Smaller blocks make lookups scan less of the file
+	 * at the cost of a larger sparse index held in memory by {@link DigestGuidIndex}.  Defaults to {@link #DEFAULT_BLOCK_PAIRS}.
+	 * @param blockPairs Pairs per block.
+	 */
+	public void setBlockPairs(int blockPairs){
+		this.blockPairs = Math.max(1, blockPairs);
+	}
+
+	/***
+	 * Sets the directory temporary run files are written to.  Defaults to the system temporary directory.
+	 * @param tempDirectory Directory for temporary files.
+	 */
+	public void setTempDirectory(File tempDirectory){
+		this.tempDirectory = tempDirectory;
+	}
+
+	/***
+	 * Gets the number of pairs added so far, including duplicates.
+	 * @return Pairs added.
+	 */
+	public long getPairsAdded(){
+		return pairsAdded;
+	}
+
+	/***
+	 * Adds a (digest, GUID) pair.
+	 * @param digest Digest as hexadecimal string.  Null or empty values are ignored.
+	 * @param guid Item GUID in its usual hyphenated form.
+	 * @return True if the pair was added, false if the digest was null or empty.
+	 * @throws IOException If there is an issue writing a run file.
+	 * @throws IllegalArgumentException If the digest or GUID is not valid.
+	 */
+	public boolean add(String digest, String guid) throws IOException{
+		if(digest == null || digest.isEmpty()){ return false; }
+		if(buffer == null){
+			buffer = new long[runPairs * recordWords];
+		} else if(bufferedPairs == runPairs){
+			spillRun();
+		}
+		int offset = bufferedPairs * recordWords;
+		DigestHex.parse(digest, algorithm, buffer, offset);
+		UUID uuid = UUID.fromString(guid);
+		buffer[offset + digestWords] = uuid.getMostSignificantBits();
+		buffer[offset + digestWords + 1] = uuid.getLeastSignificantBits();
+		bufferedPairs++;
+		pairsAdded++;
+		return true;
+	}
+
+	/***
+	 * Adds the (digest, GUID) pair of an item, using the item digest matching this builder's algorithm.
+	 * @param item The item to add.  Items with a null or empty digest are ignored.
+	 * @return True if the item was added, false if it has no digest.
+	 * @throws IOException If there is an issue writing a run file.
+	 */
+	public boolean add(Item item) throws IOException{
+		return add(algorithm.getItemDigest(item), item.getGuid());
+	}
+
+	/***
+	 * Adds the (digest, GUID) pairs of a collection of items.
+	 * @param items The items to add.  Items with a null or empty digest are ignored.
+	 * @throws IOException If there is an issue writing a run file.
+	 */
+	public void addAll(Collection<Item> items) throws IOException{
+		for(Item item : items){
+			add(item);
+		}
+	}
+
+	private int sortBuffer(){
+		DigestArrays.sort(buffer, bufferedPairs, recordWords);
+		return DigestArrays.dedupeSorted(buffer, bufferedPairs, recordWords);
+	}
+
+	private void spillRun() throws IOException{
+		int distinct = sortBuffer();
+		File run = File.createTempFile("digest_guid_run", ".tmp", tempDirectory);
+		runs.add(run);
+		try(RunOutput output = new RunOutput(run)){
+			for (int i = 0; i < distinct; i++) {
+				output.write(buffer, i * recordWords);
+			}
+		}
+		bufferedPairs = 0;
+	}
+
+	/***
+	 * Receives the records of a merge in sorted order.
+	 */
+	private interface MergeOutput {
+		void write(long[] record, int offset) throws IOException;
+	}
+
+	/***
+	 * Writes a sorted run file, a count of the records followed by the records themselves.
+	 */
+	private class RunOutput implements MergeOutput, Closeable {
+		File location;
+		DataOutputStream output;
+		long written = 0;
+
+		RunOutput(File location) throws IOException{
+			this.location = location;
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(location), BUFFER_BYTES));
+			// Record count is filled in once known
+			output.writeLong(0);
+		}
+
+		@Override
+		public void write(long[] record, int offset) throws IOException{
+			for (int w = 0; w < recordWords; w++) {
+				output.writeLong(record[offset + w]);
+			}
+			written++;
+		}
+
+		@Override
+		public void close() throws IOException{
+			output.close();
+			try(RandomAccessFile file = new RandomAccessFile(location, "rw")){
+				file.writeLong(written);
+			}
+		}
+	}
+
+	/***
+	 * Reads a sorted run file back one record at a time while merging.
+	 */
+	private class RunReader implements Closeable {
+		DataInputStream input;
+		long remaining;
+		long[] current = new long[recordWords];
+
+		RunReader(File run) throws IOException{
+			input = new DataInputStream(new BufferedInputStream(new FileInputStream(run), RUN_READ_BUFFER_BYTES));
+			remaining = input.readLong();
+		}
+
+		boolean next() throws IOException{
+			if(remaining == 0){ return false; }
+			for (int w = 0; w < recordWords; w++) {
+				current[w] = input.readLong();
+			}
+			remaining--;
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException{
+			input.close();
+		}
+	}
+
+	/***
+	 * Writes the sorted records followed by the sparse index, dropping duplicate pairs.
+	 */
+	private class IndexOutput implements MergeOutput, Closeable {
+		DataOutputStream output;
+		long[] last = new long[recordWords];
+		long written = 0;
+		long[] blockFirsts = new long[1024 * digestWords];
+		int blocks = 0;
+
+		IndexOutput(File location) throws IOException{
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(location), BUFFER_BYTES));
+			output.writeBytes(DigestGuidIndex.MAGIC);
+			output.writeInt(DigestGuidIndex.VERSION);
+			String algorithmName = algorithm.getHeaderName();
+			output.writeShort(algorithmName.length());
+			output.write(algorithmName.getBytes(StandardCharsets.US_ASCII));
+			output.writeInt(blockPairs);
+			// Pair count is filled in once known
+			output.writeLong(0);
+		}
+
+		@Override
+		public void write(long[] record, int offset) throws IOException{
+			if(written > 0 && DigestArrays.equals(last, 0, record, offset, recordWords)){
+				return;
+			}
+			if(written % blockPairs == 0){
+				if((blocks + 1) * digestWords > blockFirsts.length){
+					long[] grown = new long[blockFirsts.length * 2];
+					System.arraycopy(blockFirsts, 0, grown, 0, blocks * digestWords);
+					blockFirsts = grown;
+				}
+				System.arraycopy(record, offset, blockFirsts, blocks * digestWords, digestWords);
+				blocks++;
+			}
+			for (int w = 0; w < recordWords; w++) {
+				output.writeLong(record[offset + w]);
+			}
+			System.arraycopy(record, offset, last, 0, recordWords);
+			written++;
+		}
+
+		@Override
+		public void close() throws IOException{
+			try{
+				for (int i = 0; i < blocks * digestWords; i++) {
+					output.writeLong(blockFirsts[i]);
+				}
+			} finally {
+				output.close();
+			}
+		}
+	}
+
+	/***
+	 * Writes the index file from the pairs added so far.  Temporary run files are removed and buffered pairs are
+	 * discarded afterwards, whether or not the index was written successfully.
+	 * @param output The location of the index file to write.
+	 * @return The number of distinct (digest, GUID) pairs written.
+	 * @throws IOException If there is an issue reading the run files or writing the index.
+	 */
+	public long build(File output) throws IOException{
+		long written = 0;
+		boolean succeeded = false;
+		try{
+			IndexOutput index = new IndexOutput(output);
+			try{
+				if(runs.isEmpty()){
+					int distinct = bufferedPairs == 0 ? 0 : sortBuffer();
+					for (int i = 0; i < distinct; i++) {
+						index.write(buffer, i * recordWords);
+					}
+				} else {
+					if(bufferedPairs > 0){
+						spillRun();
+					}
+					while(runs.size() > MAX_MERGE_FAN_IN){
+						mergePass();
+					}
+					mergeRuns(runs, index);
+				}
+			} finally {
+				index.close();
+			}
+			written = index.written;
+			try(RandomAccessFile file = new RandomAccessFile(output, "rw")){
+				file.seek(DigestGuidIndex.headerLength(algorithm) - 8);
+				file.writeLong(written);
+			}
+			succeeded = true;
+		} finally {
+			close();
+			if(!succeeded){
+				output.delete();
+			}
+		}
+		logger.info("Wrote digest GUID index "+output+" with "+written+" pairs from "+pairsAdded+" added");
+		return written;
+	}
+
+	/***
+	 * Merges groups of runs into larger runs until few enough remain to merge in a single final pass.
+	 */
+	private void mergePass() throws IOException{
+		List<File> merged = new ArrayList<File>();
+		try{
+			for (int i = 0; i < runs.size(); i += MAX_MERGE_FAN_IN) {
+				List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_FAN_IN));
+				File run = File.createTempFile("digest_guid_run", ".tmp", tempDirectory);
+				merged.add(run);
+				try(RunOutput output = new RunOutput(run)){
+					mergeRuns(group, output);
+				}
+			}
+		} catch (IOException e){
+			// Left for close to delete along with the rest
+			runs.addAll(merged);
+			throw e;
+		}
+		for(File run : runs){
+			run.delete();
+		}
+		runs = merged;
+	}
+
+	private void mergeRuns(List<File> group, MergeOutput output) throws IOException{
+		List<RunReader> readers = new ArrayList<RunReader>();
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(group.size(),
+				(a, b) -> DigestArrays.compare(a.current, 0, b.current, 0, recordWords));
+		try{
+			for(File run : group){
+				RunReader reader = new RunReader(run);
+				readers.add(reader);
+				if(reader.next()){
+					queue.add(reader);
+				}
+			}
+			while(!queue.isEmpty()){
+				RunReader reader = queue.poll();
+				output.write(reader.current, 0);
+				if(reader.next()){
+					queue.add(reader);
+				}
+			}
+		} finally {
+			for(RunReader reader : readers){
+				reader.close();
+			}
+		}
+	}
+
+	/***
+	 * Discards any buffered pairs and deletes temporary run files.
+	 */
+	@Override
+	public void close(){
+		for(File run : runs){
+			if(!run.delete()){
+				run.deleteOnExit();
+			}
+		}
+		runs.clear();
+		buffer = null;
+		bufferedPairs = 0;
+	}
+}
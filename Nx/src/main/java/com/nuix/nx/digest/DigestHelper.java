@@ -6,20 +6,19 @@ http://www.apache.org/licenses/LICENSE-2.0
 package com.nuix.nx.digest;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
-import javax.xml.bind.DatatypeConverter;
-
-import com.google.common.primitives.UnsignedBytes;
-
 import nuix.Item;
 
 /***
@@ -75,12 +74,14 @@ public class DigestHelper {
 	}
 	
 	/***
-	 * Convenience method for converting hex string to byte array.
+	 * Convenience method for converting hex string to byte array.  When the goal is to add or look up digests,
+	 * the methods accepting strings parse directly into the in memory form using {@link DigestHex} without
+	 * creating a byte array.
 	 * @param hex String of hexadecimal.
 	 * @return Byte array equivalent.
 	 */
 	public static byte[] hexToBytes(String hex){
-		return DatatypeConverter.parseHexBinary(hex);
+		return DigestHex.parseBytes(hex);
 	}
 	
 	/***
@@ -89,17 +90,33 @@ public class DigestHelper {
 	 * @return A string representation of the byte array as hexadecimal.
 	 */
 	public static String bytesToHex(byte[] bytes){
-		return DatatypeConverter.printHexBinary(bytes);
+		return DigestHex.formatBytes(bytes);
 	}
 	
 	/***
-	 * Creates an instance of DigestHelper containing the digests from all specified digest lists.
+	 * Determines the algorithm of a collection of digest lists from the header of the first list.
+	 * @param digestFiles The digest list files.
+	 * @return The algorithm of the first file, MD5 if there are no files.
+	 * @throws IOException If the first file cannot be read or does not have a valid digest list header.
+	 */
+	private static DigestAlgorithm algorithmOf(Collection<File> digestFiles) throws IOException{
+		if(digestFiles.isEmpty()){
+			return DigestAlgorithm.MD5;
+		}
+		return DigestListLoader.readHeader(digestFiles.iterator().next()).getAlgorithm();
+	}
+	
+	/***
+	 * Creates an instance of DigestHelper containing the digests from all specified digest lists.  If the goal is to
+	 * write the combined digests to a new digest list, {@link DigestListOperations#union(Collection, File)} does so
+	 * without loading the lists into memory.  The algorithm of the resulting instance is taken from the first digest
+	 * list, all of the lists must share that algorithm.
 	 * @param digestFiles Collection of digest files to load into the resulting instance.
 	 * @return A DigestHelper instance containing all the digests from the provided existing digest lists.
-	 * @throws IOException Thrown if there is an issue with the file stream.
+	 * @throws IOException Thrown if there is an issue with the file stream or the lists do not share an algorithm.
 	 */
 	public static DigestHelper createFromExistingDigestLists(Collection<File> digestFiles) throws IOException{
-		DigestHelper result = new DigestHelper();
+		DigestHelper result = new DigestHelper(algorithmOf(digestFiles));
 		for(File digestFile : digestFiles){
 			result.loadDigestList(digestFile);
 		}
@@ -117,10 +134,146 @@ public class DigestHelper {
 		return createFromExistingDigestLists(existingDigestNames.stream().map(name -> getDigestListLocation(name)).collect(Collectors.toList()));
 	}
 	
-	private Set<byte[]> digestSet;
+	/***
+	 * Creates an instance of DigestHelper containing the digests from all specified digest lists, loading the lists in
+	 * parallel.  Each file is decoded on a fork-join pool into a digest set belonging to the worker thread that loaded it,
+	 * then the per thread sets are merged into the result.  The algorithm of the resulting instance is taken from the first
+	 * digest list, all of the lists must share that algorithm.
+	 * @param digestFiles Collection of digest files to load into the resulting instance.
+	 * @param parallelism Number of files to load concurrently, values less than 1 use the number of available processors.
+	 * @param callback Optional callback notified as each file finishes loading, may be null.  Invocations are serialized
+	 * but occur on the loading threads rather than the calling thread.
+	 * @return A DigestHelper instance containing all the digests from the provided existing digest lists.
+	 * @throws IOException Thrown if there is an issue reading any of the digest lists.
+	 */
+	public static DigestHelper createFromExistingDigestListsParallel(Collection<File> digestFiles, int parallelism,
+			DigestListLoadedCallback callback) throws IOException{
+		if(parallelism < 1){
+			parallelism = Runtime.getRuntime().availableProcessors();
+		}
+		List<File> files = new ArrayList<File>(digestFiles);
+		DigestAlgorithm algorithm = algorithmOf(files);
+		int totalFiles = files.size();
+		Map<Thread,DigestSet> shards = new ConcurrentHashMap<Thread,DigestSet>();
+		AtomicInteger filesCompleted = new AtomicInteger();
+		Object callbackLock = new Object();
+
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for(File file : files){
+			tasks.add(() -> {
+				// A worker thread only runs one task at a time so its shard is never shared
+				DigestSet shard = shards.computeIfAbsent(Thread.currentThread(), t -> new DigestSet(algorithm));
+				int loaded = DigestListLoader.load(file, shard);
+				int completed = filesCompleted.incrementAndGet();
+				if(callback != null){
+					synchronized(callbackLock){
+						callback.digestListLoaded(file, loaded, completed, totalFiles);
+					}
+				}
+				return loaded;
+			});
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, Math.max(1, totalFiles)));
+		try{
+			for(Future<Integer> future : pool.invokeAll(tasks)){
+				future.get();
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading digest lists", e);
+		} catch (ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException)e.getCause();
+			}
+			throw new IOException("Error while loading digest lists", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		// Merge into the largest shard so its digests do not need to be copied
+		DigestSet merged = null;
+		for(DigestSet shard : shards.values()){
+			if(merged == null || shard.size() > merged.size()){
+				merged = shard;
+			}
+		}
+		if(merged == null){
+			return new DigestHelper(algorithm);
+		}
+		for(DigestSet shard : shards.values()){
+			if(shard != merged){
+				merged.addAll(shard);
+			}
+		}
+		return new DigestHelper(merged);
+	}
+	
+	/***
+	 * Creates an instance of DigestHelper containing the digests from all specified digest lists, loading the lists in
+	 * parallel using {@link #createFromExistingDigestListsParallel(Collection, int, DigestListLoadedCallback)}.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param existingDigestNames A collection of digest list names.
+	 * @param parallelism Number of files to load concurrently, values less than 1 use the number of available processors.
+	 * @param callback Optional callback notified as each file finishes loading, may be null.
+	 * @return A DigestHelper instance containing all the digests from the provided existing digest lists.
+	 * @throws IOException Thrown if there is an issue reading any of the digest lists.
+	 */
+	public static DigestHelper createFromExistingDigestListsByNameParallel(Collection<String> existingDigestNames, int parallelism,
+			DigestListLoadedCallback callback) throws IOException{
+		return createFromExistingDigestListsParallel(existingDigestNames.stream().map(name -> getDigestListLocation(name)).collect(Collectors.toList()),
+				parallelism, callback);
+	}
+	
+	private DigestSet digestSet;
 	
 	public DigestHelper(){
-		 digestSet = new HashSet<byte[]>();
+		 digestSet = new DigestSet();
+	}
+	
+	/***
+	 * Creates a new instance pre-sized to hold the specified number of distinct digests without needing to grow.
+	 * @param expectedDigestCount The number of distinct digests this instance is expected to hold.
+	 */
+	public DigestHelper(int expectedDigestCount){
+		 digestSet = new DigestSet(expectedDigestCount);
+	}
+	
+	/***
+	 * Creates a new instance holding digests of the specified algorithm rather than MD5.
+	 * @param algorithm The algorithm of the digests this instance will hold.
+	 */
+	public DigestHelper(DigestAlgorithm algorithm){
+		 digestSet = new DigestSet(algorithm);
+	}
+	
+	/***
+	 * Creates a new instance holding digests of the specified algorithm, pre-sized to hold the specified number of
+	 * distinct digests without needing to grow.
+	 * @param algorithm The algorithm of the digests this instance will hold.
+	 * @param expectedDigestCount The number of distinct digests this instance is expected to hold.
+	 */
+	public DigestHelper(DigestAlgorithm algorithm, int expectedDigestCount){
+		 digestSet = new DigestSet(algorithm, expectedDigestCount);
+	}
+	
+	DigestHelper(DigestSet digestSet){
+		this.digestSet = digestSet;
+	}
+	
+	/***
+	 * Gets the algorithm of the digests held by this instance.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return digestSet.getAlgorithm();
+	}
+	
+	private void requireMd5(){
+		if(digestSet.getAlgorithm() != DigestAlgorithm.MD5){
+			throw new IllegalStateException("MD5 methods are not supported by a DigestHelper holding "+
+					digestSet.getAlgorithm().getHeaderName()+" digests");
+		}
 	}
 	
 	/***
@@ -128,7 +281,48 @@ public class DigestHelper {
 	 * @param md5DigestByteArrays A collection of MD5 byte arrays.
 	 */
 	public void addAllMd5ByteArrays(Collection<byte[]> md5DigestByteArrays){
-		digestSet.addAll(md5DigestByteArrays);
+		requireMd5();
+		addAllDigestByteArrays(md5DigestByteArrays);
+	}
+	
+	/***
+	 * Add a collection of digests of this instance's algorithm where each digest is represented as its equivalent byte array.
+	 * @param digestByteArrays A collection of digest byte arrays.
+	 */
+	public void addAllDigestByteArrays(Collection<byte[]> digestByteArrays){
+		digestSet.ensureCapacity((long)digestSet.size() + digestByteArrays.size());
+		for(byte[] digest : digestByteArrays){
+			digestSet.add(digest);
+		}
+	}
+	
+	/***
+	 * Add a collection of digests of this instance's algorithm where each digest is represented as a hexadecimal string.
+	 * @param digestStrings A collection of hexadecimal strings.  Null or empty values are ignored.
+	 */
+	public void addAllDigestStrings(Collection<String> digestStrings){
+		digestSet.ensureCapacity((long)digestSet.size() + digestStrings.size());
+		long[] scratch = new long[digestSet.getAlgorithm().getWordCount()];
+		for(String digest : digestStrings){
+			addDigestString(digest, scratch);
+		}
+	}
+	
+	/***
+	 * Parses a hexadecimal digest straight into the digest set.
+	 * @param digest The hexadecimal digest, null or empty values are ignored.
+	 * @param scratch Reused buffer the digest is parsed into when it is not MD5.
+	 */
+	private void addDigestString(String digest, long[] scratch){
+		if(digest == null || digest.isEmpty()){ return; }
+		DigestAlgorithm algorithm = digestSet.getAlgorithm();
+		if(algorithm == DigestAlgorithm.MD5){
+			DigestHex.checkLength(digest, algorithm);
+			digestSet.add(DigestHex.parseLong(digest, 0), DigestHex.parseLong(digest, 16));
+		} else {
+			DigestHex.parse(digest, algorithm, scratch, 0);
+			digestSet.add(scratch, 0);
+		}
 	}
 	
 	/***
@@ -136,24 +330,21 @@ public class DigestHelper {
 	 * @param md5DigestStrings A collection of MD5 hexadecimal strings.  Null or empty values are ignored.
 	 */
 	public void addAllMd5Strings(Collection<String> md5DigestStrings){
-		for(String digest : md5DigestStrings){
-			digestSet.add(hexToBytes(digest));
-		}
-		addAllMd5ByteArrays(md5DigestStrings.stream()
-				.filter(v -> v != null && !v.isEmpty())
-				.map(md5 -> hexToBytes(md5))
-				.collect(Collectors.toSet()));
+		requireMd5();
+		addAllDigestStrings(md5DigestStrings);
 	}
 	
 	/***
-	 * Add a collection of items, using each item's MD5 value.
-	 * @param items Collection of items to add to this instance.  Items which return a null or empty MD5 string will be ignored.
+	 * Add a collection of items, using each item's digest of this instance's algorithm, MD5 by default.
+	 * @param items Collection of items to add to this instance.  Items which return a null or empty digest string will be ignored.
 	 */
 	public void addAllItems(Collection<Item> items){
-		addAllMd5Strings(items.stream()
-				.map(i -> i.getDigests().getMd5())
-				.filter(v -> v != null && !v.isEmpty())
-				.collect(Collectors.toSet()));
+		DigestAlgorithm algorithm = digestSet.getAlgorithm();
+		digestSet.ensureCapacity((long)digestSet.size() + items.size());
+		long[] scratch = new long[algorithm.getWordCount()];
+		for(Item item : items){
+			addDigestString(algorithm.getItemDigest(item), scratch);
+		}
 	}
 	
 	/***
@@ -164,23 +355,16 @@ public class DigestHelper {
 	 * @throws IOException If there is an issue with the output stream.
 	 */
 	public int saveDigestList(File location) throws IOException{
-		int countSaved = 0;
-		FileOutputStream outputStream = null;
-		try{
-			outputStream = new FileOutputStream(location);
-			outputStream.write("F2DL".getBytes());
-			outputStream.write(ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN).putInt(1).array());
-			outputStream.write(ByteBuffer.allocate(2).order(ByteOrder.BIG_ENDIAN).putShort((short) 3).array());
-			outputStream.write("MD5".getBytes());
-			for(byte[] digestBytes : digestSet.stream().sorted(UnsignedBytes.lexicographicalComparator()).collect(Collectors.toList())){
-				outputStream.write(digestBytes);
-				countSaved++;
+		// Digests are sorted by unsigned value which matches the unsigned lexicographic byte order Nuix expects
+		long[] sortedDigests = digestSet.toSortedArray();
+		DigestAlgorithm algorithm = digestSet.getAlgorithm();
+		int words = algorithm.getWordCount();
+		try(SortedDigestListWriter writer = new SortedDigestListWriter(location, algorithm)){
+			for (int i = 0; i < sortedDigests.length; i += words) {
+				writer.write(sortedDigests, i);
 			}
-		}finally{
-			if(outputStream != null)
-				outputStream.close();
+			return (int)writer.getDigestsWritten();
 		}
-		return countSaved;
 	}
 	
 	/***
@@ -204,30 +388,40 @@ public class DigestHelper {
 	public int saveDigestList(String location) throws IOException{
 		return saveDigestList(new File(location));
 	}
-	
+
 	/***
-	 * Includes all entries from an existing Nuix digest list file. 
+	 * Adds the digests added so far to an existing Nuix digest list file, creating it if it does not exist.  Unlike
+	 * loading the list, adding to it and saving it again, only this instance's digests are held in memory and the
+	 * existing list is streamed once.  See {@link DigestListOperations#append(File, DigestSet)}.
+	 * @param location The location of the digest list file to add to.
+	 * @return The number of digests which were not already present in the list.
+	 * @throws IOException If there is an issue reading or replacing the list, or if it holds a different algorithm.
+	 */
+	public long appendToDigestList(File location) throws IOException{
+		return DigestListOperations.append(location, digestSet);
+	}
+
+	/***
+	 * Adds the digests added so far to the digest list with the provided name, creating it if it does not exist.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param name The name of the digest list to add to.
+	 * @return The number of digests which were not already present in the list.
+	 * @throws IOException If there is an issue reading or replacing the list, or if it holds a different algorithm.
+	 */
+	public long appendToDigestListByName(String name) throws IOException{
+		return appendToDigestList(getDigestListLocation(name));
+	}
+
+	/***
+	 * Includes all entries from an existing Nuix digest list file.  The file is memory mapped and its header
+	 * is validated before any records are read.
 	 * @param location The location of the existing digest list file.
 	 * @return The count of digests loaded from the file.
-	 * @throws IOException Caused by an issue with the input stream.
+	 * @throws IOException Caused by an issue reading the file or if the file is not a valid digest list of this
+	 * instance's algorithm.
 	 */
 	public int loadDigestList(File location) throws IOException{
-		FileInputStream inputStream = null;
-		int countRead = 0;
-		try{
-			inputStream = new FileInputStream(location);
-			inputStream.skip(13);
-			byte[] buffer = new byte[16];
-			while(inputStream.available() != 0){
-				inputStream.read(buffer);
-				digestSet.add(buffer);
-				countRead++;
-			}
-		}finally{
-			if(inputStream != null)
-				inputStream.close();
-		}
-		return countRead;
+		return DigestListLoader.load(location, digestSet);
 	}
 	
 	/***
@@ -259,6 +453,14 @@ public class DigestHelper {
 		return digestSet.size();
 	}
 	
+	/***
+	 * Gets the set backing this instance.
+	 * @return The digest set.
+	 */
+	DigestSet getDigestSet(){
+		return digestSet;
+	}
+	
 	/***
 	 * Clears out all digests currently being tracked by this instance.
 	 */
@@ -268,28 +470,57 @@ public class DigestHelper {
 	
 	/***
 	 * Whether this instance currently contains the specific digest.
-	 * @param md5 MD5 as byte array.
+	 * @param high The first 8 bytes of the MD5 as a big-endian long.
+	 * @param low The last 8 bytes of the MD5 as a big-endian long.
+	 * @return True if this instance contains this digest.
+	 */
+	public boolean currentlyContains(long high, long low){
+		return digestSet.contains(high, low);
+	}
+	
+	/***
+	 * Whether this instance currently contains the specific digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
 	 * @return True if this instance contains this digest.
 	 */
-	public boolean currentlyContains(byte[] md5){
-		return digestSet.contains(md5);
+	public boolean currentlyContains(long[] digest, int offset){
+		return digestSet.contains(digest, offset);
 	}
 	
 	/***
 	 * Whether this instance currently contains the specific digest.
-	 * @param md5 MD5 as hexadecimal string.
+	 * @param digest Digest as byte array, MD5 unless this instance was created for another algorithm.
 	 * @return True if this instance contains this digest.
 	 */
-	public boolean currentlyContains(String md5){
-		return digestSet.contains(hexToBytes(md5));
+	public boolean currentlyContains(byte[] digest){
+		return digestSet.contains(digest);
+	}
+	
+	/***
+	 * Whether this instance currently contains the specific digest.
+	 * @param digest Digest as hexadecimal string, MD5 unless this instance was created for another algorithm.
+	 * @return True if this instance contains this digest, false if it does not or the string is not the length of a
+	 * digest of this instance's algorithm.
+	 */
+	public boolean currentlyContains(String digest){
+		DigestAlgorithm algorithm = digestSet.getAlgorithm();
+		if(digest == null || digest.length() != algorithm.getWidth() * 2){ return false; }
+		if(algorithm == DigestAlgorithm.MD5){
+			return digestSet.contains(DigestHex.parseLong(digest, 0), DigestHex.parseLong(digest, 16));
+		} else {
+			long[] words = new long[algorithm.getWordCount()];
+			DigestHex.parse(digest, algorithm, words, 0);
+			return digestSet.contains(words, 0);
+		}
 	}
 	
 	/***
 	 * Whether this instance currently contains the specific digest for the provided item.
-	 * @param item The item which will have it's MD5 checked for.
+	 * @param item The item which will have it's digest of this instance's algorithm checked for.
 	 * @return True if this instance contains the digest for this item.
 	 */
 	public boolean currentlyContains(Item item){
-		return currentlyContains(item.getDigests().getMd5());
+		return currentlyContains(digestSet.getAlgorithm().getItemDigest(item));
 	}
 }
@@ -0,0 +1,170 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.util.Arrays;
+
+/***
+ * Converts digests between hexadecimal and the big-endian long form used by {@link DigestSet}, without
+ * creating intermediate byte arrays or strings.  Parsing accepts upper or lower case, formatting produces
+ * upper case to match what Nuix and {@link DigestHelper#bytesToHex(byte[])} produce.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestHex
+ *
+ * md5 = "00112233445566778899AABBCCDDEEFF"
+ * high = DigestHex.parseLong(md5, 0)
+ * low = DigestHex.parseLong(md5, 16)
+ *
+ * buffer = Java::char[32].new
+ * DigestHex.formatLong(high, buffer, 0)
+ * DigestHex.formatLong(low, buffer, 16)
+ * puts java.lang.String.new(buffer)
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestHex {
+	private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+	// Value of each ASCII character as a hex digit, -1 for characters which are not hex digits
+	private static final byte[] HEX_VALUES = new byte[128];
+	static{
+		Arrays.fill(HEX_VALUES, (byte)-1);
+		for (int i = 0; i < 10; i++) {
+			HEX_VALUES['0' + i] = (byte)i;
+		}
+		for (int i = 0; i < 6; i++) {
+			HEX_VALUES['a' + i] = (byte)(10 + i);
+			HEX_VALUES['A' + i] = (byte)(10 + i);
+		}
+	}
+
+	private DigestHex(){}
+
+	private static long parseBits(CharSequence hex, int offset, int digits){
+		long value = 0;
+		for (int i = 0; i < digits; i++) {
+			char c = hex.charAt(offset + i);
+			int digit = c < 128 ? HEX_VALUES[c] : -1;
+			if(digit < 0){
+				throw new IllegalArgumentException("Invalid hexadecimal character '"+c+"' at position "+(offset + i));
+			}
+			value = (value << 4) | digit;
+		}
+		return value;
+	}
+
+	/***
+	 * Parses 16 hexadecimal characters into a long.
+	 * @param hex The hexadecimal characters.
+	 * @param offset Position of the first of the 16 characters to parse.
+	 * @return The parsed value, as a big-endian long of the 8 bytes the characters represent.
+	 */
+	public static long parseLong(CharSequence hex, int offset){
+		return parseBits(hex, offset, 16);
+	}
+
+	/***
+	 * Parses a hexadecimal digest into longs, in the form returned by {@link DigestAlgorithm#toWords(byte[])}.
+	 * @param hex The digest as hexadecimal.
+	 * @param algorithm The algorithm of the digest, determines how many characters are expected.
+	 * @param words Destination array, must have room for {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset in the destination array of the first long.
+	 */
+	public static void parse(CharSequence hex, DigestAlgorithm algorithm, long[] words, int offset){
+		checkLength(hex, algorithm);
+		int width = algorithm.getWidth();
+		int fullWords = width / 8;
+		for (int w = 0; w < fullWords; w++) {
+			words[offset + w] = parseBits(hex, w * 16, 16);
+		}
+		if(fullWords < algorithm.getWordCount()){
+			// SHA-1 ends in a 4 byte partial word which is stored in the high half of the last long
+			words[offset + fullWords] = parseBits(hex, fullWords * 16, 8) << 32;
+		}
+	}
+
+	/***
+	 * Throws an IllegalArgumentException if the provided hexadecimal is not the length of a digest of the algorithm.
+	 * @param hex The digest as hexadecimal.
+	 * @param algorithm The expected algorithm.
+	 */
+	public static void checkLength(CharSequence hex, DigestAlgorithm algorithm){
+		if(hex == null || hex.length() != algorithm.getWidth() * 2){
+			throw new IllegalArgumentException(algorithm.getHeaderName()+" digest must be exactly "+(algorithm.getWidth() * 2)+" hexadecimal characters");
+		}
+	}
+
+	/***
+	 * Parses hexadecimal of any even length into bytes.
+	 * @param hex The hexadecimal characters.
+	 * @return The bytes represented.
+	 */
+	public static byte[] parseBytes(CharSequence hex){
+		if(hex.length() % 2 != 0){
+			throw new IllegalArgumentException("Hexadecimal must have an even number of characters: "+hex);
+		}
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte)parseBits(hex, i * 2, 2);
+		}
+		return bytes;
+	}
+
+	/***
+	 * Writes a long as 16 hexadecimal characters.
+	 * @param value The value to format.
+	 * @param destination Destination buffer.
+	 * @param offset Position in the buffer of the first character written.
+	 */
+	public static void formatLong(long value, char[] destination, int offset){
+		for (int i = 15; i >= 0; i--) {
+			destination[offset + i] = HEX_CHARS[(int)value & 0xF];
+			value >>>= 4;
+		}
+	}
+
+	/***
+	 * Writes a digest held as longs as hexadecimal characters.
+	 * @param words Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @param algorithm The algorithm of the digest.
+	 * @param destination Destination buffer, must have room for twice {@link DigestAlgorithm#getWidth()} characters.
+	 * @param destinationOffset Position in the buffer of the first character written.
+	 * @return The number of characters written.
+	 */
+	public static int format(long[] words, int offset, DigestAlgorithm algorithm, char[] destination, int destinationOffset){
+		int fullWords = algorithm.getWidth() / 8;
+		for (int w = 0; w < fullWords; w++) {
+			formatLong(words[offset + w], destination, destinationOffset + w * 16);
+		}
+		if(fullWords < algorithm.getWordCount()){
+			long tail = words[offset + fullWords] >>> 32;
+			int position = destinationOffset + fullWords * 16;
+			for (int i = 7; i >= 0; i--) {
+				destination[position + i] = HEX_CHARS[(int)tail & 0xF];
+				tail >>>= 4;
+			}
+		}
+		return algorithm.getWidth() * 2;
+	}
+
+	/***
+	 * Formats bytes as upper case hexadecimal.
+	 * @param bytes The bytes to format.
+	 * @return Hexadecimal string of the bytes.
+	 */
+	public static String formatBytes(byte[] bytes){
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_CHARS[(bytes[i] >>> 4) & 0xF];
+			chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
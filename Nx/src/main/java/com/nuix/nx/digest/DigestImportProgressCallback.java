@@ -0,0 +1,16 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+/***
+ * Callback used by {@link DigestListImporter} to report progress and throughput while importing hash files.
+ * bytesRead and totalBytes are across all of the input files, linesPerSecond is the average since the import began.
+ * @author Jason Wells
+ *
+ */
+public interface DigestImportProgressCallback {
+	public void importProgress(long linesRead, long digestsParsed, long invalidLines, long bytesRead, long totalBytes, double linesPerSecond);
+}
@@ -0,0 +1,358 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+import nuix.Item;
+
+/***
+ * Indexes the digest lists in a directory and keeps memory mapped views of recently used lists open, so that
+ * scripts run repeatedly in the same Nuix session do not re-read the same lists each time.  Each list is indexed
+ * with its size, digest count, algorithm, modification time and a checksum of its header (see {@link DigestListInfo}).
+ * Before an indexed list or cached view is handed out the file's modification time and size are checked, and a
+ * list which has changed on disk is re-indexed and re-mapped.  So that repeated queries cost no more than the mapped
+ * lookup itself, a cached view is handed out without locking or checking the file again until
+ * {@link #setFreshnessCheckMillis(long)} has passed since it was last checked.  The least recently used views are
+ * dropped once more than {@link #setMaxCachedLists(int)} are open.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestListCatalog
+ *
+ * catalog = DigestListCatalog.getDefault
+ * catalog.getLists.each{|info| puts "#{info.getName}: #{info.getDigestCount} #{info.getAlgorithm}"}
+ *
+ * # Repeated runs of this in the same session reuse the already mapped list
+ * known = items.select{|item| catalog.contains("NSRL", item)}
+ * }
+ * </pre>
+ * Instances are safe to use from multiple threads.
+ * @author Jason Wells
+ *
+ */
+public class DigestListCatalog {
+	private static Logger logger = Logger.getLogger(DigestListCatalog.class);
+
+	/***
+	 * Default number of mapped views kept open.
+	 */
+	public static final int DEFAULT_MAX_CACHED_LISTS = 16;
+
+	/***
+	 * Default number of milliseconds a cached view is handed out for before its file is checked for changes again.
+	 */
+	public static final long DEFAULT_FRESHNESS_CHECK_MILLIS = 1000;
+
+	private static Map<File,DigestListCatalog> catalogs = new HashMap<File,DigestListCatalog>();
+
+	private File directory;
+	private Map<String,DigestListInfo> index = new TreeMap<String,DigestListInfo>(String.CASE_INSENSITIVE_ORDER);
+	private boolean indexed = false;
+	private int maxCachedLists = DEFAULT_MAX_CACHED_LISTS;
+	// Access ordered so iteration starts from the least recently used view
+	private LinkedHashMap<String,CachedList> cache = new LinkedHashMap<String,CachedList>(16, 0.75f, true);
+	// The same views keyed by lower cased name, read without locking by getMappedList
+	private Map<String,CachedList> recentlyChecked = new ConcurrentHashMap<String,CachedList>();
+	private volatile long freshnessCheckMillis = DEFAULT_FRESHNESS_CHECK_MILLIS;
+
+	private LongAdder cacheHits = new LongAdder();
+	private LongAdder cacheMisses = new LongAdder();
+
+	private static class CachedList {
+		DigestListInfo info;
+		MappedDigestList list;
+		// When the file was last confirmed unchanged
+		volatile long checkedMillis;
+	}
+
+	private DigestListCatalog(File directory){
+		this.directory = directory;
+	}
+
+	/***
+	 * Gets the catalog of the default digest list directory, see {@link DigestHelper#getDigestListDirectory()}.
+	 * The same instance is returned for the life of the JVM so its cache is shared by every script run.
+	 * @return The catalog of the default digest list directory.
+	 */
+	public static DigestListCatalog getDefault(){
+		return forDirectory(DigestHelper.getDigestListDirectory());
+	}
+
+	/***
+	 * Gets the catalog of a directory of digest lists.  The same instance is returned for the life of the JVM for
+	 * a given directory.
+	 * @param directory The directory containing ".hash" digest list files.
+	 * @return The catalog of the directory.
+	 */
+	public static synchronized DigestListCatalog forDirectory(File directory){
+		File key = directory.getAbsoluteFile();
+		DigestListCatalog catalog = catalogs.get(key);
+		if(catalog == null){
+			catalog = new DigestListCatalog(key);
+			catalogs.put(key, catalog);
+		}
+		return catalog;
+	}
+
+	/***
+	 * Gets the directory this catalog indexes.
+	 * @return The digest list directory.
+	 */
+	public File getDirectory(){
+		return directory;
+	}
+
+	/***
+	 * Sets the maximum number of mapped views kept open.  Defaults to {@link #DEFAULT_MAX_CACHED_LISTS}.
+	 * @param maxCachedLists Maximum number of views to keep, 0 disables caching.
+	 */
+	public synchronized void setMaxCachedLists(int maxCachedLists){
+		this.maxCachedLists = Math.max(0, maxCachedLists);
+		evictExcess();
+	}
+
+	/***
+	 * Sets how long a cached view is handed out for before its file is checked for changes again.  Changes made to
+	 * a list within this time of it last being checked may not be seen until it passes.  Defaults to
+	 * {@link #DEFAULT_FRESHNESS_CHECK_MILLIS}.
+	 * @param freshnessCheckMillis Milliseconds between checks, 0 checks the file on every query.
+	 */
+	public void setFreshnessCheckMillis(long freshnessCheckMillis){
+		this.freshnessCheckMillis = Math.max(0, freshnessCheckMillis);
+	}
+
+	private static String cacheKey(String name){
+		return name.toLowerCase();
+	}
+
+	private void cachePut(String name, CachedList cached){
+		cache.put(name, cached);
+		recentlyChecked.put(cacheKey(name), cached);
+	}
+
+	private void cacheRemove(String name){
+		cache.remove(name);
+		recentlyChecked.remove(cacheKey(name));
+	}
+
+	/***
+	 * Rescans the directory.  Lists whose modification time and size are unchanged keep their existing index entry,
+	 * new or changed lists are indexed and lists no longer present are dropped.  Files which are not valid digest
+	 * lists are logged and skipped.
+	 */
+	public synchronized void refresh(){
+		Map<String,DigestListInfo> previous = new HashMap<String,DigestListInfo>(index);
+		index.clear();
+		File[] files = directory.listFiles((dir, fileName) -> fileName.toLowerCase().endsWith(".hash"));
+		if(files != null){
+			for(File file : files){
+				String name = DigestListInfo.nameOf(file);
+				DigestListInfo info = previous.get(name);
+				if(info == null || !info.isCurrent()){
+					try{
+						info = DigestListInfo.read(file);
+					} catch (IOException e){
+						logger.warn("Skipping digest list "+file+": "+e.getMessage());
+						continue;
+					}
+				}
+				index.put(name, info);
+			}
+		}
+		for(CachedList cached : new ArrayList<CachedList>(cache.values())){
+			if(!cached.info.isCurrent() || index.get(cached.info.getName()) != cached.info){
+				cacheRemove(cached.info.getName());
+			} else {
+				cached.checkedMillis = System.currentTimeMillis();
+			}
+		}
+		indexed = true;
+	}
+
+	private void ensureIndexed(){
+		if(!indexed){
+			refresh();
+		}
+	}
+
+	/***
+	 * Gets the information of every digest list in the directory, sorted by name.  The directory is scanned the
+	 * first time this is called, call {@link #refresh()} to pick up lists added or removed since.
+	 * @return Information of each digest list.
+	 */
+	public synchronized List<DigestListInfo> getLists(){
+		ensureIndexed();
+		List<DigestListInfo> result = new ArrayList<DigestListInfo>();
+		for(String name : new ArrayList<String>(index.keySet())){
+			DigestListInfo info = getInfo(name);
+			if(info != null){
+				result.add(info);
+			}
+		}
+		return result;
+	}
+
+	/***
+	 * Gets the information of a digest list, re-indexing it if the file has changed since it was last indexed.
+	 * @param name The name of the digest list.
+	 * @return The list information or null if there is no valid digest list with that name.
+	 */
+	public synchronized DigestListInfo getInfo(String name){
+		ensureIndexed();
+		DigestListInfo info = index.get(name);
+		if(info == null || !info.isCurrent()){
+			File location = new File(directory, name+".hash");
+			if(info != null){
+				location = info.getLocation();
+				index.remove(info.getName());
+				cacheRemove(info.getName());
+			}
+			if(!location.isFile()){
+				return null;
+			}
+			try{
+				info = DigestListInfo.read(location);
+			} catch (IOException e){
+				logger.warn("Skipping digest list "+location+": "+e.getMessage());
+				return null;
+			}
+			index.put(info.getName(), info);
+		}
+		return info;
+	}
+
+	/***
+	 * Gets a memory mapped view of a digest list, reusing a cached view when the file has not changed since it
+	 * was mapped.  A view checked within the last {@link #setFreshnessCheckMillis(long)} is returned without
+	 * locking or touching the file system.  Views are shared, callers should not close them.  A view dropped from
+	 * the cache remains usable by anyone still holding it, the mapping is released once it is no longer reachable.
+	 * @param name The name of the digest list.
+	 * @return A view over the digest list.
+	 * @throws IOException If there is no valid digest list with that name or it cannot be mapped.
+	 */
+	public MappedDigestList getMappedList(String name) throws IOException{
+		CachedList cached = recentlyChecked.get(cacheKey(name));
+		if(cached != null && System.currentTimeMillis() - cached.checkedMillis < freshnessCheckMillis){
+			cacheHits.increment();
+			return cached.list;
+		}
+		return getCheckedMappedList(name);
+	}
+
+	private synchronized MappedDigestList getCheckedMappedList(String name) throws IOException{
+		DigestListInfo info = getInfo(name);
+		if(info == null){
+			throw new IOException("No valid digest list named "+name+" in "+directory);
+		}
+		CachedList cached = cache.get(info.getName());
+		if(cached != null && cached.info == info){
+			cached.checkedMillis = System.currentTimeMillis();
+			cacheHits.increment();
+			return cached.list;
+		}
+		cacheMisses.increment();
+		cached = new CachedList();
+		cached.info = info;
+		cached.list = new MappedDigestList(info.getLocation());
+		cached.checkedMillis = System.currentTimeMillis();
+		if(maxCachedLists > 0){
+			cachePut(info.getName(), cached);
+			evictExcess();
+		}
+		return cached.list;
+	}
+
+	private void evictExcess(){
+		// Views handed out without locking do not update the access order, so this is only approximately least recently used
+		while(cache.size() > maxCachedLists){
+			// Not closed since a caller may still be querying it
+			String eldest = cache.keySet().iterator().next();
+			cacheRemove(eldest);
+		}
+	}
+
+	/***
+	 * Tests whether a digest list contains a digest.
+	 * @param name The name of the digest list.
+	 * @param digest Digest as hexadecimal string.
+	 * @return True if the list contains the digest.
+	 * @throws IOException If there is no valid digest list with that name or it cannot be mapped.
+	 */
+	public boolean contains(String name, String digest) throws IOException{
+		return getMappedList(name).contains(digest);
+	}
+
+	/***
+	 * Tests whether a digest list contains the digest of an item, using the item digest matching the list's algorithm.
+	 * @param name The name of the digest list.
+	 * @param item The item to test.
+	 * @return True if the list contains the item's digest.
+	 * @throws IOException If there is no valid digest list with that name or it cannot be mapped.
+	 */
+	public boolean contains(String name, Item item) throws IOException{
+		return getMappedList(name).contains(item);
+	}
+
+	/***
+	 * Drops the cached view of a digest list.  On Windows a mapped file cannot be replaced or deleted until its
+	 * mapping is released, which happens once the view is garbage collected.  Evict a list before modifying it in
+	 * place, for example with {@link DigestListOperations#append(File, DigestSet)}, so the catalog does not keep
+	 * its view reachable.
+	 * @param name The name of the digest list.
+	 */
+	public synchronized void evict(String name){
+		DigestListInfo info = index.get(name);
+		if(info != null){
+			cacheRemove(info.getName());
+		}
+	}
+
+	/***
+	 * Drops every cached view and the index, the directory will be scanned again on next use.
+	 */
+	public synchronized void clear(){
+		cache.clear();
+		recentlyChecked.clear();
+		index.clear();
+		indexed = false;
+	}
+
+	/***
+	 * Gets the number of mapped views currently cached.
+	 * @return Cached view count.
+	 */
+	public synchronized int getCachedListCount(){
+		return cache.size();
+	}
+
+	/***
+	 * Gets the number of {@link #getMappedList(String)} calls answered from the cache.
+	 * @return Cache hit count.
+	 */
+	public long getCacheHits(){
+		return cacheHits.sum();
+	}
+
+	/***
+	 * Gets the number of {@link #getMappedList(String)} calls which had to map the file.
+	 * @return Cache miss count.
+	 */
+	public long getCacheMisses(){
+		return cacheMisses.sum();
+	}
+}
@@ -0,0 +1,173 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/***
+ * Represents the header of a Nuix digest list file.  A digest list file is laid out as:
+ * <pre>
+ * "F2DL"              4 byte magic
+ * version             4 byte big-endian int, always 1
+ * name length         2 byte big-endian short
+ * algorithm name      ASCII bytes, for example "MD5"
+ * digests             fixed width records in unsigned lexicographic order, width depends on the algorithm
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestListHeader {
+	public static final String MAGIC = "F2DL";
+	public static final int VERSION = 1;
+
+	// Algorithm names longer than this are assumed to indicate a corrupt or foreign file
+	private static final int MAX_ALGORITHM_NAME_LENGTH = 64;
+
+	/***
+	 * Header used for MD5 digest lists, the format written by {@link DigestHelper} by default.
+	 */
+	public static final DigestListHeader MD5 = new DigestListHeader(DigestAlgorithm.MD5, DigestAlgorithm.MD5.getHeaderName());
+
+	private DigestAlgorithm algorithm;
+	private String algorithmName;
+
+	private DigestListHeader(DigestAlgorithm algorithm, String algorithmName){
+		this.algorithm = algorithm;
+		this.algorithmName = algorithmName;
+	}
+
+	/***
+	 * Gets the header for digest lists of the specified algorithm.
+	 * @param algorithm The digest algorithm.
+	 * @return A header for that algorithm.
+	 */
+	public static DigestListHeader forAlgorithm(DigestAlgorithm algorithm){
+		if(algorithm == DigestAlgorithm.MD5){
+			return MD5;
+		}
+		return new DigestListHeader(algorithm, algorithm.getHeaderName());
+	}
+
+	/***
+	 * Gets the digest algorithm of the records following this header.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the algorithm name exactly as recorded in this header.
+	 * @return The algorithm name, for example "MD5".
+	 */
+	public String getAlgorithmName(){
+		return algorithmName;
+	}
+
+	/***
+	 * Gets the size in bytes of this header as stored in a file.
+	 * @return Header length in bytes.
+	 */
+	public int getLength(){
+		return 4 + 4 + 2 + algorithmName.length();
+	}
+
+	/***
+	 * Gets the width in bytes of each digest record following this header.
+	 * @return Record width in bytes.
+	 */
+	public int getRecordWidth(){
+		return algorithm.getWidth();
+	}
+
+	/***
+	 * Writes this header to the provided output.
+	 * @param output The output to write to, expected to be positioned at the start of the file.
+	 * @throws IOException If there is an issue writing to the output.
+	 */
+	public void write(DataOutput output) throws IOException{
+		output.write(MAGIC.getBytes(StandardCharsets.US_ASCII));
+		output.writeInt(VERSION);
+		output.writeShort(algorithmName.length());
+		output.write(algorithmName.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/***
+	 * Reads and validates the header of a digest list file, also validating that the remainder of the file
+	 * consists of whole digest records.
+	 * @param location The file the channel belongs to, used for error messages.
+	 * @param channel Channel to read the header from.  Header is read from position 0, the channel position is not used.
+	 * @return The validated header.
+	 * @throws IOException If the file cannot be read or is not a valid digest list of a supported algorithm.
+	 */
+	public static DigestListHeader read(File location, FileChannel channel) throws IOException{
+		long fileSize = channel.size();
+		ByteBuffer fixed = ByteBuffer.allocate(10).order(ByteOrder.BIG_ENDIAN);
+		readFully(channel, fixed, 0);
+		if(fixed.hasRemaining()){
+			throw new IOException("Digest list "+location+" is too short to contain a header");
+		}
+		fixed.flip();
+
+		byte[] magic = new byte[4];
+		fixed.get(magic);
+		if(!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII))){
+			throw new IOException("Digest list "+location+" does not begin with "+MAGIC);
+		}
+
+		int version = fixed.getInt();
+		if(version != VERSION){
+			throw new IOException("Digest list "+location+" has unsupported version "+version);
+		}
+
+		int nameLength = fixed.getShort() & 0xFFFF;
+		if(nameLength < 1 || nameLength > MAX_ALGORITHM_NAME_LENGTH){
+			throw new IOException("Digest list "+location+" has invalid algorithm name length "+nameLength);
+		}
+
+		ByteBuffer nameBuffer = ByteBuffer.allocate(nameLength);
+		readFully(channel, nameBuffer, 10);
+		if(nameBuffer.hasRemaining()){
+			throw new IOException("Digest list "+location+" is too short to contain a header");
+		}
+		String algorithmName = new String(nameBuffer.array(), StandardCharsets.US_ASCII);
+		DigestAlgorithm algorithm = DigestAlgorithm.fromName(algorithmName);
+		if(algorithm == null){
+			throw new IOException("Digest list "+location+" uses unsupported algorithm "+algorithmName);
+		}
+
+		DigestListHeader header = new DigestListHeader(algorithm, algorithmName);
+		long dataLength = fileSize - header.getLength();
+		if(dataLength % header.getRecordWidth() != 0){
+			throw new IOException("Digest list "+location+" contains a partial record, data length "+dataLength+
+					" is not a multiple of "+header.getRecordWidth());
+		}
+		return header;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position);
+			if(read < 0){ break; }
+			position += read;
+		}
+	}
+
+	/***
+	 * Gets the number of digest records in a digest list file with this header.
+	 * @param fileSize The total size of the file in bytes.
+	 * @return The number of records in the file.
+	 */
+	public long getRecordCount(long fileSize){
+		return (fileSize - getLength()) / getRecordWidth();
+	}
+}
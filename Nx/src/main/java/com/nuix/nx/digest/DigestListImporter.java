@@ -0,0 +1,526 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/***
+ * Imports hashes from text or CSV files, such as NSRL RDS exports or vendor hash dumps, into a Nuix digest list
+ * without holding the hashes in memory.  Lines are read in chunks which are parsed in parallel, and the parsed
+ * digests are handed to a single writing thread which de-duplicates and sorts them with a {@link DigestListWriter},
+ * spilling to disk as needed, so parsing carries on while a run is being written.  Lines whose hash column is not
+ * a valid hash of the importer's algorithm are counted and skipped.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestListImporter
+ *
+ * importer = DigestListImporter.new
+ * # NSRL RDS files are quoted CSV with a header row naming the columns
+ * importer.setColumnName("MD5")
+ * importer.setProgressCallback do |lines, digests, invalid, bytes_read, total_bytes, lines_per_second|
+ *   puts "#{(bytes_read * 100.0 / total_bytes).round(1)}% #{lines} lines, #{lines_per_second.round} lines/sec"
+ * end
+ * written = importer.importFile(java.io.File.new("NSRLFile.txt"), DigestHelper::getDigestListLocation("NSRL"))
+ * puts "Digests Written: #{written}, Invalid Lines: #{importer.getInvalidLines}"
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestListImporter {
+	private static Logger logger = Logger.getLogger(DigestListImporter.class);
+
+	/***
+	 * Default number of lines handed to a parsing thread at a time.
+	 */
+	public static final int DEFAULT_CHUNK_LINES = 64 * 1024;
+
+	private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+	private static final int READ_BUFFER_CHARS = 1024 * 1024;
+	// Header rows are searched this many columns deep for the named column
+	private static final int MAX_HEADER_COLUMNS = 1024;
+
+	private DigestAlgorithm algorithm;
+	private int column = 0;
+	private String columnName = null;
+	private boolean hasHeader = false;
+	private char delimiter = ',';
+	private Charset charset = StandardCharsets.UTF_8;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int chunkLines = DEFAULT_CHUNK_LINES;
+	private long memoryBudgetBytes = DigestListWriter.DEFAULT_MEMORY_BUDGET;
+	private File tempDirectory = null;
+	private DigestImportProgressCallback progressCallback = null;
+
+	private volatile long linesRead;
+	private volatile long bytesRead;
+	private LongAdder digestsParsed = new LongAdder();
+	private LongAdder invalidLines = new LongAdder();
+	private long digestsWritten;
+
+	/***
+	 * Creates an importer of MD5 hashes.
+	 */
+	public DigestListImporter(){
+		this(DigestAlgorithm.MD5);
+	}
+
+	/***
+	 * Creates an importer of hashes of the specified algorithm.
+	 * @param algorithm The algorithm of the hashes being imported and of the resulting digest list.
+	 */
+	public DigestListImporter(DigestAlgorithm algorithm){
+		this.algorithm = algorithm;
+	}
+
+	/***
+	 * Sets the 0 based index of the column containing the hash.  Defaults to 0, the first column.
+	 * @param column Index of the hash column.
+	 */
+	public void setColumn(int column){
+		if(column < 0){
+			throw new IllegalArgumentException("Column index cannot be negative");
+		}
+		this.column = column;
+		this.columnName = null;
+	}
+
+	/***
+	 * Sets the name of the column containing the hash, as it appears in the header row of each file.  Implies
+	 * that each file has a header row.  Names are compared ignoring case.
+	 * @param columnName Name of the hash column, for example "MD5".
+	 */
+	public void setColumnName(String columnName){
+		this.columnName = columnName;
+		if(columnName != null){
+			hasHeader = true;
+		}
+	}
+
+	/***
+	 * Sets whether the first line of each file is a header row which should be skipped.  Defaults to false.
+	 * @param hasHeader True if each file begins with a header row.
+	 */
+	public void setHasHeader(boolean hasHeader){
+		this.hasHeader = hasHeader;
+	}
+
+	/***
+	 * Sets the character separating columns.  Defaults to a comma.  Values may be enclosed in double quotes.
+	 * @param delimiter The column delimiter, for example '\t' for tab separated files.
+	 */
+	public void setDelimiter(char delimiter){
+		this.delimiter = delimiter;
+	}
+
+	/***
+	 * Sets the character set the files are read with.  Defaults to UTF-8.
+	 * @param charset The character set of the input files.
+	 */
+	public void setCharset(Charset charset){
+		this.charset = charset;
+	}
+
+	/***
+	 * Sets the number of threads parsing lines.  Defaults to the number of available processors.
+	 * @param parallelism Number of parsing threads, values less than 1 use the number of available processors.
+	 */
+	public void setParallelism(int parallelism){
+		this.parallelism = parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+	}
+
+	/***
+	 * Sets the number of lines handed to a parsing thread at a time.  Defaults to {@link #DEFAULT_CHUNK_LINES}.
+	 * @param chunkLines Lines per chunk.
+	 */
+	public void setChunkLines(int chunkLines){
+		this.chunkLines = Math.max(1, chunkLines);
+	}
+
+	/***
+	 * Sets the approximate bytes of heap used to buffer digests before spilling sorted runs to disk.
+	 * Defaults to {@link DigestListWriter#DEFAULT_MEMORY_BUDGET}.
+	 * @param memoryBudgetBytes The memory budget in bytes.
+	 */
+	public void setMemoryBudget(long memoryBudgetBytes){
+		this.memoryBudgetBytes = memoryBudgetBytes;
+	}
+
+	/***
+	 * Sets the directory temporary run files are written to.  Defaults to the system temp directory.
+	 * @param tempDirectory Directory for temporary files, null to use the system temp directory.
+	 */
+	public void setTempDirectory(File tempDirectory){
+		this.tempDirectory = tempDirectory;
+	}
+
+	/***
+	 * Sets a callback which is periodically notified of progress while importing.
+	 * @param progressCallback The callback, null for no progress reporting.  Invoked on the thread calling import.
+	 */
+	public void setProgressCallback(DigestImportProgressCallback progressCallback){
+		this.progressCallback = progressCallback;
+	}
+
+	/***
+	 * Gets the number of data lines read by the most recent import, not including header rows.
+	 * @return Lines read.
+	 */
+	public long getLinesRead(){
+		return linesRead;
+	}
+
+	/***
+	 * Gets the number of hashes successfully parsed by the most recent import, including duplicates.
+	 * @return Digests parsed.
+	 */
+	public long getDigestsParsed(){
+		return digestsParsed.sum();
+	}
+
+	/***
+	 * Gets the number of non-blank lines skipped by the most recent import because their hash column was missing or invalid.
+	 * @return Invalid line count.
+	 */
+	public long getInvalidLines(){
+		return invalidLines.sum();
+	}
+
+	/***
+	 * Gets the number of distinct digests written by the most recent import.
+	 * @return Digests written.
+	 */
+	public long getDigestsWritten(){
+		return digestsWritten;
+	}
+
+	/***
+	 * Imports the hashes of a single file into a new digest list.
+	 * @param input The text or CSV file to import.
+	 * @param output The location of the digest list file to write.
+	 * @return The number of distinct digests written.
+	 * @throws IOException If there is an issue reading the input, writing the output or the named hash column is not found.
+	 */
+	public long importFile(File input, File output) throws IOException{
+		return importFiles(Collections.singletonList(input), output);
+	}
+
+	/***
+	 * Imports the hashes of multiple files into a single new digest list.
+	 * @param inputs The text or CSV files to import.
+	 * @param output The location of the digest list file to write.
+	 * @return The number of distinct digests written.
+	 * @throws IOException If there is an issue reading the inputs, writing the output or the named hash column is not found.
+	 */
+	public long importFiles(Collection<File> inputs, File output) throws IOException{
+		linesRead = 0;
+		bytesRead = 0;
+		digestsParsed.reset();
+		invalidLines.reset();
+		digestsWritten = 0;
+
+		long totalBytes = 0;
+		for(File input : inputs){
+			totalBytes += input.length();
+		}
+		long started = System.currentTimeMillis();
+
+		DigestListWriter writer = new DigestListWriter(output, algorithm, memoryBudgetBytes, tempDirectory);
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		// The writer is not thread safe, only this thread ever touches it until the import has finished
+		ExecutorService writerThread = Executors.newSingleThreadExecutor();
+		// Bounds how many chunks are held in memory waiting to be parsed or written
+		int maxChunksInFlight = parallelism * 2;
+		Semaphore chunksInFlight = new Semaphore(maxChunksInFlight);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		AtomicBoolean abandoned = new AtomicBoolean(false);
+		boolean finished = false;
+		try{
+			long bytesCompleted = 0;
+			long lastReported = started;
+			for(File input : inputs){
+				try(CountingInputStream counting = new CountingInputStream(new FileInputStream(input));
+						BufferedReader reader = new BufferedReader(new InputStreamReader(counting, charset), READ_BUFFER_CHARS)){
+					int targetColumn = column;
+					if(hasHeader){
+						String header = reader.readLine();
+						if(columnName != null){
+							targetColumn = findColumn(input, header);
+						}
+					}
+
+					List<String> chunk = new ArrayList<String>(chunkLines);
+					String line;
+					while((line = reader.readLine()) != null){
+						chunk.add(line);
+						if(chunk.size() == chunkLines){
+							submitChunk(pool, writerThread, chunksInFlight, failure, abandoned, writer, chunk, targetColumn);
+							chunk = new ArrayList<String>(chunkLines);
+							linesRead += chunkLines;
+							bytesRead = bytesCompleted + counting.getCount();
+
+							long now = System.currentTimeMillis();
+							if(now - lastReported >= PROGRESS_INTERVAL_MILLIS){
+								reportProgress(totalBytes, started);
+								lastReported = now;
+							}
+						}
+					}
+					if(!chunk.isEmpty()){
+						submitChunk(pool, writerThread, chunksInFlight, failure, abandoned, writer, chunk, targetColumn);
+						linesRead += chunk.size();
+					}
+				}
+				bytesCompleted += input.length();
+				bytesRead = bytesCompleted;
+			}
+
+			// Once every permit is available again all of the chunks have been parsed and written
+			acquire(chunksInFlight, maxChunksInFlight);
+			rethrow(failure);
+			digestsWritten = writer.finish();
+			finished = true;
+		} finally {
+			if(!finished){
+				// Chunks still queued are dropped rather than written
+				abandoned.set(true);
+			}
+			pool.shutdownNow();
+			// Discarding on the writing thread queues it behind any chunk still being added, so it never runs alongside one.
+			// No effect once finished, otherwise makes sure a failed import leaves no temporary run files behind.
+			writerThread.execute(writer::discard);
+			writerThread.shutdown();
+			awaitTermination(pool);
+			awaitTermination(writerThread);
+		}
+
+		reportProgress(totalBytes, started);
+		double seconds = Math.max(0.001, (System.currentTimeMillis() - started) / 1000.0);
+		logger.info(String.format("Imported %d lines (%d invalid) into %d distinct digests in %.1f seconds, %.0f lines/sec",
+				linesRead, invalidLines.sum(), digestsWritten, seconds, linesRead / seconds));
+		return digestsWritten;
+	}
+
+	/***
+	 * Parses a chunk on the parsing pool and then hands its digests to the writing thread.  The chunk's permit is
+	 * released once its digests have been written, or as soon as it fails.
+	 */
+	private void submitChunk(ExecutorService pool, ExecutorService writerThread, Semaphore chunksInFlight,
+			AtomicReference<Throwable> failure, AtomicBoolean abandoned, DigestListWriter writer,
+			List<String> chunk, int targetColumn) throws IOException{
+		rethrow(failure);
+		acquire(chunksInFlight, 1);
+		pool.execute(() -> {
+			boolean handedOff = false;
+			try{
+				int words = algorithm.getWordCount();
+				long[] parsed = new long[chunk.size() * words];
+				int count = parseChunk(chunk, targetColumn, parsed);
+				digestsParsed.add(count);
+				writerThread.execute(() -> {
+					try{
+						if(failure.get() == null && !abandoned.get()){
+							for (int i = 0; i < count; i++) {
+								writer.add(parsed, i * words);
+							}
+						}
+					} catch (Throwable t){
+						failure.compareAndSet(null, t);
+					} finally {
+						chunksInFlight.release();
+					}
+				});
+				handedOff = true;
+			} catch (Throwable t){
+				failure.compareAndSet(null, t);
+			} finally {
+				if(!handedOff){
+					chunksInFlight.release();
+				}
+			}
+		});
+	}
+
+	/***
+	 * Parses the hash column of each line into the provided array.
+	 * @return The number of digests parsed.
+	 */
+	private int parseChunk(List<String> chunk, int targetColumn, long[] parsed){
+		int words = algorithm.getWordCount();
+		int hexLength = algorithm.getWidth() * 2;
+		int count = 0;
+		int invalid = 0;
+		for(String line : chunk){
+			if(line.trim().isEmpty()){
+				continue;
+			}
+			String field = extractField(line, targetColumn, delimiter);
+			if(field == null || field.length() != hexLength){
+				invalid++;
+				continue;
+			}
+			try{
+				DigestHex.parse(field, algorithm, parsed, count * words);
+				count++;
+			} catch (IllegalArgumentException e){
+				invalid++;
+			}
+		}
+		invalidLines.add(invalid);
+		return count;
+	}
+
+	/***
+	 * Gets a field of a delimited line, with surrounding whitespace and double quotes removed.
+	 * @param line The line.
+	 * @param column The 0 based index of the field.
+	 * @param delimiter The field delimiter.
+	 * @return The field value, or null if the line has fewer fields.
+	 */
+	static String extractField(String line, int column, char delimiter){
+		int length = line.length();
+		int position = 0;
+		for (int field = 0; ; field++) {
+			boolean inQuotes = false;
+			int end = position;
+			for (; end < length; end++) {
+				char c = line.charAt(end);
+				if(c == '"'){
+					inQuotes = !inQuotes;
+				} else if(c == delimiter && !inQuotes){
+					break;
+				}
+			}
+			if(field == column){
+				return unquote(line, position, end);
+			}
+			if(end >= length){
+				return null;
+			}
+			position = end + 1;
+		}
+	}
+
+	private static String unquote(String line, int start, int end){
+		while(start < end && Character.isWhitespace(line.charAt(start))){ start++; }
+		while(end > start && Character.isWhitespace(line.charAt(end - 1))){ end--; }
+		if(end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"'){
+			start++;
+			end--;
+		}
+		return line.substring(start, end);
+	}
+
+	private int findColumn(File input, String header) throws IOException{
+		if(header != null){
+			for (int index = 0; index < MAX_HEADER_COLUMNS; index++) {
+				String name = extractField(header, index, delimiter);
+				if(name == null){
+					break;
+				} else if(name.equalsIgnoreCase(columnName)){
+					return index;
+				}
+			}
+		}
+		throw new IOException("Hash file "+input+" does not have a column named "+columnName);
+	}
+
+	private void reportProgress(long totalBytes, long started){
+		if(progressCallback != null){
+			double seconds = Math.max(0.001, (System.currentTimeMillis() - started) / 1000.0);
+			progressCallback.importProgress(linesRead, digestsParsed.sum(), invalidLines.sum(), bytesRead, totalBytes, linesRead / seconds);
+		}
+	}
+
+	private static void acquire(Semaphore semaphore, int permits) throws IOException{
+		try{
+			semaphore.acquire(permits);
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while importing hashes", e);
+		}
+	}
+
+	private static void awaitTermination(ExecutorService pool){
+		try{
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void rethrow(AtomicReference<Throwable> failure) throws IOException{
+		Throwable t = failure.get();
+		if(t == null){
+			return;
+		} else if(t instanceof IOException){
+			throw (IOException)t;
+		} else if(t instanceof RuntimeException){
+			throw (RuntimeException)t;
+		} else if(t instanceof Error){
+			throw (Error)t;
+		}
+		throw new IOException("Error while importing hashes", t);
+	}
+
+	/***
+	 * Tracks how many bytes have been read from the underlying stream so progress can be reported against file size.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private volatile long count;
+
+		public CountingInputStream(InputStream in){
+			super(in);
+		}
+
+		public long getCount(){
+			return count;
+		}
+
+		@Override
+		public int read() throws IOException{
+			int value = super.read();
+			if(value >= 0){ count++; }
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException{
+			int read = super.read(b, off, len);
+			if(read > 0){ count += read; }
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException{
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/***
+ * Describes a digest list file as indexed by a {@link DigestListCatalog}: its size, digest count, algorithm,
+ * modification time and a checksum of the start of the file.  Instances are immutable snapshots, compare
+ * {@link #isCurrent()} to learn whether the file has since changed.
+ * @author Jason Wells
+ *
+ */
+public class DigestListInfo {
+	// The checksum covers the header and however many leading records fit in this many bytes
+	private static final int CHECKSUM_BYTES = 4096;
+
+	private String name;
+	private File location;
+	private long fileSize;
+	private long lastModified;
+	private DigestAlgorithm algorithm;
+	private long digestCount;
+	private long headerChecksum;
+
+	private DigestListInfo(){}
+
+	/***
+	 * Reads the information of a digest list file, validating its header.
+	 * @param location The digest list file.
+	 * @return Information about the file.
+	 * @throws IOException If the file cannot be read or is not a valid digest list.
+	 */
+	public static DigestListInfo read(File location) throws IOException{
+		DigestListInfo info = new DigestListInfo();
+		info.location = location;
+		info.name = nameOf(location);
+		// Taken before reading so a concurrent modification makes this snapshot stale rather than wrongly current
+		info.lastModified = location.lastModified();
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			info.fileSize = channel.size();
+			DigestListHeader header = DigestListHeader.read(location, channel);
+			info.algorithm = header.getAlgorithm();
+			info.digestCount = header.getRecordCount(info.fileSize);
+
+			ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(CHECKSUM_BYTES, info.fileSize));
+			while(buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0){}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.array(), 0, buffer.position());
+			info.headerChecksum = crc.getValue();
+		}
+		return info;
+	}
+
+	/***
+	 * Gets the name of a digest list, being its file name without the ".hash" extension.
+	 * @param location The digest list file.
+	 * @return The digest list name.
+	 */
+	static String nameOf(File location){
+		String name = location.getName();
+		if(name.toLowerCase().endsWith(".hash")){
+			name = name.substring(0, name.length() - 5);
+		}
+		return name;
+	}
+
+	/***
+	 * Tests whether the file still has the size and modification time recorded in this snapshot.
+	 * @return True if the file appears unchanged since this information was read.
+	 */
+	public boolean isCurrent(){
+		return location.lastModified() == lastModified && location.length() == fileSize;
+	}
+
+	/***
+	 * Gets the digest list name, being the file name without the ".hash" extension.
+	 * @return The digest list name.
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/***
+	 * Gets the digest list file.
+	 * @return The digest list file.
+	 */
+	public File getLocation(){
+		return location;
+	}
+
+	/***
+	 * Gets the size of the file in bytes.
+	 * @return The file size.
+	 */
+	public long getFileSize(){
+		return fileSize;
+	}
+
+	/***
+	 * Gets the modification time of the file when it was indexed.
+	 * @return Modification time in milliseconds since the epoch.
+	 */
+	public long getLastModified(){
+		return lastModified;
+	}
+
+	/***
+	 * Gets the algorithm of the digests in the list.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the number of digests in the list.
+	 * @return The digest count.
+	 */
+	public long getDigestCount(){
+		return digestCount;
+	}
+
+	/***
+	 * Gets a CRC32 of the first 4KB of the file, covering the header and the leading digest records.  Useful for
+	 * noticing that a list was replaced by a different one with the same name.
+	 * @return The checksum.
+	 */
+	public long getHeaderChecksum(){
+		return headerChecksum;
+	}
+
+	@Override
+	public String toString(){
+		return name+" ("+algorithm.getHeaderName()+", "+digestCount+" digests)";
+	}
+}
@@ -0,0 +1,18 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+
+/***
+ * Callback used by {@link DigestHelper#createFromExistingDigestListsParallel(java.util.Collection, int, DigestListLoadedCallback)}
+ * to report progress as each digest list file finishes loading.
+ * @author Jason Wells
+ *
+ */
+public interface DigestListLoadedCallback {
+	public void digestListLoaded(File digestFile, int digestsLoaded, int filesCompleted, int totalFiles);
+}
@@ -0,0 +1,103 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Bulk loads Nuix digest list files into a {@link DigestSet} by memory mapping the file and decoding records
+ * directly from the mapped buffer in large strides.
+ * @author Jason Wells
+ *
+ */
+public class DigestListLoader {
+	// A single mapping is limited to Integer.MAX_VALUE bytes so larger files are mapped in segments
+	private static final long SEGMENT_BYTES = 1L << 30;
+	// Number of longs decoded from the mapped buffer per bulk get
+	private static final int STRIDE_LONGS = 64 * 1024;
+
+	private DigestListLoader(){}
+
+	/***
+	 * Reads the header of a digest list file without loading any of its digests.
+	 * @param location The digest list file.
+	 * @return The file's header.
+	 * @throws IOException If the file cannot be read or does not have a valid digest list header.
+	 */
+	public static DigestListHeader readHeader(File location) throws IOException{
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			return DigestListHeader.read(location, channel);
+		}
+	}
+
+	/***
+	 * Loads every digest in a digest list file into the provided digest set.
+	 * @param location The digest list file to load.
+	 * @param digestSet The set which digests will be added to.  Must hold the same algorithm as the file.
+	 * @return The number of digest records read from the file.
+	 * @throws IOException If the file cannot be read, does not have a valid digest list header or holds a different
+	 * algorithm than the digest set.
+	 */
+	public static int load(File location, DigestSet digestSet) throws IOException{
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			DigestListHeader header = DigestListHeader.read(location, channel);
+			DigestAlgorithm algorithm = header.getAlgorithm();
+			if(algorithm != digestSet.getAlgorithm()){
+				throw new IOException("Digest list "+location+" holds "+algorithm.getHeaderName()+" digests, expected "+
+						digestSet.getAlgorithm().getHeaderName());
+			}
+			long fileSize = channel.size();
+			long recordCount = header.getRecordCount(fileSize);
+			if(recordCount > Integer.MAX_VALUE){
+				throw new IOException("Digest list "+location+" contains "+recordCount+" records which exceeds what can be loaded into memory");
+			}
+			digestSet.ensureCapacity((long)digestSet.size() + recordCount);
+
+			int width = algorithm.getWidth();
+			int words = algorithm.getWordCount();
+			long[] stride = new long[STRIDE_LONGS / words * words];
+			long segmentBytes = SEGMENT_BYTES / width * width;
+			long position = header.getLength();
+			while(position < fileSize){
+				long segmentLength = Math.min(segmentBytes, fileSize - position);
+				MappedByteBuffer mapped = channel.map(MapMode.READ_ONLY, position, segmentLength);
+				mapped.order(ByteOrder.BIG_ENDIAN);
+				if(width == words * 8){
+					// Records are whole longs (MD5, SHA-256) so they can be bulk copied out of the mapping
+					LongBuffer longs = mapped.asLongBuffer();
+					while(longs.hasRemaining()){
+						int count = Math.min(stride.length, longs.remaining());
+						longs.get(stride, 0, count);
+						if(words == 2){
+							for (int i = 0; i < count; i += 2) {
+								digestSet.add(stride[i], stride[i + 1]);
+							}
+						} else {
+							for (int i = 0; i < count; i += words) {
+								digestSet.add(stride, i);
+							}
+						}
+					}
+				} else {
+					int records = (int)(segmentLength / width);
+					for (int r = 0; r < records; r++) {
+						algorithm.readRecord(mapped, r * width, stride, 0);
+						digestSet.add(stride, 0);
+					}
+				}
+				position += segmentLength;
+			}
+			return (int)recordCount;
+		}
+	}
+}
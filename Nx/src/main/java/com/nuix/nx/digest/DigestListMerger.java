@@ -0,0 +1,209 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/***
+ * Performs a k-way merge over multiple sorted digest list files, visiting each distinct digest once in sorted order
+ * along with which of the input files contain it.  Only a fixed size read buffer per input is held in memory.
+ * @author Jason Wells
+ *
+ */
+public class DigestListMerger implements Closeable {
+	private List<DigestListReader> readers = new ArrayList<DigestListReader>();
+	private PriorityQueue<Integer> queue;
+	private BitSet membership;
+	private int membershipCount;
+	private DigestAlgorithm algorithm = DigestAlgorithm.MD5;
+	private int words;
+	private long[] current;
+
+	/***
+	 * Opens each of the provided digest list files for merging.
+	 * @param inputs The digest list files to merge.  The index of each file in this list is the index used by {@link #isMember(int)}.
+	 * @throws IOException If any of the files cannot be opened, are not valid digest lists or do not all hold the
+	 * same digest algorithm.
+	 */
+	public DigestListMerger(List<File> inputs) throws IOException{
+		try{
+			for(File input : inputs){
+				DigestListReader reader = new DigestListReader(input);
+				readers.add(reader);
+				if(readers.size() == 1){
+					algorithm = reader.getAlgorithm();
+				} else if(reader.getAlgorithm() != algorithm){
+					throw new IOException("Digest list "+input+" holds "+reader.getAlgorithm().getHeaderName()+
+							" digests, expected "+algorithm.getHeaderName()+" to match "+readers.get(0).getLocation());
+				}
+			}
+		} catch (IOException e){
+			close();
+			throw e;
+		}
+		words = algorithm.getWordCount();
+		current = new long[words];
+
+		queue = new PriorityQueue<Integer>(Math.max(1, readers.size()), (a, b) -> {
+			return DigestArrays.compare(readers.get(a).getDigest(), 0, readers.get(b).getDigest(), 0, words);
+		});
+		membership = new BitSet(readers.size());
+
+		for (int i = 0; i < readers.size(); i++) {
+			if(readers.get(i).next()){
+				queue.add(i);
+			}
+		}
+	}
+
+	/***
+	 * Gets the number of input files being merged.
+	 * @return The input count.
+	 */
+	public int getInputCount(){
+		return readers.size();
+	}
+
+	/***
+	 * Gets the digest algorithm shared by all of the inputs.
+	 * @return The digest algorithm, MD5 if there are no inputs.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the sum of the digest counts of all the input files, useful for reporting progress against {@link #getDigestsRead()}.
+	 * @return Total records across all inputs.
+	 */
+	public long getTotalDigestCount(){
+		long total = 0;
+		for(DigestListReader reader : readers){
+			total += reader.getDigestCount();
+		}
+		return total;
+	}
+
+	/***
+	 * Gets the number of records read so far across all the input files.
+	 * @return Records read so far.
+	 */
+	public long getDigestsRead(){
+		long total = 0;
+		for(DigestListReader reader : readers){
+			total += reader.getDigestsRead();
+		}
+		return total;
+	}
+
+	/***
+	 * Advances to the next distinct digest across all the inputs.
+	 * @return True if there was another digest, false once all inputs have been exhausted.
+	 * @throws IOException If there is an issue reading one of the inputs.
+	 */
+	public boolean next() throws IOException{
+		membership.clear();
+		membershipCount = 0;
+		if(queue.isEmpty()){
+			return false;
+		}
+
+		System.arraycopy(readers.get(queue.peek()).getDigest(), 0, current, 0, words);
+
+		while(!queue.isEmpty()){
+			int index = queue.peek();
+			DigestListReader reader = readers.get(index);
+			if(!DigestArrays.equals(reader.getDigest(), 0, current, 0, words)){
+				break;
+			}
+			queue.poll();
+			membership.set(index);
+			membershipCount++;
+
+			// Skip any repeats of this digest within the same input so it is only counted once per input
+			boolean hasMore;
+			do{
+				hasMore = reader.next();
+			} while(hasMore && DigestArrays.equals(reader.getDigest(), 0, current, 0, words));
+
+			if(hasMore){
+				queue.add(index);
+			}
+		}
+		return true;
+	}
+
+	/***
+	 * Gets the current digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.  The returned array is
+	 * owned by this merger and its contents change on each call to {@link #next()}.
+	 * @return The current digest.
+	 */
+	public long[] getDigest(){
+		return current;
+	}
+
+	/***
+	 * Gets the first 8 bytes of the current digest as a big-endian long.
+	 * @return The high half of an MD5 digest.
+	 */
+	public long getHigh(){
+		return current[0];
+	}
+
+	/***
+	 * Gets the second 8 bytes of the current digest as a big-endian long.
+	 * @return The low half of an MD5 digest.
+	 */
+	public long getLow(){
+		return current[1];
+	}
+
+	/***
+	 * Gets how many of the inputs contain the current digest.
+	 * @return The number of inputs containing the current digest.
+	 */
+	public int getMembershipCount(){
+		return membershipCount;
+	}
+
+	/***
+	 * Whether the input at the given index contains the current digest.
+	 * @param inputIndex Index of the input in the list provided to the constructor.
+	 * @return True if that input contains the current digest.
+	 */
+	public boolean isMember(int inputIndex){
+		return membership.get(inputIndex);
+	}
+
+	/***
+	 * Gets which inputs contain the current digest.  The returned instance is reused between calls to {@link #next()}.
+	 * @return Bits set for each input index containing the current digest.
+	 */
+	public BitSet getMembership(){
+		return membership;
+	}
+
+	@Override
+	public void close() throws IOException{
+		IOException first = null;
+		for(DigestListReader reader : readers){
+			try{
+				reader.close();
+			} catch (IOException e){
+				if(first == null){ first = e; }
+			}
+		}
+		if(first != null){
+			throw first;
+		}
+	}
+}
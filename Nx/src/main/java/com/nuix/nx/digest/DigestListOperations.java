@@ -0,0 +1,177 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/***
+ * Set operations over existing Nuix digest list files.  Each operation performs a single streaming merge over the
+ * sorted input files and writes the result directly to a new digest list file, so memory use is bounded by a small
+ * read buffer per input regardless of how large the lists are.  All inputs to an operation must hold the same
+ * digest algorithm, the output is written in that algorithm.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestListOperations
+ *
+ * inputs = ["ListA","ListB","ListC"].map{|name| DigestHelper::getDigestListLocation(name)}
+ * output = DigestHelper::getDigestListLocation("Combined")
+ * written = DigestListOperations.union(inputs, output)
+ * puts "Combined list contains #{written} digests"
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestListOperations {
+	private DigestListOperations(){}
+
+	/***
+	 * Determines from the inputs containing a given digest whether that digest belongs in the output.
+	 */
+	private interface MembershipRule {
+		public boolean include(DigestListMerger merger);
+	}
+
+	/***
+	 * Writes a digest list containing every digest present in any of the inputs.
+	 * @param inputs The digest lists to combine.
+	 * @param output Where to write the resulting digest list.
+	 * @return The number of digests written.
+	 * @throws IOException If there is an issue reading the inputs or writing the output.
+	 */
+	public static long union(Collection<File> inputs, File output) throws IOException{
+		return merge(inputs, output, merger -> true);
+	}
+
+	/***
+	 * Writes a digest list containing only the digests present in every one of the inputs.
+	 * @param inputs The digest lists to intersect.
+	 * @param output Where to write the resulting digest list.
+	 * @return The number of digests written.
+	 * @throws IOException If there is an issue reading the inputs or writing the output.
+	 */
+	public static long intersection(Collection<File> inputs, File output) throws IOException{
+		int inputCount = inputs.size();
+		return merge(inputs, output, merger -> merger.getMembershipCount() == inputCount);
+	}
+
+	/***
+	 * Writes a digest list containing the digests of one list which are not present in any of the other lists.
+	 * @param source The digest list to subtract from.
+	 * @param subtract The digest lists whose digests should be removed.
+	 * @param output Where to write the resulting digest list.
+	 * @return The number of digests written.
+	 * @throws IOException If there is an issue reading the inputs or writing the output.
+	 */
+	public static long difference(File source, Collection<File> subtract, File output) throws IOException{
+		List<File> inputs = new ArrayList<File>();
+		inputs.add(source);
+		inputs.addAll(subtract);
+		return merge(inputs, output, merger -> merger.isMember(0) && merger.getMembershipCount() == 1);
+	}
+
+	/***
+	 * Writes a digest list containing the symmetric difference of the inputs, being the digests present in an
+	 * odd number of the inputs.  For two inputs this is the digests present in one list but not the other.
+	 * @param inputs The digest lists to combine.
+	 * @param output Where to write the resulting digest list.
+	 * @return The number of digests written.
+	 * @throws IOException If there is an issue reading the inputs or writing the output.
+	 */
+	public static long symmetricDifference(Collection<File> inputs, File output) throws IOException{
+		return merge(inputs, output, merger -> (merger.getMembershipCount() & 1) == 1);
+	}
+
+	/***
+	 * Adds digests to an existing digest list file without loading the list into memory.  Only the provided delta is
+	 * sorted in memory, it is then merged with a sequential read of the existing list into a replacement file in the
+	 * same directory, which is finally renamed over the original.  Cost is one sequential read and write of the list
+	 * with heap use bounded by the delta, so this is much cheaper than loading, adding to and re-saving a large list.
+	 * If the list does not yet exist it is created from the delta.  The existing list must not be open elsewhere,
+	 * such as by a {@link MappedDigestList}, since on Windows an open file cannot be replaced.
+	 * @param location The digest list file to add to.
+	 * @param digests The digests to add, must be of the same algorithm as the existing list.
+	 * @return The number of digests added which were not already present in the list.
+	 * @throws IOException If there is an issue reading or replacing the list, or if the list holds a different
+	 * algorithm than the digests being added.
+	 */
+	public static long append(File location, DigestSet digests) throws IOException{
+		DigestAlgorithm algorithm = digests.getAlgorithm();
+		int words = algorithm.getWordCount();
+		long[] delta = digests.toSortedArray();
+		int deltaCount = digests.size();
+
+		File directory = location.getAbsoluteFile().getParentFile();
+		File replacement = File.createTempFile(location.getName(), ".tmp", directory);
+		boolean replaced = false;
+		try{
+			long added = 0;
+			try(SortedDigestListWriter writer = new SortedDigestListWriter(replacement, algorithm)){
+				int d = 0;
+				if(location.exists()){
+					try(DigestListReader reader = new DigestListReader(location)){
+						if(reader.getAlgorithm() != algorithm){
+							throw new IOException("Digest list "+location+" holds "+reader.getAlgorithm().getHeaderName()+
+									" digests, cannot append "+algorithm.getHeaderName()+" digests");
+						}
+						while(reader.next()){
+							long[] current = reader.getDigest();
+							while(d < deltaCount && DigestArrays.compare(delta, d * words, current, 0, words) < 0){
+								if(writer.write(delta, d * words)){ added++; }
+								d++;
+							}
+							writer.write(current, 0);
+						}
+					}
+				}
+				// Remaining delta digests sort after everything in the existing list, the writer drops any equal to
+				// the last existing digest
+				for (; d < deltaCount; d++) {
+					if(writer.write(delta, d * words)){ added++; }
+				}
+			}
+
+			try{
+				Files.move(replacement.toPath(), location.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e){
+				Files.move(replacement.toPath(), location.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			replaced = true;
+			return added;
+		} finally {
+			if(!replaced){
+				replacement.delete();
+			}
+		}
+	}
+
+	private static long merge(Collection<File> inputs, File output, MembershipRule rule) throws IOException{
+		List<File> inputList = new ArrayList<File>(inputs);
+		for(File input : inputList){
+			if(input.getCanonicalFile().equals(output.getCanonicalFile())){
+				throw new IllegalArgumentException("Output digest list cannot also be an input: "+output);
+			}
+		}
+
+		try(DigestListMerger merger = new DigestListMerger(inputList);
+				SortedDigestListWriter writer = new SortedDigestListWriter(output, merger.getAlgorithm())){
+			while(merger.next()){
+				if(rule.include(merger)){
+					writer.write(merger.getDigest(), 0);
+				}
+			}
+			return writer.getDigestsWritten();
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import com.google.gson.GsonBuilder;
+import com.nuix.nx.callbacks.SimpleProgressCallback;
+
+/***
+ * Reports how much a set of digest lists overlap each other: the distinct and unique digest counts of each list,
+ * the number of digests shared by every pair of lists, and how many digests share each combination of lists.
+ * Everything is computed in a single streaming {@link DigestListMerger} pass over the sorted files, so the lists
+ * are never loaded into memory.  Optionally the membership of every individual digest can be written out during
+ * that same pass.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestListOverlapReport
+ *
+ * lists = ["NSRL","Vendor A","Vendor B"].map{|name| DigestHelper::getDigestListLocation(name)}
+ * report = DigestListOverlapReport.compute(lists)
+ * report.writeCsv(java.io.File.new("C:\\Reports\\overlap.csv"))
+ * lists.each_with_index do |list, i|
+ *   puts "#{list.getName}: #{report.getDistinctCount(i)} digests, #{report.getUniqueCount(i)} unique"
+ * end
+ * }
+ * </pre>
+ * @author Jason Wells
+ *
+ */
+public class DigestListOverlapReport {
+	// Progress is reported after this many distinct digests
+	private static final long PROGRESS_INTERVAL_DIGESTS = 1000000;
+
+	private List<File> lists;
+	private long[] distinctCounts;
+	private long[] uniqueCounts;
+	private long[][] overlapCounts;
+	private long unionCount;
+	private Map<BitSet,long[]> membershipPatternCounts = new HashMap<BitSet,long[]>();
+
+	private DigestListOverlapReport(List<File> lists){
+		this.lists = new ArrayList<File>(lists);
+		int count = lists.size();
+		distinctCounts = new long[count];
+		uniqueCounts = new long[count];
+		overlapCounts = new long[count][count];
+	}
+
+	/***
+	 * Computes the overlap report for the provided digest lists.
+	 * @param lists The digest lists to compare, all of the same algorithm.
+	 * @return The computed report.
+	 * @throws IOException If there is an issue reading any of the lists.
+	 */
+	public static DigestListOverlapReport compute(List<File> lists) throws IOException{
+		return compute(lists, null, null);
+	}
+
+	/***
+	 * Computes the overlap report for the provided digest lists, optionally writing the membership of every digest.
+	 * @param lists The digest lists to compare, all of the same algorithm.
+	 * @param membershipCsv If not null, a CSV file which will receive a row per distinct digest with the digest,
+	 * the number of lists containing it and a bitmap string where character i is 1 if list i contains the digest.
+	 * @param progressCallback Optional callback notified periodically with digest records read so far and the total
+	 * across all lists, may be null.
+	 * @return The computed report.
+	 * @throws IOException If there is an issue reading any of the lists or writing the membership CSV.
+	 */
+	public static DigestListOverlapReport compute(List<File> lists, File membershipCsv, SimpleProgressCallback progressCallback) throws IOException{
+		DigestListOverlapReport report = new DigestListOverlapReport(lists);
+		try(DigestListMerger merger = new DigestListMerger(report.lists);
+				CSVPrinter membershipPrinter = membershipCsv == null ? null : CSVFormat.EXCEL.print(openWriter(membershipCsv))){
+			int listCount = report.lists.size();
+			DigestAlgorithm algorithm = merger.getAlgorithm();
+			char[] digestChars = new char[algorithm.getWidth() * 2];
+			char[] bitmapChars = new char[listCount];
+			if(membershipPrinter != null){
+				membershipPrinter.printRecord("Digest", "Lists", "Membership");
+			}
+
+			long totalDigestCount = merger.getTotalDigestCount();
+			while(merger.next()){
+				BitSet membership = merger.getMembership();
+				report.record(membership, merger.getMembershipCount());
+
+				if(membershipPrinter != null){
+					DigestHex.format(merger.getDigest(), 0, algorithm, digestChars, 0);
+					for (int i = 0; i < listCount; i++) {
+						bitmapChars[i] = membership.get(i) ? '1' : '0';
+					}
+					membershipPrinter.printRecord(new String(digestChars), merger.getMembershipCount(), new String(bitmapChars));
+				}
+
+				if(progressCallback != null && report.unionCount % PROGRESS_INTERVAL_DIGESTS == 0){
+					progressCallback.progressUpdated(merger.getDigestsRead(), totalDigestCount);
+				}
+			}
+			if(progressCallback != null){
+				progressCallback.progressUpdated(merger.getDigestsRead(), totalDigestCount);
+			}
+		}
+		return report;
+	}
+
+	private static Writer openWriter(File location) throws IOException{
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(location), StandardCharsets.UTF_8), 1024 * 1024);
+	}
+
+	/***
+	 * Accumulates the counts for one distinct digest.
+	 */
+	private void record(BitSet membership, int membershipCount){
+		unionCount++;
+		for (int i = membership.nextSetBit(0); i >= 0; i = membership.nextSetBit(i + 1)) {
+			distinctCounts[i]++;
+			if(membershipCount == 1){
+				uniqueCounts[i]++;
+			}
+			for (int j = membership.nextSetBit(i + 1); j >= 0; j = membership.nextSetBit(j + 1)) {
+				overlapCounts[i][j]++;
+			}
+		}
+		long[] patternCount = membershipPatternCounts.get(membership);
+		if(patternCount == null){
+			// The merger reuses its BitSet so the key needs to be a copy
+			patternCount = new long[1];
+			membershipPatternCounts.put((BitSet)membership.clone(), patternCount);
+		}
+		patternCount[0]++;
+	}
+
+	/***
+	 * Gets the number of lists compared.
+	 * @return The list count.
+	 */
+	public int getListCount(){
+		return lists.size();
+	}
+
+	/***
+	 * Gets a list being compared.
+	 * @param index Index of the list in the list provided to compute.
+	 * @return The digest list file.
+	 */
+	public File getList(int index){
+		return lists.get(index);
+	}
+
+	/***
+	 * Gets the display name of a list, being its file name without the ".hash" extension.
+	 * @param index Index of the list in the list provided to compute.
+	 * @return The list name.
+	 */
+	public String getListName(int index){
+		return DigestListInfo.nameOf(lists.get(index));
+	}
+
+	/***
+	 * Gets the number of distinct digests in a list.
+	 * @param index Index of the list in the list provided to compute.
+	 * @return Distinct digest count.
+	 */
+	public long getDistinctCount(int index){
+		return distinctCounts[index];
+	}
+
+	/***
+	 * Gets the number of digests found only in a list and in none of the others.
+	 * @param index Index of the list in the list provided to compute.
+	 * @return Unique digest count.
+	 */
+	public long getUniqueCount(int index){
+		return uniqueCounts[index];
+	}
+
+	/***
+	 * Gets the number of digests present in both of two lists.  When both indices are the same this is the distinct
+	 * count of that list.
+	 * @param first Index of the first list.
+	 * @param second Index of the second list.
+	 * @return Count of digests present in both lists.
+	 */
+	public long getOverlapCount(int first, int second){
+		if(first == second){
+			return distinctCounts[first];
+		}
+		return overlapCounts[Math.min(first, second)][Math.max(first, second)];
+	}
+
+	/***
+	 * Gets the number of distinct digests across all the lists.
+	 * @return The size of the union of all the lists.
+	 */
+	public long getUnionCount(){
+		return unionCount;
+	}
+
+	/***
+	 * Gets how many digests are present in exactly each combination of lists which occurs.
+	 * @return Map of list membership (bit i set for list i) to the number of digests with that membership.
+	 */
+	public Map<BitSet,Long> getMembershipPatternCounts(){
+		Map<BitSet,Long> result = new LinkedHashMap<BitSet,Long>();
+		membershipPatternCounts.entrySet().stream()
+			.sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+			.forEach(e -> result.put((BitSet)e.getKey().clone(), e.getValue()[0]));
+		return result;
+	}
+
+	/***
+	 * Writes the overlap matrix as CSV.  There is a row per list with its distinct and unique counts, followed by
+	 * a column per list holding the number of digests the row's list shares with that column's list.
+	 * @param location Where to write the CSV file.
+	 * @throws IOException If there is an issue writing the file.
+	 */
+	public void writeCsv(File location) throws IOException{
+		try(CSVPrinter printer = CSVFormat.EXCEL.print(openWriter(location))){
+			List<Object> header = new ArrayList<Object>();
+			header.add("List");
+			header.add("Distinct");
+			header.add("Unique");
+			for (int i = 0; i < lists.size(); i++) {
+				header.add(getListName(i));
+			}
+			printer.printRecord(header);
+
+			for (int i = 0; i < lists.size(); i++) {
+				List<Object> row = new ArrayList<Object>();
+				row.add(getListName(i));
+				row.add(distinctCounts[i]);
+				row.add(uniqueCounts[i]);
+				for (int j = 0; j < lists.size(); j++) {
+					row.add(getOverlapCount(i, j));
+				}
+				printer.printRecord(row);
+			}
+		}
+	}
+
+	/***
+	 * Gets this report as a Map, the structure used for JSON output.  Lists refer to each other by their index, since
+	 * lists in different directories may share a name.
+	 * @return Map representation of this report.
+	 */
+	public Map<String,Object> toMap(){
+		Map<String,Object> result = new LinkedHashMap<String,Object>();
+		result.put("unionCount", unionCount);
+
+		List<Object> listEntries = new ArrayList<Object>();
+		for (int i = 0; i < lists.size(); i++) {
+			Map<String,Object> entry = new LinkedHashMap<String,Object>();
+			entry.put("index", i);
+			entry.put("name", getListName(i));
+			entry.put("path", lists.get(i).getAbsolutePath());
+			entry.put("distinctCount", distinctCounts[i]);
+			entry.put("uniqueCount", uniqueCounts[i]);
+			List<Object> overlaps = new ArrayList<Object>();
+			for (int j = 0; j < lists.size(); j++) {
+				if(j != i){
+					Map<String,Object> overlap = new LinkedHashMap<String,Object>();
+					overlap.put("index", j);
+					overlap.put("name", getListName(j));
+					overlap.put("digestCount", getOverlapCount(i, j));
+					overlaps.add(overlap);
+				}
+			}
+			entry.put("overlaps", overlaps);
+			listEntries.add(entry);
+		}
+		result.put("lists", listEntries);
+
+		List<Object> patterns = new ArrayList<Object>();
+		for(Map.Entry<BitSet,Long> pattern : getMembershipPatternCounts().entrySet()){
+			Map<String,Object> entry = new LinkedHashMap<String,Object>();
+			List<Integer> indices = new ArrayList<Integer>();
+			List<String> names = new ArrayList<String>();
+			BitSet membership = pattern.getKey();
+			for (int i = membership.nextSetBit(0); i >= 0; i = membership.nextSetBit(i + 1)) {
+				indices.add(i);
+				names.add(getListName(i));
+			}
+			entry.put("lists", indices);
+			entry.put("names", names);
+			entry.put("digestCount", pattern.getValue());
+			patterns.add(entry);
+		}
+		result.put("membershipPatterns", patterns);
+		return result;
+	}
+
+	/***
+	 * Gets this report as pretty printed JSON.
+	 * @return JSON representation of this report.
+	 */
+	public String toJson(){
+		return new GsonBuilder().setPrettyPrinting().create().toJson(toMap());
+	}
+
+	/***
+	 * Writes this report as JSON.
+	 * @param location Where to write the JSON file.
+	 * @throws IOException If there is an issue writing the file.
+	 */
+	public void writeJson(File location) throws IOException{
+		try(Writer writer = openWriter(location)){
+			writer.write(toJson());
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/***
+ * Sequentially reads the digests of a Nuix digest list file in file order using a fixed size buffer, so
+ * memory use does not depend on the size of the file.  Used to stream merge sorted digest lists.
+ * Also verifies while reading that the file is sorted, since merging relies on that.
+ * @author Jason Wells
+ *
+ */
+public class DigestListReader implements Closeable {
+	private static final int DEFAULT_BUFFER_BYTES = 256 * 1024;
+
+	private File location;
+	private FileChannel channel;
+	private DigestListHeader header;
+	private ByteBuffer buffer;
+	private long recordCount;
+	private long recordsRead;
+	private DigestAlgorithm algorithm;
+	private int width;
+	private int words;
+	private long[] current;
+	private long[] previous;
+
+	/***
+	 * Opens a digest list file for sequential reading.
+	 * @param location The digest list file to read.
+	 * @throws IOException If the file cannot be read or does not have a valid digest list header.
+	 */
+	public DigestListReader(File location) throws IOException{
+		this(location, DEFAULT_BUFFER_BYTES);
+	}
+
+	/***
+	 * Opens a digest list file for sequential reading.
+	 * @param location The digest list file to read.
+	 * @param bufferBytes Size of the read buffer in bytes.
+	 * @throws IOException If the file cannot be read or does not have a valid digest list header.
+	 */
+	public DigestListReader(File location, int bufferBytes) throws IOException{
+		this.location = location;
+		channel = FileChannel.open(location.toPath(), StandardOpenOption.READ);
+		try{
+			header = DigestListHeader.read(location, channel);
+			recordCount = header.getRecordCount(channel.size());
+			channel.position(header.getLength());
+		} catch (IOException e){
+			channel.close();
+			throw e;
+		}
+		algorithm = header.getAlgorithm();
+		width = algorithm.getWidth();
+		words = algorithm.getWordCount();
+		current = new long[words];
+		previous = new long[words];
+		buffer = ByteBuffer.allocateDirect(Math.max(width, bufferBytes / width * width));
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.limit(0);
+	}
+
+	/***
+	 * Gets the file being read.
+	 * @return The digest list file.
+	 */
+	public File getLocation(){
+		return location;
+	}
+
+	/***
+	 * Gets the header of the file being read.
+	 * @return The digest list header.
+	 */
+	public DigestListHeader getHeader(){
+		return header;
+	}
+
+	/***
+	 * Gets the algorithm of the digests in the file being read.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets the total number of digests in the file being read.
+	 * @return The digest count.
+	 */
+	public long getDigestCount(){
+		return recordCount;
+	}
+
+	/***
+	 * Gets the number of digests read so far.
+	 * @return The count of digests which have been read.
+	 */
+	public long getDigestsRead(){
+		return recordsRead;
+	}
+
+	/***
+	 * Advances to the next digest in the file.
+	 * @return True if a digest was read, false if the end of the file has been reached.
+	 * @throws IOException If there is an issue reading the file or the file is found to not be sorted.
+	 */
+	public boolean next() throws IOException{
+		if(recordsRead >= recordCount){
+			return false;
+		}
+		if(buffer.remaining() < width){
+			fill();
+		}
+		long[] swap = previous;
+		previous = current;
+		current = swap;
+		algorithm.readRecord(buffer, buffer.position(), current, 0);
+		buffer.position(buffer.position() + width);
+		if(recordsRead > 0 && DigestArrays.compare(previous, 0, current, 0, words) > 0){
+			throw new IOException("Digest list "+location+" is not sorted at record "+recordsRead);
+		}
+		recordsRead++;
+		return true;
+	}
+
+	private void fill() throws IOException{
+		buffer.compact();
+		while(buffer.position() < width){
+			if(channel.read(buffer) < 0){
+				throw new IOException("Digest list "+location+" ended unexpectedly at record "+recordsRead);
+			}
+		}
+		buffer.flip();
+	}
+
+	/***
+	 * Gets the current digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.  The returned array is
+	 * owned by this reader and its contents change on each call to {@link #next()}.
+	 * @return The current digest.
+	 */
+	public long[] getDigest(){
+		return current;
+	}
+
+	/***
+	 * Gets the first 8 bytes of the current digest as a big-endian long.
+	 * @return The high half of an MD5 digest.
+	 */
+	public long getHigh(){
+		return current[0];
+	}
+
+	/***
+	 * Gets the second 8 bytes of the current digest as a big-endian long.
+	 * @return The low half of an MD5 digest.
+	 */
+	public long getLow(){
+		return current[1];
+	}
+
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+}
@@ -0,0 +1,371 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/***
+ * Writes a Nuix digest list from digests supplied incrementally in any order, including duplicates.  Digests are
+ * buffered up to a configurable memory budget, at which point the buffer is sorted and spilled to a temporary
+ * run file.  When finished, the runs are merged with duplicates removed into the final digest list file.  This
+ * allows writing digest lists much larger than the available heap.  Writers default to MD5, other algorithms can
+ * be specified with {@link DigestAlgorithm}.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestListWriter
+ *
+ * writer = DigestListWriter.new(DigestHelper::getDigestListLocation("Huge List"))
+ * begin
+ *   File.foreach("hashes.txt"){|line| writer.add(line.strip)}
+ *   writer.finish
+ * ensure
+ *   writer.close
+ * end
+ * }
+ * </pre>
+ * The digest list is only written by {@link #finish()}.  Closing a writer which has not finished, for example because
+ * adding digests failed part way, discards what was added rather than writing an incomplete list.  Likewise once
+ * spilling a run to disk has failed the writer refuses further digests and will not write the list.  The buffer
+ * starts small and grows as digests are added, so the memory budget is only reached by writers adding that many.
+ * @author Jason Wells
+ *
+ */
+public class DigestListWriter implements Closeable {
+	/***
+	 * Default number of bytes of heap used to buffer digests before spilling a sorted run to disk.
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+	// Limits how many run files are opened at once while merging, more runs than this are merged in passes
+	private static final int MAX_MERGE_FAN_IN = 64;
+	private static final int MIN_BUFFER_DIGESTS = 1024;
+
+	private File location;
+	private File tempDirectory;
+	private DigestAlgorithm algorithm;
+	private int words;
+	private long[] buffer;
+	// Length the buffer may grow to before it is spilled
+	private int maxBufferLength;
+	private long[] scratch;
+	private int buffered;
+	private long digestsAdded;
+	private long digestsWritten = -1;
+	// Why the digest list can no longer be written, null unless spilling a run or finishing failed
+	private String failure = null;
+	private List<File> runs = new ArrayList<File>();
+
+	/***
+	 * Creates an MD5 writer using the default memory budget and the system temp directory for run files.
+	 * @param location The location of the digest list file to write.
+	 */
+	public DigestListWriter(File location){
+		this(location, DEFAULT_MEMORY_BUDGET, null);
+	}
+
+	/***
+	 * Creates a writer using the default memory budget and the system temp directory for run files.
+	 * @param location The location of the digest list file to write.
+	 * @param algorithm The algorithm of the digests which will be added.
+	 */
+	public DigestListWriter(File location, DigestAlgorithm algorithm){
+		this(location, algorithm, DEFAULT_MEMORY_BUDGET, null);
+	}
+
+	/***
+	 * Creates an MD5 writer using the system temp directory for run files.
+	 * @param location The location of the digest list file to write.
+	 * @param memoryBudgetBytes Approximate bytes of heap to use buffering digests before spilling to disk.
+	 */
+	public DigestListWriter(File location, long memoryBudgetBytes){
+		this(location, memoryBudgetBytes, null);
+	}
+
+	/***
+	 * Creates an MD5 writer.
+	 * @param location The location of the digest list file to write.
+	 * @param memoryBudgetBytes Approximate bytes of heap to use buffering digests before spilling to disk.
+	 * @param tempDirectory Directory in which to write temporary run files, null to use the system temp directory.
+	 */
+	public DigestListWriter(File location, long memoryBudgetBytes, File tempDirectory){
+		this(location, DigestAlgorithm.MD5, memoryBudgetBytes, tempDirectory);
+	}
+
+	/***
+	 * Creates a writer.
+	 * @param location The location of the digest list file to write.
+	 * @param algorithm The algorithm of the digests which will be added.
+	 * @param memoryBudgetBytes Approximate bytes of heap to use buffering digests before spilling to disk.
+	 * @param tempDirectory Directory in which to write temporary run files, null to use the system temp directory.
+	 */
+	public DigestListWriter(File location, DigestAlgorithm algorithm, long memoryBudgetBytes, File tempDirectory){
+		this.location = location;
+		this.tempDirectory = tempDirectory;
+		this.algorithm = algorithm;
+		words = algorithm.getWordCount();
+		scratch = new long[words];
+		long bytesPerDigest = words * 8L;
+		long bufferDigests = Math.max(MIN_BUFFER_DIGESTS, Math.min(memoryBudgetBytes / bytesPerDigest, Integer.MAX_VALUE / words - 8));
+		maxBufferLength = (int)bufferDigests * words;
+		buffer = new long[MIN_BUFFER_DIGESTS * words];
+	}
+
+	/***
+	 * Gets the algorithm of the digests being written.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Adds an MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @throws IOException If the buffer needed to be spilled to disk and that failed.
+	 */
+	public void add(long high, long low) throws IOException{
+		if(words != 2){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this writer holds "+algorithm.getHeaderName());
+		}
+		int position = reserve();
+		buffer[position] = high;
+		buffer[position + 1] = low;
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @throws IOException If the buffer needed to be spilled to disk and that failed.
+	 */
+	public void add(long[] digest, int offset) throws IOException{
+		// Reserve before reading the buffer field since reserving may replace the buffer
+		int position = reserve();
+		System.arraycopy(digest, offset, buffer, position, words);
+	}
+
+	/***
+	 * Makes room in the buffer for one more digest, growing the buffer or spilling if needed.
+	 * @return The offset in the buffer at which the digest should be stored.
+	 */
+	private int reserve() throws IOException{
+		if(failure != null){
+			throw new IllegalStateException("Digest list cannot be written, "+failure);
+		}
+		if(buffer == null){
+			throw new IllegalStateException("Digest list has already been written");
+		}
+		if(buffered * words == buffer.length){
+			if(buffer.length < maxBufferLength){
+				buffer = Arrays.copyOf(buffer, (int)Math.min(buffer.length * 2L, maxBufferLength));
+			} else {
+				spill();
+			}
+		}
+		int position = buffered * words;
+		buffered++;
+		digestsAdded++;
+		return position;
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Digest as byte array, must match the width of the writer's algorithm.
+	 * @throws IOException If the buffer needed to be spilled to disk and that failed.
+	 */
+	public void add(byte[] digest) throws IOException{
+		algorithm.checkWidth(digest);
+		int position = reserve();
+		algorithm.toWords(digest, buffer, position);
+	}
+
+	/***
+	 * Adds a digest.
+	 * @param digest Digest as hexadecimal string.  Null or empty values are ignored.
+	 * @throws IOException If the buffer needed to be spilled to disk and that failed.
+	 */
+	public void add(String digest) throws IOException{
+		if(digest == null || digest.isEmpty()){ return; }
+		DigestHex.parse(digest, algorithm, scratch, 0);
+		add(scratch, 0);
+	}
+
+	/***
+	 * Adds every digest in the provided set.
+	 * @param digestSet The digests to add.
+	 * @throws IOException If the buffer needed to be spilled to disk and that failed.
+	 */
+	public void addAll(DigestSet digestSet) throws IOException{
+		IOException[] error = new IOException[1];
+		if(digestSet.getAlgorithm() != algorithm){
+			throw new IllegalArgumentException("Cannot add "+digestSet.getAlgorithm().getHeaderName()+" digests to a "+
+					algorithm.getHeaderName()+" digest list");
+		}
+		digestSet.forEach((digests, offset) -> {
+			if(error[0] != null){ return; }
+			try{
+				add(digests, offset);
+			} catch (IOException e){
+				error[0] = e;
+			}
+		});
+		if(error[0] != null){
+			throw error[0];
+		}
+	}
+
+	/***
+	 * Gets the number of digests added so far, including duplicates.
+	 * @return The count of digests added.
+	 */
+	public long getDigestsAdded(){
+		return digestsAdded;
+	}
+
+	/***
+	 * Gets the number of sorted runs which have been spilled to disk so far.
+	 * @return The count of run files.
+	 */
+	public int getRunCount(){
+		return runs.size();
+	}
+
+	/***
+	 * Sorts and de-duplicates the buffered digests, then writes them to a new temporary run file.  If that fails
+	 * the digests buffered are lost, so the writer is failed and its runs are deleted.
+	 */
+	private void spill() throws IOException{
+		boolean succeeded = false;
+		File run = null;
+		try{
+			run = File.createTempFile("DigestRun", ".hash", tempDirectory);
+			writeBuffer(run);
+			runs.add(run);
+			succeeded = true;
+		} finally {
+			if(!succeeded){
+				if(run != null){
+					run.delete();
+				}
+				failure = "writing a temporary run file failed";
+				deleteRuns();
+				buffer = null;
+			}
+		}
+	}
+
+	private long writeBuffer(File destination) throws IOException{
+		DigestArrays.sort(buffer, buffered, words);
+		int distinct = DigestArrays.dedupeSorted(buffer, buffered, words);
+		long written;
+		try(SortedDigestListWriter writer = new SortedDigestListWriter(destination, algorithm)){
+			for (int i = 0; i < distinct; i++) {
+				writer.write(buffer, i * words);
+			}
+			written = writer.getDigestsWritten();
+		}
+		buffered = 0;
+		return written;
+	}
+
+	/***
+	 * Writes the final digest list file.  If nothing had to be spilled to disk the buffer is written directly,
+	 * otherwise the remaining buffer is spilled and all the runs are merged.  Temporary run files are deleted.
+	 * @return The number of distinct digests written.
+	 * @throws IOException If there is an issue writing the digest list or reading the run files.
+	 * @throws IllegalStateException If a previous call or spilling a run failed, since the buffered digests and
+	 * runs are gone.
+	 */
+	public long finish() throws IOException{
+		if(digestsWritten >= 0){
+			return digestsWritten;
+		}
+		if(failure != null){
+			throw new IllegalStateException("Digest list was not written, "+failure);
+		}
+		boolean succeeded = false;
+		try{
+			if(runs.isEmpty()){
+				digestsWritten = writeBuffer(location);
+			} else {
+				if(buffered > 0){
+					spill();
+				}
+				// Release the buffer before merging, the merge only needs a small buffer per run
+				buffer = null;
+				while(runs.size() > MAX_MERGE_FAN_IN){
+					mergePass();
+				}
+				digestsWritten = DigestListOperations.union(runs, location);
+			}
+			succeeded = true;
+			return digestsWritten;
+		} finally {
+			deleteRuns();
+			buffer = null;
+			if(!succeeded && failure == null){
+				failure = "a previous attempt to finish failed";
+			}
+		}
+	}
+
+	/***
+	 * Merges groups of runs into larger runs until few enough remain to merge in a single final pass.
+	 */
+	private void mergePass() throws IOException{
+		List<File> merged = new ArrayList<File>();
+		try{
+			for (int i = 0; i < runs.size(); i += MAX_MERGE_FAN_IN) {
+				List<File> group = runs.subList(i, Math.min(runs.size(), i + MAX_MERGE_FAN_IN));
+				File run = File.createTempFile("DigestRun", ".hash", tempDirectory);
+				merged.add(run);
+				DigestListOperations.union(group, run);
+			}
+		} catch (IOException e){
+			runs.addAll(merged);
+			throw e;
+		}
+		deleteRuns();
+		runs = merged;
+	}
+
+	private void deleteRuns(){
+		for(File run : runs){
+			run.delete();
+		}
+		runs.clear();
+	}
+
+	/***
+	 * Abandons this writer without writing the digest list, deleting any temporary run files.  Subsequent calls to
+	 * {@link #finish()} or {@link #close()} do nothing.
+	 */
+	public void discard(){
+		if(digestsWritten < 0){
+			digestsWritten = 0;
+		}
+		deleteRuns();
+		buffer = null;
+	}
+
+	/***
+	 * Releases the writer.  If {@link #finish()} has not completed successfully the digest list is not written and
+	 * the writer is discarded, see {@link #discard()}.
+	 */
+	@Override
+	public void close() throws IOException{
+		if(digestsWritten < 0){
+			discard();
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+import nuix.Item;
+
+/***
+ * Screens digests against a digest collection with a {@link DigestBloomFilter} in front of it.  When screening every
+ * item in a case most lookups are misses, and the filter answers those without touching the full digest structure.
+ * Only digests the filter reports as possibly present are confirmed against the underlying digests.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.DigestScreen
+ *
+ * screen = DigestScreen.open(DigestHelper::getDigestListLocation("NSRL"), 0.01)
+ * known = items.select{|item| screen.contains(item)}
+ * puts "Hits: #{screen.getHitCount}, Misses: #{screen.getMissCount}, Filtered: #{screen.getFilteredCount}"
+ * screen.close
+ * }
+ * </pre>
+ * Instances are safe to query from multiple threads.
+ * @author Jason Wells
+ *
+ */
+public class DigestScreen implements AutoCloseable {
+	private static Logger logger = Logger.getLogger(DigestScreen.class);
+
+	/***
+	 * Default false positive rate used for filters built by {@link #open(File)}.
+	 */
+	public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+	/***
+	 * The full digest collection positive filter results are confirmed against.
+	 */
+	private interface DigestMembership {
+		public boolean contains(long[] digest, int offset);
+	}
+
+	private DigestAlgorithm algorithm;
+	private int words;
+	private DigestBloomFilter filter;
+	private DigestMembership membership;
+	private MappedDigestList mappedDigestList;
+
+	private LongAdder hitCount = new LongAdder();
+	private LongAdder missCount = new LongAdder();
+	private LongAdder filteredCount = new LongAdder();
+	private LongAdder falsePositiveCount = new LongAdder();
+
+	private DigestScreen(DigestAlgorithm algorithm, DigestBloomFilter filter, DigestMembership membership){
+		this.algorithm = algorithm;
+		this.words = algorithm.getWordCount();
+		this.filter = filter;
+		this.membership = membership;
+	}
+
+	/***
+	 * Creates a screen over the digests currently held by a DigestHelper.  The filter is built from the helper's
+	 * digests at the time of this call, digests added to the helper afterwards will not be screened correctly.
+	 * @param digestHelper The digests to screen against.
+	 * @param falsePositiveRate False positive rate of the filter, for example 0.01 for 1%.
+	 */
+	public DigestScreen(DigestHelper digestHelper, double falsePositiveRate){
+		this(digestHelper.getAlgorithm(), DigestBloomFilter.build(digestHelper.getDigestSet(), falsePositiveRate),
+				digestHelper::currentlyContains);
+	}
+
+	/***
+	 * Creates a screen over a digest list file without loading it into memory, confirming positive filter results
+	 * against a {@link MappedDigestList}.  A filter previously saved next to the digest list is reused if it is still
+	 * current, otherwise a new filter is built and saved next to the digest list for subsequent use.  A saved filter
+	 * which cannot be read is rebuilt, and a filter which cannot be saved, for example because the digest list is in
+	 * a read only location, is logged and used without saving it.
+	 * @param digestList The digest list file to screen against.
+	 * @param falsePositiveRate False positive rate used if a new filter needs to be built, for example 0.01 for 1%.
+	 * @return A screen over the digest list.  Should be closed when no longer needed.
+	 * @throws IOException If there is an issue reading the digest list.
+	 */
+	public static DigestScreen open(File digestList, double falsePositiveRate) throws IOException{
+		File filterLocation = DigestBloomFilter.getFilterLocation(digestList);
+		DigestBloomFilter filter = null;
+		try{
+			filter = DigestBloomFilter.load(filterLocation, digestList);
+		} catch (IOException e){
+			logger.warn("Rebuilding unreadable Bloom filter "+filterLocation+": "+e.getMessage());
+		}
+		if(filter == null){
+			filter = DigestBloomFilter.build(digestList, falsePositiveRate);
+			try{
+				filter.save(filterLocation, digestList);
+			} catch (IOException e){
+				logger.warn("Unable to save Bloom filter "+filterLocation+", it will be rebuilt next time: "+e.getMessage());
+				// Do not leave a partially written filter behind
+				filterLocation.delete();
+			}
+		}
+		MappedDigestList mapped = new MappedDigestList(digestList);
+		DigestScreen screen = new DigestScreen(mapped.getAlgorithm(), filter, mapped::contains);
+		screen.mappedDigestList = mapped;
+		return screen;
+	}
+
+	/***
+	 * Creates a screen over a digest list file using {@link #DEFAULT_FALSE_POSITIVE_RATE}.
+	 * @param digestList The digest list file to screen against.
+	 * @return A screen over the digest list.  Should be closed when no longer needed.
+	 * @throws IOException If there is an issue reading the digest list.
+	 */
+	public static DigestScreen open(File digestList) throws IOException{
+		return open(digestList, DEFAULT_FALSE_POSITIVE_RATE);
+	}
+
+	/***
+	 * Creates a screen over a named digest list file using {@link #DEFAULT_FALSE_POSITIVE_RATE}.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param name The name of the digest list.
+	 * @return A screen over the digest list.  Should be closed when no longer needed.
+	 * @throws IOException If there is an issue reading the digest list.
+	 */
+	public static DigestScreen openByName(String name) throws IOException{
+		return open(DigestHelper.getDigestListLocation(name));
+	}
+
+	/***
+	 * Gets the algorithm of the screened digests.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Whether the screened digests contain the specified MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long high, long low){
+		if(algorithm != DigestAlgorithm.MD5){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this screen holds "+algorithm.getHeaderName());
+		}
+		return contains(new long[]{high, low}, 0);
+	}
+
+	/***
+	 * Whether the screened digests contain the specified digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long[] digest, int offset){
+		if(!filter.mightContain(digest, offset, words)){
+			filteredCount.increment();
+			missCount.increment();
+			return false;
+		}
+		if(membership.contains(digest, offset)){
+			hitCount.increment();
+			return true;
+		} else {
+			falsePositiveCount.increment();
+			missCount.increment();
+			return false;
+		}
+	}
+
+	/***
+	 * Whether the screened digests contain the specified digest.
+	 * @param digest Digest as byte array, must match the width of the screened algorithm.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(byte[] digest){
+		return contains(algorithm.toWords(digest), 0);
+	}
+
+	/***
+	 * Whether the screened digests contain the specified digest.
+	 * @param digest Digest as hexadecimal string.  Null values and strings which are not the length of a digest of the
+	 * screened algorithm, such as an empty string or a digest of another algorithm, are counted as misses.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(String digest){
+		if(digest == null || digest.length() != algorithm.getWidth() * 2){
+			missCount.increment();
+			return false;
+		}
+		long[] words = new long[this.words];
+		DigestHex.parse(digest, algorithm, words, 0);
+		return contains(words, 0);
+	}
+
+	/***
+	 * Whether the screened digests contain the digest of the provided item.
+	 * @param item The item which will have its digest of the screened algorithm checked for.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(Item item){
+		return contains(algorithm.getItemDigest(item));
+	}
+
+	/***
+	 * Gets the number of lookups which found the digest.
+	 * @return The hit count.
+	 */
+	public long getHitCount(){
+		return hitCount.sum();
+	}
+
+	/***
+	 * Gets the number of lookups which did not find the digest, including those answered by the filter alone.
+	 * @return The miss count.
+	 */
+	public long getMissCount(){
+		return missCount.sum();
+	}
+
+	/***
+	 * Gets the number of misses which were answered by the filter without consulting the full digest structure.
+	 * @return The count of lookups rejected by the filter.
+	 */
+	public long getFilteredCount(){
+		return filteredCount.sum();
+	}
+
+	/***
+	 * Gets the number of lookups the filter passed through which turned out to be misses.
+	 * @return The false positive count.
+	 */
+	public long getFalsePositiveCount(){
+		return falsePositiveCount.sum();
+	}
+
+	/***
+	 * Resets the hit and miss counters to 0.
+	 */
+	public void resetCounters(){
+		hitCount.reset();
+		missCount.reset();
+		filteredCount.reset();
+		falsePositiveCount.reset();
+	}
+
+	/***
+	 * Gets the filter used by this screen.
+	 * @return The Bloom filter.
+	 */
+	public DigestBloomFilter getFilter(){
+		return filter;
+	}
+
+	/***
+	 * Releases the mapped digest list if this screen was opened over a digest list file.
+	 */
+	@Override
+	public void close(){
+		if(mappedDigestList != null){
+			mappedDigestList.close();
+		}
+	}
+}
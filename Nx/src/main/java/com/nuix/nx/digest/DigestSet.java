@@ -0,0 +1,414 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.util.Arrays;
+
+/***
+ * A compact set of digests.  Each digest is stored as {@link DigestAlgorithm#getWordCount()} primitive longs (2 for
+ * MD5, 3 for SHA-1, 4 for SHA-256) in a single open addressing table using linear probing.  Compared to a
+ * HashSet&lt;byte[]&gt; this avoids an array object and entry object per digest and, more importantly, compares
+ * digests by value rather than by array identity.
+ * @author Jason Wells
+ *
+ */
+public class DigestSet {
+	private static final double LOAD_FACTOR = 0.75;
+	private static final int MIN_CAPACITY = 16;
+	// Keeps the backing array under the maximum Java array length for the widest supported digest
+	private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private DigestAlgorithm algorithm;
+	private int words;
+	private long[] zeroDigest;
+
+	// Slot i occupies table[i*words] through table[i*words+words-1].  A slot of all 0 longs is empty,
+	// the all zero digest itself is tracked separately by containsZero.
+	private long[] table;
+	private int mask;
+	private int size;
+	private int resizeThreshold;
+	private boolean containsZero;
+
+	/***
+	 * Creates a new empty MD5 instance with a default initial capacity.
+	 */
+	public DigestSet(){
+		this(DigestAlgorithm.MD5, 1024);
+	}
+
+	/***
+	 * Creates a new empty MD5 instance sized to hold the specified number of digests without needing to grow.
+	 * @param expectedSize The number of digests this instance is expected to hold.
+	 */
+	public DigestSet(int expectedSize){
+		this(DigestAlgorithm.MD5, expectedSize);
+	}
+
+	/***
+	 * Creates a new empty instance with a default initial capacity.
+	 * @param algorithm The algorithm of the digests this set will hold.
+	 */
+	public DigestSet(DigestAlgorithm algorithm){
+		this(algorithm, 1024);
+	}
+
+	/***
+	 * Creates a new empty instance sized to hold the specified number of digests without needing to grow.
+	 * @param algorithm The algorithm of the digests this set will hold.
+	 * @param expectedSize The number of digests this instance is expected to hold.
+	 */
+	public DigestSet(DigestAlgorithm algorithm, int expectedSize){
+		this.algorithm = algorithm;
+		this.words = algorithm.getWordCount();
+		this.zeroDigest = new long[words];
+		allocate(capacityFor(expectedSize));
+	}
+
+	private int maxCapacity(){
+		return Integer.highestOneBit(MAX_ARRAY_LENGTH / words);
+	}
+
+	private int capacityFor(long expectedSize){
+		long needed = (long)Math.ceil(expectedSize / LOAD_FACTOR);
+		if(needed > maxCapacity()){
+			throw new IllegalStateException("DigestSet cannot hold more than "+(long)(maxCapacity() * LOAD_FACTOR)+" "+
+					algorithm.getHeaderName()+" digests");
+		}
+		int capacity = MIN_CAPACITY;
+		while(capacity < needed){
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private void allocate(int capacity){
+		table = new long[capacity * words];
+		mask = capacity - 1;
+		resizeThreshold = (int)(capacity * LOAD_FACTOR);
+	}
+
+	/***
+	 * Mixes a digest into a table index.  Digests are already well distributed, but we still mix so that
+	 * structured input (for example hand made test digests) does not cluster.
+	 */
+	private static int slotFor(long high, long low, int mask){
+		long h = high ^ Long.rotateLeft(low, 32);
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		return (int)h & mask;
+	}
+
+	private int slotFor(long[] digest, int offset){
+		long low = digest[offset + 1];
+		for (int w = 2; w < words; w++) {
+			low ^= Long.rotateLeft(digest[offset + w], w * 16);
+		}
+		return slotFor(digest[offset], low, mask);
+	}
+
+	/***
+	 * Reads 8 bytes from the provided array as a big-endian long.
+	 * @param bytes The source bytes.
+	 * @param offset Offset of the first byte to read.
+	 * @return The long value.
+	 */
+	static long readLong(byte[] bytes, int offset){
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result = (result << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return result;
+	}
+
+	/***
+	 * Writes a long into the provided array as 8 big-endian bytes.
+	 * @param value The value to write.
+	 * @param bytes The destination bytes.
+	 * @param offset Offset of the first byte to write.
+	 */
+	static void writeLong(long value, byte[] bytes, int offset){
+		for (int i = 7; i >= 0; i--) {
+			bytes[offset + i] = (byte)value;
+			value >>>= 8;
+		}
+	}
+
+	private void checkMd5(){
+		if(algorithm != DigestAlgorithm.MD5){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this set holds "+algorithm.getHeaderName());
+		}
+	}
+
+	/***
+	 * Gets the algorithm of the digests held by this set.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Adds an MD5 digest to this set.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return True if the digest was not already present.
+	 */
+	public boolean add(long high, long low){
+		checkMd5();
+		if(high == 0 && low == 0){
+			return addZero();
+		}
+
+		int slot = slotFor(high, low, mask);
+		while(true){
+			int i = slot << 1;
+			long h = table[i];
+			long l = table[i + 1];
+			if(h == 0 && l == 0){
+				table[i] = high;
+				table[i + 1] = low;
+				return added();
+			} else if(h == high && l == low){
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Adds a digest to this set.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return True if the digest was not already present.
+	 */
+	public boolean add(long[] digest, int offset){
+		if(DigestArrays.isZero(digest, offset, words)){
+			return addZero();
+		}
+
+		int slot = slotFor(digest, offset);
+		while(true){
+			int i = slot * words;
+			if(DigestArrays.isZero(table, i, words)){
+				System.arraycopy(digest, offset, table, i, words);
+				return added();
+			} else if(DigestArrays.equals(table, i, digest, offset, words)){
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Adds a digest to this set.
+	 * @param digest The digest bytes, {@link DigestAlgorithm#getWidth()} bytes long.  The array is not retained.
+	 * @return True if the digest was not already present.
+	 */
+	public boolean add(byte[] digest){
+		algorithm.checkWidth(digest);
+		if(algorithm == DigestAlgorithm.MD5){
+			return add(readLong(digest, 0), readLong(digest, 8));
+		}
+		return add(algorithm.toWords(digest), 0);
+	}
+
+	private boolean addZero(){
+		if(containsZero){ return false; }
+		containsZero = true;
+		size++;
+		return true;
+	}
+
+	private boolean added(){
+		size++;
+		if(size > resizeThreshold){
+			grow();
+		}
+		return true;
+	}
+
+	/***
+	 * Adds every digest in another set to this set.
+	 * @param other The set whose digests should be added.  Must hold digests of the same algorithm.
+	 */
+	public void addAll(DigestSet other){
+		if(other.algorithm != algorithm){
+			throw new IllegalArgumentException("Cannot add "+other.algorithm.getHeaderName()+" digests to a set of "+algorithm.getHeaderName()+" digests");
+		}
+		ensureCapacity((long)size + other.size);
+		other.forEach(this::add);
+	}
+
+	/***
+	 * Whether this set contains the specified MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long high, long low){
+		checkMd5();
+		if(high == 0 && low == 0){
+			return containsZero;
+		}
+
+		int slot = slotFor(high, low, mask);
+		while(true){
+			int i = slot << 1;
+			long h = table[i];
+			long l = table[i + 1];
+			if(h == high && l == low){
+				return true;
+			} else if(h == 0 && l == 0){
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Whether this set contains the specified digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long[] digest, int offset){
+		if(DigestArrays.isZero(digest, offset, words)){
+			return containsZero;
+		}
+
+		int slot = slotFor(digest, offset);
+		while(true){
+			int i = slot * words;
+			if(DigestArrays.equals(table, i, digest, offset, words)){
+				return true;
+			} else if(DigestArrays.isZero(table, i, words)){
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/***
+	 * Whether this set contains the specified digest.
+	 * @param digest The digest bytes, {@link DigestAlgorithm#getWidth()} bytes long.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(byte[] digest){
+		algorithm.checkWidth(digest);
+		if(algorithm == DigestAlgorithm.MD5){
+			return contains(readLong(digest, 0), readLong(digest, 8));
+		}
+		return contains(algorithm.toWords(digest), 0);
+	}
+
+	/***
+	 * Grows the backing table if needed so that the specified number of digests can be held without further growth.
+	 * @param expectedSize The number of digests this set is expected to hold.
+	 */
+	public void ensureCapacity(long expectedSize){
+		int capacity = capacityFor(expectedSize);
+		if(capacity > mask + 1){
+			rehash(capacity);
+		}
+	}
+
+	private void grow(){
+		if(mask + 1 >= maxCapacity()){
+			throw new IllegalStateException("DigestSet cannot hold more than "+(long)(maxCapacity() * LOAD_FACTOR)+" "+
+					algorithm.getHeaderName()+" digests");
+		}
+		rehash((mask + 1) << 1);
+	}
+
+	private void rehash(int capacity){
+		long[] oldTable = table;
+		allocate(capacity);
+		for (int i = 0; i < oldTable.length; i += words) {
+			if(!DigestArrays.isZero(oldTable, i, words)){
+				int slot = slotFor(oldTable, i);
+				while(!DigestArrays.isZero(table, slot * words, words)){
+					slot = (slot + 1) & mask;
+				}
+				System.arraycopy(oldTable, i, table, slot * words, words);
+			}
+		}
+	}
+
+	/***
+	 * Gets the number of distinct digests in this set.
+	 * @return The number of distinct digests.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/***
+	 * Whether this set is empty.
+	 * @return True if this set contains no digests.
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	/***
+	 * Removes all digests from this set.  The backing table keeps its current capacity.
+	 */
+	public void clear(){
+		Arrays.fill(table, 0L);
+		size = 0;
+		containsZero = false;
+	}
+
+	/***
+	 * Gets the approximate number of bytes of heap used by the backing table of this set.
+	 * @return Approximate heap footprint in bytes.
+	 */
+	public long getMemoryFootprint(){
+		return (long)table.length * Long.BYTES;
+	}
+
+	/***
+	 * Callback used by {@link DigestSet#forEach(DigestConsumer)} to visit each digest.  The digest occupies
+	 * {@link DigestAlgorithm#getWordCount()} longs of the provided array starting at offset.  The array belongs
+	 * to the set and must not be modified or retained.
+	 */
+	public interface DigestConsumer {
+		public void accept(long[] digests, int offset);
+	}
+
+	/***
+	 * Visits each digest in this set in no particular order.
+	 * @param consumer Callback invoked once for each digest.
+	 */
+	public void forEach(DigestConsumer consumer){
+		if(containsZero){
+			consumer.accept(zeroDigest, 0);
+		}
+		for (int i = 0; i < table.length; i += words) {
+			if(!DigestArrays.isZero(table, i, words)){
+				consumer.accept(table, i);
+			}
+		}
+	}
+
+	/***
+	 * Gets a copy of the digests in this set sorted in unsigned lexicographic order, which is the order digests
+	 * are stored in a Nuix digest list file.
+	 * @return Array of length {@link #size()} * {@link DigestAlgorithm#getWordCount()} containing sorted digests.
+	 */
+	public long[] toSortedArray(){
+		long[] result = new long[size * words];
+		int[] position = new int[1];
+		forEach((digests, offset) -> {
+			System.arraycopy(digests, offset, result, position[0], words);
+			position[0] += words;
+		});
+		DigestArrays.sort(result, size, words);
+		return result;
+	}
+}
@@ -0,0 +1,296 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import nuix.Item;
+
+/***
+ * A read-only view over an existing Nuix digest list file which answers membership queries by searching the
+ * memory mapped file directly, without loading any digests into the heap.  Since digest list files are stored
+ * sorted this allows for quickly testing a modest number of digests against a very large list.
+ * <pre>
+ * {@code
+ * # Ruby example
+ * java_import com.nuix.nx.digest.MappedDigestList
+ *
+ * list = MappedDigestList.new(DigestHelper::getDigestListLocation("NSRL"))
+ * begin
+ *   hits = items.select{|item| list.contains(item)}
+ * ensure
+ *   list.close
+ * end
+ * }
+ * </pre>
+ * Instances are safe to query from multiple threads.
+ * @author Jason Wells
+ *
+ */
+public class MappedDigestList implements Closeable {
+	// Segments are a power of 2 number of records so locating a record is a shift and mask.  Sized so that
+	// a segment of the widest supported record (SHA-256) stays within the 2GB limit of a single mapping.
+	private static final int SEGMENT_RECORD_BITS = 25;
+	private static final long SEGMENT_RECORD_MASK = (1L << SEGMENT_RECORD_BITS) - 1;
+	// Once the interpolated range is this small we switch over to plain binary search
+	private static final long BINARY_SEARCH_THRESHOLD = 64;
+	private static final int MAX_INTERPOLATION_STEPS = 8;
+
+	private File location;
+	private DigestListHeader header;
+	private DigestAlgorithm algorithm;
+	private int width;
+	private int words;
+	private long recordCount;
+	private MappedByteBuffer[] segments;
+
+	/***
+	 * Opens a digest list file for querying.
+	 * @param location The digest list file to open.
+	 * @throws IOException If the file cannot be read or does not have a valid digest list header.
+	 */
+	public MappedDigestList(File location) throws IOException{
+		this.location = location;
+		try(FileChannel channel = FileChannel.open(location.toPath(), StandardOpenOption.READ)){
+			header = DigestListHeader.read(location, channel);
+			algorithm = header.getAlgorithm();
+			width = algorithm.getWidth();
+			words = algorithm.getWordCount();
+			long fileSize = channel.size();
+			recordCount = header.getRecordCount(fileSize);
+
+			long recordsPerSegment = 1L << SEGMENT_RECORD_BITS;
+			int segmentCount = (int)((recordCount + recordsPerSegment - 1) / recordsPerSegment);
+			segments = new MappedByteBuffer[segmentCount];
+			long segmentBytes = recordsPerSegment * header.getRecordWidth();
+			long position = header.getLength();
+			for (int s = 0; s < segmentCount; s++) {
+				long length = Math.min(segmentBytes, fileSize - position);
+				segments[s] = channel.map(MapMode.READ_ONLY, position, length);
+				segments[s].order(ByteOrder.BIG_ENDIAN);
+				position += length;
+			}
+		}
+	}
+
+	/***
+	 * Opens the digest list with the given name for querying.
+	 * Assumes digest lists are stored in "%appdata%\Nuix\Digest Lists"
+	 * @param name The name of the digest list.
+	 * @return A view over the named digest list.
+	 * @throws IOException If the file cannot be read or does not have a valid digest list header.
+	 */
+	public static MappedDigestList openByName(String name) throws IOException{
+		return new MappedDigestList(DigestHelper.getDigestListLocation(name));
+	}
+
+	/***
+	 * Gets the file this view was opened against.
+	 * @return The digest list file.
+	 */
+	public File getLocation(){
+		return location;
+	}
+
+	/***
+	 * Gets the header of the underlying digest list file.
+	 * @return The digest list header.
+	 */
+	public DigestListHeader getHeader(){
+		return header;
+	}
+
+	/***
+	 * Gets the number of digests in the underlying digest list file.
+	 * @return The digest count.
+	 */
+	public long getDigestCount(){
+		return recordCount;
+	}
+
+	/***
+	 * Gets the algorithm of the digests in the underlying digest list file.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Gets one of the longs making up the digest at the given record index.  When the digest width is not a
+	 * multiple of 8 the final long is zero padded, matching {@link DigestAlgorithm#toWords(byte[])}.
+	 * @param index The record index.
+	 * @param word Which long of the digest to get, 0 being the first 8 bytes.
+	 * @return The requested long of the digest.
+	 */
+	long getWord(long index, int word){
+		MappedByteBuffer segment = segments[(int)(index >>> SEGMENT_RECORD_BITS)];
+		int position = (int)(index & SEGMENT_RECORD_MASK) * width + word * 8;
+		if(word * 8 + 8 <= width){
+			return segment.getLong(position);
+		} else {
+			// Only SHA-1 has a partial final long, being its last 4 bytes
+			return ((long)segment.getInt(position)) << 32;
+		}
+	}
+
+	/***
+	 * Copies the digest at the given record index into the provided array.
+	 * @param index The record index.
+	 * @param digest Destination array.
+	 * @param offset Offset in the destination array of the first long.
+	 */
+	void getDigest(long index, long[] digest, int offset){
+		for (int w = 0; w < words; w++) {
+			digest[offset + w] = getWord(index, w);
+		}
+	}
+
+	private int compareAt(long index, long[] key, int offset){
+		for (int w = 0; w < words; w++) {
+			int result = Long.compareUnsigned(getWord(index, w), key[offset + w]);
+			if(result != 0){ return result; }
+		}
+		return 0;
+	}
+
+	/***
+	 * Gets the record index of an MD5 digest in the underlying file.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return The index of the digest if present, otherwise <code>-(insertion point) - 1</code>.
+	 */
+	public long indexOf(long high, long low){
+		if(algorithm != DigestAlgorithm.MD5){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this list holds "+algorithm.getHeaderName());
+		}
+		return indexOf(new long[]{high, low}, 0);
+	}
+
+	/***
+	 * Gets the record index of a digest in the underlying file.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return The index of the digest if present, otherwise <code>-(insertion point) - 1</code>.
+	 */
+	public long indexOf(long[] digest, int offset){
+		long lo = 0;
+		long hi = recordCount - 1;
+
+		// Digests are close to uniformly distributed so interpolating on the first 8 bytes narrows the range
+		// in a handful of steps.  We bound the steps in case the list is skewed and finish with binary search.
+		int steps = 0;
+		while(hi - lo > BINARY_SEARCH_THRESHOLD && steps < MAX_INTERPOLATION_STEPS){
+			steps++;
+			double lowKey = unsignedToDouble(getWord(lo, 0));
+			double highKey = unsignedToDouble(getWord(hi, 0));
+			double key = unsignedToDouble(digest[offset]);
+			if(key < lowKey || key > highKey){
+				break;
+			}
+			long probe = lo;
+			if(highKey > lowKey){
+				probe = lo + (long)((key - lowKey) / (highKey - lowKey) * (hi - lo));
+			}
+			probe = Math.max(lo, Math.min(hi, probe));
+			int comparison = compareAt(probe, digest, offset);
+			if(comparison == 0){
+				return probe;
+			} else if(comparison < 0){
+				lo = probe + 1;
+			} else {
+				hi = probe - 1;
+			}
+		}
+
+		while(lo <= hi){
+			long middle = (lo + hi) >>> 1;
+			int comparison = compareAt(middle, digest, offset);
+			if(comparison == 0){
+				return middle;
+			} else if(comparison < 0){
+				lo = middle + 1;
+			} else {
+				hi = middle - 1;
+			}
+		}
+		return -(lo + 1);
+	}
+
+	private static double unsignedToDouble(long value){
+		double result = (double)(value >>> 1) * 2.0;
+		return result + (value & 1);
+	}
+
+	/***
+	 * Whether the underlying digest list contains the specified MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long high, long low){
+		return indexOf(high, low) >= 0;
+	}
+
+	/***
+	 * Whether the underlying digest list contains the specified digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(long[] digest, int offset){
+		return indexOf(digest, offset) >= 0;
+	}
+
+	/***
+	 * Whether the underlying digest list contains the specified digest.
+	 * @param digest The digest as a byte array, must match the width of the list's algorithm.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(byte[] digest){
+		return contains(algorithm.toWords(digest), 0);
+	}
+
+	/***
+	 * Whether the underlying digest list contains the specified digest.
+	 * @param digest The digest as a hexadecimal string.
+	 * @return True if the digest is present, false if it is not or the string is not the length of a digest of the
+	 * list's algorithm.
+	 */
+	public boolean contains(String digest){
+		if(digest == null || digest.length() != algorithm.getWidth() * 2){ return false; }
+		long[] words = new long[this.words];
+		DigestHex.parse(digest, algorithm, words, 0);
+		return contains(words, 0);
+	}
+
+	/***
+	 * Whether the underlying digest list contains the digest of the provided item, using the item digest
+	 * matching the list's algorithm.
+	 * @param item The item which will have its digest checked for.
+	 * @return True if the digest is present.
+	 */
+	public boolean contains(Item item){
+		return contains(algorithm.getItemDigest(item));
+	}
+
+	/***
+	 * Releases this view's references to the mapped file.  The mapping itself is released by the JVM once
+	 * it is no longer reachable.
+	 */
+	@Override
+	public void close(){
+		segments = new MappedByteBuffer[0];
+		recordCount = 0;
+	}
+}
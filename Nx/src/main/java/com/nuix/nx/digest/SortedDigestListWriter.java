@@ -0,0 +1,131 @@
+/******************************************
+Copyright 2018 Nuix
+http://www.apache.org/licenses/LICENSE-2.0
+*******************************************/
+
+package com.nuix.nx.digest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/***
+ * Writes a Nuix digest list file from digests which are supplied already in sorted order.  Consecutive duplicate
+ * digests are written once, a digest which sorts before the previous one is rejected since the resulting file
+ * would not be a valid digest list.
+ * @author Jason Wells
+ *
+ */
+public class SortedDigestListWriter implements Closeable {
+	private static final int BUFFER_BYTES = 1024 * 1024;
+
+	private DataOutputStream outputStream;
+	private DigestAlgorithm algorithm;
+	private int words;
+	private long digestsWritten;
+	private long[] last;
+	private byte[] record;
+
+	/***
+	 * Creates a new MD5 digest list file at the specified location, replacing any existing file.
+	 * @param location The location of the digest list file to write.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public SortedDigestListWriter(File location) throws IOException{
+		this(location, DigestAlgorithm.MD5);
+	}
+
+	/***
+	 * Creates a new digest list file at the specified location, replacing any existing file.
+	 * @param location The location of the digest list file to write.
+	 * @param algorithm The algorithm of the digests which will be written.
+	 * @throws IOException If the file cannot be created.
+	 */
+	public SortedDigestListWriter(File location, DigestAlgorithm algorithm) throws IOException{
+		this.algorithm = algorithm;
+		words = algorithm.getWordCount();
+		last = new long[words];
+		record = new byte[algorithm.getWidth()];
+		outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(location), BUFFER_BYTES));
+		try{
+			DigestListHeader.forAlgorithm(algorithm).write(outputStream);
+		} catch (IOException e){
+			outputStream.close();
+			throw e;
+		}
+	}
+
+	/***
+	 * Gets the algorithm of the digests being written.
+	 * @return The digest algorithm.
+	 */
+	public DigestAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+
+	/***
+	 * Writes the next MD5 digest.
+	 * @param high The first 8 bytes of the digest as a big-endian long.
+	 * @param low The last 8 bytes of the digest as a big-endian long.
+	 * @return True if the digest was written, false if it was a duplicate of the previous digest.
+	 * @throws IOException If there is an issue writing to the file.
+	 */
+	public boolean write(long high, long low) throws IOException{
+		if(words != 2){
+			throw new IllegalStateException("High/low digest methods are only supported for MD5, this writer holds "+algorithm.getHeaderName());
+		}
+		if(digestsWritten > 0){
+			int comparison = DigestArrays.compare(last[0], last[1], high, low);
+			if(comparison == 0){
+				return false;
+			} else if(comparison > 0){
+				throw new IllegalStateException("Digests must be written in sorted order");
+			}
+		}
+		outputStream.writeLong(high);
+		outputStream.writeLong(low);
+		last[0] = high;
+		last[1] = low;
+		digestsWritten++;
+		return true;
+	}
+
+	/***
+	 * Writes the next digest.
+	 * @param digest Array holding the digest as {@link DigestAlgorithm#getWordCount()} big-endian longs.
+	 * @param offset Offset of the digest's first long in the array.
+	 * @return True if the digest was written, false if it was a duplicate of the previous digest.
+	 * @throws IOException If there is an issue writing to the file.
+	 */
+	public boolean write(long[] digest, int offset) throws IOException{
+		if(digestsWritten > 0){
+			int comparison = DigestArrays.compare(last, 0, digest, offset, words);
+			if(comparison == 0){
+				return false;
+			} else if(comparison > 0){
+				throw new IllegalStateException("Digests must be written in sorted order");
+			}
+		}
+		algorithm.writeRecord(digest, offset, record);
+		outputStream.write(record);
+		System.arraycopy(digest, offset, last, 0, words);
+		digestsWritten++;
+		return true;
+	}
+
+	/***
+	 * Gets the number of distinct digests written so far.
+	 * @return The count of digests written.
+	 */
+	public long getDigestsWritten(){
+		return digestsWritten;
+	}
+
+	@Override
+	public void close() throws IOException{
+		outputStream.close();
+	}
+}
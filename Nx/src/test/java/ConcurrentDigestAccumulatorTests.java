@@ -0,0 +1,84 @@
+import com.nuix.nx.digest.ConcurrentDigestAccumulator;
+import com.nuix.nx.digest.DigestAlgorithm;
+import com.nuix.nx.digest.DigestHelper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConcurrentDigestAccumulatorTests {
+    @Test
+    public void ConcurrentAddsHoldEachDigestOnce() throws Exception {
+        int threadCount = 8;
+        int distinct = 20_000;
+        long[] digests = new long[distinct * 2];
+        SplittableRandom random = new SplittableRandom(9);
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = random.nextLong();
+        }
+
+        // Fewer shards than threads, so threads contend for shards while adding the same digests
+        ConcurrentDigestAccumulator accumulator = new ConcurrentDigestAccumulator(DigestAlgorithm.MD5, 4);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int offset = t * 997;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    // Every thread adds every digest, each starting from a different point
+                    for (int i = 0; i < distinct; i++) {
+                        int d = (i + offset) % distinct;
+                        if (i % 2 == 0) {
+                            accumulator.add(digests[d * 2], digests[d * 2 + 1]);
+                        } else {
+                            accumulator.add(digests, d * 2);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        assertEquals((long) threadCount * distinct, accumulator.getDigestsAdded());
+        // Only adds up to the distinct count when no digest was stored in more than one shard
+        assertEquals(distinct, accumulator.getDistinctDigestCount());
+        DigestHelper snapshot = accumulator.snapshot();
+        assertEquals(distinct, snapshot.getDistinctDigestCount());
+        for (int d = 0; d < distinct; d++) {
+            assertTrue(snapshot.currentlyContains(digests[d * 2], digests[d * 2 + 1]));
+        }
+        assertFalse(snapshot.currentlyContains(digests[0], digests[3]));
+    }
+
+    @Test
+    public void WideDigestsAreAccumulated() {
+        ConcurrentDigestAccumulator accumulator = new ConcurrentDigestAccumulator(DigestAlgorithm.SHA256, 16);
+        String digest = "00000000000000000000000000000000000000000000000000000000000000AB";
+        accumulator.add(digest);
+        accumulator.add(digest.toLowerCase());
+        accumulator.add((String) null);
+        accumulator.add(new long[]{0, 0, 0, 0xAC}, 0);
+
+        assertEquals(3, accumulator.getDigestsAdded());
+        assertEquals(2, accumulator.getDistinctDigestCount());
+        assertTrue(accumulator.snapshot().currentlyContains(digest));
+    }
+}
@@ -0,0 +1,131 @@
+import com.nuix.nx.digest.DigestAlgorithm;
+import com.nuix.nx.digest.DigestCountMap;
+import com.nuix.nx.digest.DigestCountMap.DigestCount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestCountMapTests {
+    private static final String ZERO = "00000000000000000000000000000000";
+
+    @TempDir
+    File tempDirectory;
+
+    @Test
+    public void CountsMatchHashMap() {
+        SplittableRandom random = new SplittableRandom(17);
+        Map<String, Integer> expected = new HashMap<>();
+        // Starts small so the table doubles many times along the way
+        DigestCountMap counts = new DigestCountMap(DigestAlgorithm.MD5, 1);
+        for (int i = 0; i < 200_000; i++) {
+            // Skewed so some digests are shared by many items
+            String digest = String.format("%032X", (long) Math.pow(random.nextInt(1, 400), 2));
+            if (i % 1000 == 0) {
+                digest = ZERO;
+            }
+            int count = expected.merge(digest, 1, Integer::sum);
+            assertEquals(count, counts.add(digest));
+        }
+        assertEquals(expected.size(), counts.size());
+        assertEquals(200_000, counts.getTotalCount());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals((int) entry.getValue(), counts.getCount(entry.getKey().toLowerCase()));
+        }
+        assertEquals(0, counts.getCount("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        assertEquals(0, counts.add((String) null));
+    }
+
+    @Test
+    public void ExpectedSizeIsHeldWithoutGrowing() {
+        // Each slot holds two longs and an int.  850 digests fit in 1024 slots at the map's load factor, 870 fill them
+        DigestCountMap counts = new DigestCountMap(DigestAlgorithm.MD5, 850);
+        long footprint = counts.getMemoryFootprint();
+        assertEquals(1024 * 20, footprint);
+        for (int i = 1; i <= 870; i++) {
+            counts.add(i, i);
+        }
+        assertEquals(footprint, counts.getMemoryFootprint());
+        counts.add(871, 871);
+        assertEquals(footprint * 2, counts.getMemoryFootprint());
+    }
+
+    @Test
+    public void CombinedMapsAddCounts() {
+        DigestCountMap first = new DigestCountMap();
+        DigestCountMap second = new DigestCountMap();
+        first.add(1, 1);
+        first.add(ZERO);
+        second.add(1, 1);
+        second.add(new long[]{2, 2}, 0, 5);
+        second.add(ZERO);
+
+        first.addAll(second);
+        assertEquals(3, first.size());
+        assertEquals(9, first.getTotalCount());
+        assertEquals(2, first.getCount(new long[]{1, 1}, 0));
+        assertEquals(5, first.getCount(new long[]{2, 2}, 0));
+        assertEquals(2, first.getCount(ZERO));
+
+        assertThrows(IllegalArgumentException.class, () -> first.addAll(new DigestCountMap(DigestAlgorithm.SHA1)));
+        assertThrows(IllegalArgumentException.class, () -> first.add(new long[]{3, 3}, 0, 0));
+        // Counts saturate rather than overflowing
+        first.add(new long[]{2, 2}, 0, Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, first.getCount(new long[]{2, 2}, 0));
+    }
+
+    @Test
+    public void HeavyHittersAreMostFrequentFirst() {
+        DigestCountMap counts = new DigestCountMap();
+        for (int digest = 1; digest <= 100; digest++) {
+            counts.add(new long[]{digest, 0}, 0, digest);
+        }
+        counts.add(new long[]{0, 0}, 0, 95);
+
+        List<DigestCount> hitters = counts.getHeavyHitters(7);
+        assertEquals(7, hitters.size());
+        int[] expectedCounts = new int[]{100, 99, 98, 97, 96, 95, 95};
+        for (int i = 0; i < hitters.size(); i++) {
+            assertEquals(expectedCounts[i], hitters.get(i).getCount());
+        }
+        assertEquals("00000000000000640000000000000000", hitters.get(0).getDigest());
+        // The zero digest is a candidate like any other
+        assertTrue(hitters.stream().anyMatch(hitter -> hitter.getDigest().equals(ZERO)));
+
+        assertEquals(101, counts.getHeavyHitters(1000).size());
+        assertTrue(counts.getHeavyHitters(0).isEmpty());
+        assertTrue(new DigestCountMap().getHeavyHitters(10).isEmpty());
+    }
+
+    @Test
+    public void HistogramIsExported() throws Exception {
+        DigestCountMap counts = new DigestCountMap();
+        counts.add(1, 1);
+        counts.add(2, 2);
+        counts.add(3, 3);
+        counts.add(3, 3);
+        counts.add(ZERO);
+        counts.add(ZERO);
+        counts.add(new long[]{4, 4}, 0, 5);
+
+        SortedMap<Integer, Long> histogram = counts.getHistogram();
+        assertEquals(Map.of(1, 2L, 2, 2L, 5, 1L), histogram);
+        assertEquals(1, (int) histogram.firstKey());
+
+        File location = new File(tempDirectory, "histogram.csv");
+        counts.writeHistogramCsv(location);
+        List<String> lines = Files.readAllLines(location.toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of("Occurrences,Digests,Items", "1,2,2", "2,2,4", "5,1,5"), lines);
+    }
+}
@@ -0,0 +1,140 @@
+import com.nuix.nx.digest.DigestGuidIndex;
+import com.nuix.nx.digest.DigestGuidIndexBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestGuidIndexTests {
+    private static final String LOWEST = "00000000000000000000000000000000";
+    private static final String SHARED = "40000000000000000000000000000000";
+    private static final String HIGHEST = "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+
+    @TempDir
+    File tempDirectory;
+
+    private static String digest(int i) {
+        return String.format("%08X000000000000000000000001", 0x10000000 + i * 0x100);
+    }
+
+    private static String guid(SplittableRandom random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    @Test
+    public void LookupAcrossBlocks() throws Exception {
+        SplittableRandom random = new SplittableRandom(3);
+        File location = new File(tempDirectory, "blocks.idx");
+        List<String> sharedGuids = new ArrayList<>();
+        List<String> singleGuids = new ArrayList<>();
+
+        try (DigestGuidIndexBuilder builder = new DigestGuidIndexBuilder()) {
+            // Blocks of 4 pairs.  The shared digest's 10 GUIDs start part way through the fifth block, so finding
+            // them all means starting from the block before the first one beginning with the digest.
+            builder.setBlockPairs(4);
+            for (int i = 0; i < 18; i++) {
+                singleGuids.add(guid(random));
+                builder.add(digest(i), singleGuids.get(i));
+            }
+            for (int i = 0; i < 10; i++) {
+                sharedGuids.add(guid(random));
+                builder.add(SHARED, sharedGuids.get(i));
+            }
+            // Duplicate pairs are only indexed once
+            builder.add(SHARED, sharedGuids.get(0));
+            builder.add(digest(0).toLowerCase(), singleGuids.get(0));
+            assertEquals(28, builder.build(location));
+        }
+
+        try (DigestGuidIndex index = new DigestGuidIndex(location)) {
+            assertEquals(28, index.getPairCount());
+            List<String> found = index.lookup(SHARED);
+            assertEquals(10, found.size());
+            assertEquals(new HashSet<>(sharedGuids), new HashSet<>(found));
+            for (int i = 0; i < 18; i++) {
+                assertEquals(List.of(singleGuids.get(i)), index.lookup(digest(i)));
+            }
+
+            // Below the first block, between two digests, and above the last block
+            assertTrue(index.lookup(LOWEST).isEmpty());
+            assertTrue(index.lookup("10000080000000000000000000000001").isEmpty());
+            assertTrue(index.lookup(HIGHEST).isEmpty());
+        }
+    }
+
+    @Test
+    public void LookupAfterMergingRuns() throws Exception {
+        SplittableRandom random = new SplittableRandom(5);
+        File location = new File(tempDirectory, "merged.idx");
+        File runDirectory = new File(tempDirectory, "runs");
+        assertTrue(runDirectory.mkdirs());
+        int pairs = 70_000;
+        String[] digests = new String[pairs];
+        String[] guids = new String[pairs];
+
+        try (DigestGuidIndexBuilder builder = new DigestGuidIndexBuilder()) {
+            // The smallest run holds 1024 pairs, so this merges over 64 runs in more than one pass
+            builder.setRunPairs(0);
+            builder.setTempDirectory(runDirectory);
+            for (int i = 0; i < pairs; i++) {
+                digests[i] = String.format("%016X%016X", random.nextLong(), (long) (i % 50_000));
+                guids[i] = guid(random);
+                builder.add(digests[i], guids[i]);
+            }
+            assertEquals(pairs, builder.build(location));
+        }
+
+        try (DigestGuidIndex index = new DigestGuidIndex(location)) {
+            assertEquals(pairs, index.getPairCount());
+            for (int i = 0; i < pairs; i += 97) {
+                assertTrue(index.lookup(digests[i]).contains(guids[i]));
+            }
+        }
+        assertEquals(0, runDirectory.list().length);
+    }
+
+    @Test
+    public void EmptyIndex() throws Exception {
+        File location = new File(tempDirectory, "empty.idx");
+        try (DigestGuidIndexBuilder builder = new DigestGuidIndexBuilder()) {
+            assertEquals(0, builder.build(location));
+        }
+        try (DigestGuidIndex index = new DigestGuidIndex(location)) {
+            assertEquals(0, index.getPairCount());
+            assertTrue(index.lookup(LOWEST).isEmpty());
+            assertTrue(index.lookup(HIGHEST).isEmpty());
+        }
+    }
+
+    @Test
+    public void RejectsFileOfWrongSize() throws Exception {
+        File location = new File(tempDirectory, "resized.idx");
+        try (DigestGuidIndexBuilder builder = new DigestGuidIndexBuilder()) {
+            builder.add(SHARED, guid(new SplittableRandom(1)));
+            builder.build(location);
+        }
+        long length = location.length();
+
+        try (FileOutputStream output = new FileOutputStream(location, true)) {
+            output.write(0);
+        }
+        assertThrows(IOException.class, () -> new DigestGuidIndex(location));
+
+        try (RandomAccessFile file = new RandomAccessFile(location, "rw")) {
+            file.setLength(length - 1);
+        }
+        assertThrows(IOException.class, () -> new DigestGuidIndex(location));
+    }
+}
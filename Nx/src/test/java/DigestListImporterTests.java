@@ -0,0 +1,204 @@
+import com.nuix.nx.digest.DigestListImporter;
+import com.nuix.nx.digest.DigestSet;
+import com.nuix.nx.digest.MappedDigestList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestListImporterTests {
+    private static final String A = "00000000000000000000000000000001";
+    private static final String B = "7F000000000000000000000000000002";
+    private static final String C = "80000000000000000000000000000003";
+
+    @TempDir
+    File tempDirectory;
+
+    private File writeLines(String name, String... lines) throws IOException {
+        File location = new File(tempDirectory, name);
+        Files.write(location.toPath(), List.of(lines), StandardCharsets.UTF_8);
+        return location;
+    }
+
+    private static void assertListHolds(File location, String... md5s) throws IOException {
+        try (MappedDigestList list = new MappedDigestList(location)) {
+            assertEquals(md5s.length, list.getDigestCount());
+            for (String md5 : md5s) {
+                assertTrue(list.contains(md5), md5);
+            }
+        }
+    }
+
+    @Test
+    public void ImportsColumnByIndex() throws Exception {
+        File input = writeLines("hashes.csv",
+                "first.txt," + A + ",10",
+                "second.txt," + B.toLowerCase() + ",20",
+                "",
+                "duplicate.txt," + A + ",30",
+                "short.txt,0123,40",
+                "nothex.txt,ZZ000000000000000000000000000002,50",
+                "missing.txt");
+        File output = new File(tempDirectory, "index.hash");
+
+        DigestListImporter importer = new DigestListImporter();
+        importer.setColumn(1);
+        assertEquals(2, importer.importFile(input, output));
+        assertListHolds(output, A, B);
+
+        // Blank lines are neither read as data nor invalid
+        assertEquals(7, importer.getLinesRead());
+        assertEquals(3, importer.getDigestsParsed());
+        assertEquals(3, importer.getInvalidLines());
+        assertEquals(2, importer.getDigestsWritten());
+    }
+
+    @Test
+    public void ImportsNamedColumnOfQuotedCsv() throws Exception {
+        // NSRL RDS style, quoted values which can contain the delimiter
+        File input = writeLines("NSRLFile.txt",
+                "\"SHA-1\",\"MD5\",\"FileName\"",
+                "\"AAAA\",\"" + C + "\",\"a, b.txt\"",
+                "\"BBBB\", \"" + A + "\" ,\"c.txt\"");
+        File output = new File(tempDirectory, "named.hash");
+
+        DigestListImporter importer = new DigestListImporter();
+        importer.setColumnName("md5");
+        assertEquals(2, importer.importFile(input, output));
+        assertListHolds(output, A, C);
+        assertEquals(2, importer.getLinesRead());
+        assertEquals(0, importer.getInvalidLines());
+
+        // Quoted delimiters do not split a field
+        input = writeLines("reordered.txt",
+                "\"FileName\",\"MD5\"",
+                "\"a, b.txt\",\"" + B + "\"");
+        assertEquals(1, importer.importFile(input, output));
+        assertListHolds(output, B);
+    }
+
+    @Test
+    public void HeaderRowIsSkipped() throws Exception {
+        File input = writeLines("tabbed.txt", "MD5\tName", A + "\ta.txt", B + "\tb.txt");
+        File output = new File(tempDirectory, "tabbed.hash");
+
+        DigestListImporter importer = new DigestListImporter();
+        importer.setDelimiter('\t');
+        importer.importFile(input, output);
+        // Without skipping it the header is an invalid line
+        assertEquals(3, importer.getLinesRead());
+        assertEquals(1, importer.getInvalidLines());
+
+        importer.setHasHeader(true);
+        assertEquals(2, importer.importFile(input, output));
+        assertListHolds(output, A, B);
+        assertEquals(2, importer.getLinesRead());
+        assertEquals(0, importer.getInvalidLines());
+    }
+
+    @Test
+    public void MissingNamedColumnFails() throws Exception {
+        File input = writeLines("hashes.csv", "SHA-1,FileName", "AAAA,a.txt");
+        File output = new File(tempDirectory, "missing.hash");
+        File runDirectory = new File(tempDirectory, "runs");
+        assertTrue(runDirectory.mkdirs());
+
+        DigestListImporter importer = new DigestListImporter();
+        importer.setColumnName("MD5");
+        importer.setTempDirectory(runDirectory);
+        assertThrows(IOException.class, () -> importer.importFile(input, output));
+        assertFalse(output.exists());
+        assertEquals(0, runDirectory.list().length);
+    }
+
+    @Test
+    public void FailedWriteFailsImport() throws Exception {
+        File input = new File(tempDirectory, "many.txt");
+        try (PrintWriter writer = new PrintWriter(input, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 20_000; i++) {
+                writer.println(String.format("%032X", i));
+            }
+        }
+        File output = new File(tempDirectory, "failed.hash");
+
+        // Run files cannot be created in a directory which does not exist
+        DigestListImporter importer = new DigestListImporter();
+        importer.setParallelism(2);
+        importer.setChunkLines(500);
+        importer.setMemoryBudget(0);
+        importer.setTempDirectory(new File(tempDirectory, "missing"));
+        assertThrows(IOException.class, () -> importer.importFile(input, output));
+        assertFalse(output.exists());
+    }
+
+    @Test
+    public void ParallelImportWithSpillsMatchesDigests() throws Exception {
+        SplittableRandom random = new SplittableRandom(13);
+        DigestSet expected = new DigestSet();
+        List<File> inputs = new ArrayList<>();
+        for (int f = 0; f < 2; f++) {
+            File input = new File(tempDirectory, "part" + f + ".txt");
+            try (PrintWriter writer = new PrintWriter(input, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 30_000; i++) {
+                    // Repeat values so duplicates occur within and across files
+                    long high = random.nextInt(20_000);
+                    long low = random.nextLong();
+                    if (random.nextInt(3) == 0) {
+                        low = high;
+                    }
+                    writer.println(String.format("%016X%016X", high, low));
+                    expected.add(high, low);
+                }
+            }
+            inputs.add(input);
+        }
+        File output = new File(tempDirectory, "parallel.hash");
+        File runDirectory = new File(tempDirectory, "runs");
+        assertTrue(runDirectory.mkdirs());
+
+        List<long[]> progress = new ArrayList<>();
+        DigestListImporter importer = new DigestListImporter();
+        importer.setParallelism(4);
+        importer.setChunkLines(1000);
+        // The smallest budget holds 1024 digests, so the writer spills many runs while chunks are still being parsed
+        importer.setMemoryBudget(0);
+        importer.setTempDirectory(runDirectory);
+        importer.setProgressCallback((lines, digests, invalid, bytesRead, totalBytes, linesPerSecond) ->
+                progress.add(new long[]{lines, digests, invalid, bytesRead, totalBytes}));
+        assertEquals(expected.size(), importer.importFiles(inputs, output));
+
+        long[] sorted = expected.toSortedArray();
+        try (MappedDigestList list = new MappedDigestList(output)) {
+            assertEquals(expected.size(), list.getDigestCount());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(i, list.indexOf(sorted[i * 2], sorted[i * 2 + 1]));
+            }
+        }
+        assertEquals(0, runDirectory.list().length);
+
+        // The final report covers everything that was read
+        long totalBytes = inputs.get(0).length() + inputs.get(1).length();
+        long[] last = progress.get(progress.size() - 1);
+        assertEquals(60_000, last[0]);
+        assertEquals(60_000, last[1]);
+        assertEquals(0, last[2]);
+        assertEquals(totalBytes, last[3]);
+        assertEquals(totalBytes, last[4]);
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i - 1)[0] <= progress.get(i)[0]);
+            assertTrue(progress.get(i - 1)[3] <= progress.get(i)[3]);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import com.nuix.nx.digest.DigestAlgorithm;
+import com.nuix.nx.digest.DigestHelper;
+import com.nuix.nx.digest.DigestListOperations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestListOperationsTests {
+    private static final String A = "00000000000000000000000000000001";
+    private static final String B = "7F000000000000000000000000000002";
+    private static final String C = "80000000000000000000000000000003";
+    private static final String D = "FF000000000000000000000000000004";
+
+    @TempDir
+    File tempDirectory;
+
+    private File saveList(String name, String... md5s) throws Exception {
+        DigestHelper helper = new DigestHelper();
+        helper.addAllMd5Strings(List.of(md5s));
+        File location = new File(tempDirectory, name + ".hash");
+        helper.saveDigestList(location);
+        return location;
+    }
+
+    private DigestHelper loadList(File location) throws Exception {
+        DigestHelper helper = new DigestHelper();
+        helper.loadDigestList(location);
+        return helper;
+    }
+
+    @Test
+    public void SetOperations() throws Exception {
+        File first = saveList("first", A, B, C);
+        File second = saveList("second", B, C, D);
+        File third = saveList("third", C, D);
+
+        File union = new File(tempDirectory, "union.hash");
+        assertEquals(4, DigestListOperations.union(List.of(first, second, third), union));
+
+        File intersection = new File(tempDirectory, "intersection.hash");
+        assertEquals(1, DigestListOperations.intersection(List.of(first, second, third), intersection));
+        assertTrue(loadList(intersection).currentlyContains(C));
+
+        File difference = new File(tempDirectory, "difference.hash");
+        assertEquals(1, DigestListOperations.difference(first, List.of(second, third), difference));
+        assertTrue(loadList(difference).currentlyContains(A));
+
+        File symmetricDifference = new File(tempDirectory, "symmetric.hash");
+        assertEquals(2, DigestListOperations.symmetricDifference(List.of(first, second), symmetricDifference));
+        DigestHelper symmetric = loadList(symmetricDifference);
+        assertTrue(symmetric.currentlyContains(A));
+        assertTrue(symmetric.currentlyContains(D));
+        assertFalse(symmetric.currentlyContains(B));
+    }
+
+    @Test
+    public void Sha1ListsRoundTrip() throws Exception {
+        String sha1 = "00112233445566778899AABBCCDDEEFF00112233";
+        DigestHelper helper = new DigestHelper(DigestAlgorithm.SHA1);
+        helper.addAllDigestStrings(List.of(sha1, "FF112233445566778899AABBCCDDEEFF00112233"));
+        File sha1List = new File(tempDirectory, "sha1.hash");
+        assertEquals(2, helper.saveDigestList(sha1List));
+        assertEquals(15 + 2 * 20, sha1List.length());
+
+        DigestHelper loaded = DigestHelper.createFromExistingDigestLists(List.of(sha1List));
+        assertEquals(DigestAlgorithm.SHA1, loaded.getAlgorithm());
+        assertTrue(loaded.currentlyContains(sha1));
+
+        // Lists of different algorithms cannot be combined
+        File md5List = saveList("md5", A);
+        assertThrows(IOException.class, () -> DigestListOperations.union(List.of(md5List, sha1List), new File(tempDirectory, "mixed.hash")));
+    }
+
+    @Test
+    public void AppendToExistingList() throws Exception {
+        File list = saveList("existing", B, C);
+
+        DigestHelper delta = new DigestHelper();
+        delta.addAllMd5Strings(List.of(A, C, D));
+        assertEquals(2, delta.appendToDigestList(list));
+
+        DigestHelper appended = loadList(list);
+        assertEquals(4, appended.getDistinctDigestCount());
+        assertTrue(appended.currentlyContains(A));
+        assertTrue(appended.currentlyContains(D));
+        assertEquals(1, tempDirectory.list().length);
+
+        DigestHelper sha1 = new DigestHelper(DigestAlgorithm.SHA1);
+        sha1.addAllDigestStrings(List.of("00112233445566778899AABBCCDDEEFF00112233"));
+        assertThrows(IOException.class, () -> sha1.appendToDigestList(list));
+        assertEquals(1, tempDirectory.list().length);
+    }
+}
@@ -0,0 +1,140 @@
+import com.google.gson.Gson;
+import com.nuix.nx.digest.DigestHelper;
+import com.nuix.nx.digest.DigestListOverlapReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestListOverlapReportTests {
+    @TempDir
+    File tempDirectory;
+
+    private File saveList(String directory, String name, int... digests) throws Exception {
+        List<String> md5s = new ArrayList<>();
+        for (int digest : digests) {
+            md5s.add(String.format("%032X", digest));
+        }
+        DigestHelper helper = new DigestHelper();
+        helper.addAllMd5Strings(md5s);
+        File parent = new File(tempDirectory, directory);
+        parent.mkdirs();
+        File location = new File(parent, name + ".hash");
+        helper.saveDigestList(location);
+        return location;
+    }
+
+    /***
+     * NSRL {1,2,3,4}, the first Vendor list {3,4,5} and a second list also named Vendor {4,6}
+     */
+    private List<File> saveLists() throws Exception {
+        return List.of(
+                saveList("a", "NSRL", 1, 2, 3, 4),
+                saveList("a", "Vendor", 3, 4, 5),
+                saveList("b", "Vendor", 4, 6));
+    }
+
+    private static BitSet membership(int... lists) {
+        BitSet membership = new BitSet();
+        for (int list : lists) {
+            membership.set(list);
+        }
+        return membership;
+    }
+
+    @Test
+    public void CountsOverlaps() throws Exception {
+        List<long[]> progress = new ArrayList<>();
+        File membershipCsv = new File(tempDirectory, "membership.csv");
+        DigestListOverlapReport report = DigestListOverlapReport.compute(saveLists(), membershipCsv,
+                (current, total) -> progress.add(new long[]{current, total}));
+
+        assertEquals(3, report.getListCount());
+        assertEquals("Vendor", report.getListName(2));
+        assertEquals(6, report.getUnionCount());
+        assertArrayEquals(new long[]{4, 3, 2}, new long[]{report.getDistinctCount(0), report.getDistinctCount(1), report.getDistinctCount(2)});
+        assertArrayEquals(new long[]{2, 1, 1}, new long[]{report.getUniqueCount(0), report.getUniqueCount(1), report.getUniqueCount(2)});
+
+        // The matrix is symmetric with the distinct counts along its diagonal
+        long[][] expected = new long[][]{{4, 2, 1}, {2, 3, 1}, {1, 1, 2}};
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected[i][j], report.getOverlapCount(i, j));
+            }
+        }
+
+        Map<BitSet, Long> patterns = report.getMembershipPatternCounts();
+        assertEquals(5, patterns.size());
+        assertEquals(membership(0), patterns.keySet().iterator().next());
+        assertEquals(2, (long) patterns.get(membership(0)));
+        assertEquals(1, (long) patterns.get(membership(0, 1)));
+        assertEquals(1, (long) patterns.get(membership(0, 1, 2)));
+        assertEquals(1, (long) patterns.get(membership(1)));
+        assertEquals(1, (long) patterns.get(membership(2)));
+
+        List<String> rows = Files.readAllLines(membershipCsv.toPath(), StandardCharsets.UTF_8);
+        assertEquals(7, rows.size());
+        assertEquals("Digest,Lists,Membership", rows.get(0));
+        assertEquals(String.format("%032X", 4) + ",3,111", rows.get(4));
+        assertEquals(String.format("%032X", 6) + ",1,001", rows.get(6));
+
+        long[] last = progress.get(progress.size() - 1);
+        assertArrayEquals(new long[]{9, 9}, last);
+    }
+
+    @Test
+    public void WritesCsv() throws Exception {
+        DigestListOverlapReport report = DigestListOverlapReport.compute(saveLists());
+        File location = new File(tempDirectory, "overlap.csv");
+        report.writeCsv(location);
+        assertEquals(List.of(
+                "List,Distinct,Unique,NSRL,Vendor,Vendor",
+                "NSRL,4,2,4,2,1",
+                "Vendor,3,1,2,3,1",
+                "Vendor,2,1,1,1,2"), Files.readAllLines(location.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void WritesJsonReferringToListsByIndex() throws Exception {
+        List<File> lists = saveLists();
+        DigestListOverlapReport report = DigestListOverlapReport.compute(lists);
+        File location = new File(tempDirectory, "overlap.json");
+        report.writeJson(location);
+        Map<String, Object> json = new Gson().fromJson(Files.readString(location.toPath(), StandardCharsets.UTF_8), Map.class);
+
+        assertEquals(6.0, json.get("unionCount"));
+        List<Map<String, Object>> listEntries = (List<Map<String, Object>>) json.get("lists");
+        assertEquals(3, listEntries.size());
+        // Both lists named Vendor can still be told apart by index and path
+        Map<String, Object> second = listEntries.get(1);
+        assertEquals(1.0, second.get("index"));
+        assertEquals("Vendor", second.get("name"));
+        assertEquals(lists.get(1).getAbsolutePath(), second.get("path"));
+        assertEquals(3.0, second.get("distinctCount"));
+        assertEquals(1.0, second.get("uniqueCount"));
+        List<Map<String, Object>> overlaps = (List<Map<String, Object>>) second.get("overlaps");
+        assertEquals(2, overlaps.size());
+        assertEquals(0.0, overlaps.get(0).get("index"));
+        assertEquals(2.0, overlaps.get(0).get("digestCount"));
+        assertEquals(2.0, overlaps.get(1).get("index"));
+        assertEquals(1.0, overlaps.get(1).get("digestCount"));
+
+        List<Map<String, Object>> patterns = (List<Map<String, Object>>) json.get("membershipPatterns");
+        assertEquals(5, patterns.size());
+        assertEquals(List.of(0.0), patterns.get(0).get("lists"));
+        assertEquals(2.0, patterns.get(0).get("digestCount"));
+        assertTrue(patterns.stream().anyMatch(pattern -> pattern.get("lists").equals(List.of(0.0, 1.0, 2.0))
+                && pattern.get("names").equals(List.of("NSRL", "Vendor", "Vendor"))));
+    }
+}
@@ -0,0 +1,136 @@
+import com.nuix.nx.digest.DigestListWriter;
+import com.nuix.nx.digest.DigestSet;
+import com.nuix.nx.digest.MappedDigestList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestListWriterTests {
+    @TempDir
+    File tempDirectory;
+
+    private File createDirectory(String name) {
+        File directory = new File(tempDirectory, name);
+        assertTrue(directory.mkdirs());
+        return directory;
+    }
+
+    /***
+     * Checks the list holds exactly the digests of the set, in sorted order
+     */
+    private void assertListMatches(DigestSet expected, File location) throws IOException {
+        long[] sorted = expected.toSortedArray();
+        try (MappedDigestList list = new MappedDigestList(location)) {
+            assertEquals(expected.size(), list.getDigestCount());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(i, list.indexOf(sorted[i * 2], sorted[i * 2 + 1]));
+            }
+        }
+    }
+
+    @Test
+    public void SpilledRunsAreMergedInPasses() throws Exception {
+        File runDirectory = createDirectory("runs");
+        File location = new File(tempDirectory, "merged.hash");
+        DigestSet expected = new DigestSet();
+
+        // The smallest budget holds 1024 digests, so this spills well over the 64 runs merged at once
+        SplittableRandom random = new SplittableRandom(7);
+        long[] recent = new long[200];
+        try (DigestListWriter writer = new DigestListWriter(location, 0, runDirectory)) {
+            for (int i = 0; i < 100_000; i++) {
+                long high;
+                long low;
+                if (i >= recent.length && random.nextInt(4) == 0) {
+                    // Repeat a recent digest so duplicates occur both within and across runs
+                    int repeat = random.nextInt(recent.length / 2) * 2;
+                    high = recent[repeat];
+                    low = recent[repeat + 1];
+                } else {
+                    high = random.nextLong();
+                    low = random.nextLong();
+                }
+                recent[(i * 2) % recent.length] = high;
+                recent[(i * 2) % recent.length + 1] = low;
+                writer.add(high, low);
+                expected.add(high, low);
+            }
+            assertTrue(writer.getRunCount() > 64);
+            assertEquals(expected.size(), writer.finish());
+        }
+
+        assertListMatches(expected, location);
+        assertEquals(0, runDirectory.list().length);
+    }
+
+    @Test
+    public void UnspilledBufferIsWrittenDirectly() throws Exception {
+        File location = new File(tempDirectory, "direct.hash");
+        DigestSet expected = new DigestSet();
+        SplittableRandom random = new SplittableRandom(11);
+
+        // Enough digests to grow the initial buffer several times without reaching the default budget
+        try (DigestListWriter writer = new DigestListWriter(location)) {
+            for (int i = 0; i < 10_000; i++) {
+                long[] digest = new long[]{random.nextLong(), random.nextLong()};
+                writer.add(digest, 0);
+                expected.add(digest, 0);
+            }
+            assertEquals(0, writer.getRunCount());
+            assertEquals(10_000, writer.finish());
+        }
+
+        assertListMatches(expected, location);
+    }
+
+    @Test
+    public void CloseWithoutFinishDiscards() throws Exception {
+        File runDirectory = createDirectory("runs");
+        File location = new File(tempDirectory, "discarded.hash");
+
+        try (DigestListWriter writer = new DigestListWriter(location, 0, runDirectory)) {
+            for (int i = 0; i < 5000; i++) {
+                writer.add(i, i);
+            }
+            assertTrue(writer.getRunCount() > 0);
+        }
+        assertFalse(location.exists());
+        assertEquals(0, runDirectory.list().length);
+
+        DigestListWriter writer = new DigestListWriter(location, 0, runDirectory);
+        for (int i = 0; i < 5000; i++) {
+            writer.add(i, i);
+        }
+        writer.discard();
+        assertEquals(0, writer.finish());
+        assertFalse(location.exists());
+        assertEquals(0, runDirectory.list().length);
+    }
+
+    @Test
+    public void FailedSpillFailsWriter() throws Exception {
+        // Run files cannot be created in a directory which does not exist
+        File missingDirectory = new File(tempDirectory, "missing");
+        File location = new File(tempDirectory, "failed.hash");
+
+        DigestListWriter writer = new DigestListWriter(location, 0, missingDirectory);
+        for (int i = 0; i < 1024; i++) {
+            writer.add(i, i);
+        }
+        assertThrows(IOException.class, () -> writer.add(1024, 1024));
+
+        // Digests were lost with the run, so the writer must not go on to write an incomplete list
+        assertThrows(IllegalStateException.class, () -> writer.add(1025, 1025));
+        assertThrows(IllegalStateException.class, writer::finish);
+        writer.close();
+        assertFalse(location.exists());
+    }
+}
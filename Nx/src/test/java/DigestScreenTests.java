@@ -0,0 +1,124 @@
+import com.nuix.nx.digest.DigestBloomFilter;
+import com.nuix.nx.digest.DigestHelper;
+import com.nuix.nx.digest.DigestScreen;
+import com.nuix.nx.digest.MappedDigestList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestScreenTests {
+    private static final String A = "00000000000000000000000000000001";
+    private static final String B = "7F000000000000000000000000000002";
+    private static final String C = "80000000000000000000000000000003";
+    private static final String MISSING = "FF000000000000000000000000000004";
+
+    @TempDir
+    File tempDirectory;
+
+    private File saveList(String... md5s) throws Exception {
+        DigestHelper helper = new DigestHelper();
+        helper.addAllMd5Strings(List.of(md5s));
+        File location = new File(tempDirectory, "screened.hash");
+        helper.saveDigestList(location);
+        return location;
+    }
+
+    private static void assertScreens(File digestList, String present, String absent) throws Exception {
+        try (DigestScreen screen = DigestScreen.open(digestList)) {
+            assertTrue(screen.contains(present));
+            assertFalse(screen.contains(absent));
+            assertEquals(1, screen.getHitCount());
+            assertEquals(1, screen.getMissCount());
+        }
+    }
+
+    @Test
+    public void SavedFilterIsReused() throws Exception {
+        File digestList = saveList(A, B);
+        File filterLocation = DigestBloomFilter.getFilterLocation(digestList);
+        assertScreens(digestList, A, MISSING);
+        assertTrue(filterLocation.exists());
+        assertNotNull(DigestBloomFilter.load(filterLocation, digestList));
+
+        // A filter which is reused is not written again
+        assertTrue(filterLocation.setLastModified(1000));
+        assertScreens(digestList, B, MISSING);
+        assertEquals(1000, filterLocation.lastModified());
+    }
+
+    @Test
+    public void StaleFilterIsRebuilt() throws Exception {
+        File digestList = saveList(A, B);
+        File filterLocation = DigestBloomFilter.getFilterLocation(digestList);
+        assertScreens(digestList, A, C);
+
+        // Adding to the list changes its length
+        DigestHelper delta = new DigestHelper();
+        delta.addAllMd5Strings(List.of(C));
+        delta.appendToDigestList(digestList);
+        assertNull(DigestBloomFilter.load(filterLocation, digestList));
+        assertScreens(digestList, C, MISSING);
+        assertNotNull(DigestBloomFilter.load(filterLocation, digestList));
+
+        // Replacing the list with one of the same length only changes its modification time
+        assertTrue(digestList.setLastModified(digestList.lastModified() - 60_000));
+        assertNull(DigestBloomFilter.load(filterLocation, digestList));
+        assertScreens(digestList, C, MISSING);
+        assertNotNull(DigestBloomFilter.load(filterLocation, digestList));
+    }
+
+    @Test
+    public void UnreadableFilterIsRebuilt() throws Exception {
+        File digestList = saveList(A, B);
+        File filterLocation = DigestBloomFilter.getFilterLocation(digestList);
+        try (FileOutputStream output = new FileOutputStream(filterLocation)) {
+            output.write(new byte[]{1, 2, 3});
+        }
+        assertScreens(digestList, A, MISSING);
+        assertNotNull(DigestBloomFilter.load(filterLocation, digestList));
+    }
+
+    @Test
+    public void FilterWhichCannotBeSavedIsStillUsed() throws Exception {
+        File digestList = saveList(A, B);
+        // Nothing can be written where a directory is in the way
+        File filterLocation = DigestBloomFilter.getFilterLocation(digestList);
+        assertTrue(new File(filterLocation, "blocked").mkdirs());
+        assertScreens(digestList, A, MISSING);
+        assertTrue(filterLocation.isDirectory());
+    }
+
+    @Test
+    public void WrongLengthDigestIsAMiss() throws Exception {
+        File digestList = saveList(A, B);
+        // The first 40 characters of a SHA-1 digest start with an MD5 which is present
+        String sha1 = A + "00000000";
+        String truncated = A.substring(0, 31);
+
+        try (MappedDigestList list = new MappedDigestList(digestList)) {
+            assertTrue(list.contains(A));
+            assertFalse(list.contains(sha1));
+            assertFalse(list.contains(truncated));
+            assertFalse(list.contains(""));
+            assertFalse(list.contains((String) null));
+        }
+
+        try (DigestScreen screen = DigestScreen.open(digestList)) {
+            assertFalse(screen.contains(sha1));
+            assertFalse(screen.contains(truncated));
+            assertFalse(screen.contains(""));
+            assertFalse(screen.contains((String) null));
+            assertEquals(0, screen.getHitCount());
+            assertEquals(4, screen.getMissCount());
+        }
+    }
+}
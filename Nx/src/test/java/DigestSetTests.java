@@ -0,0 +1,76 @@
+import com.nuix.nx.digest.DigestSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DigestSetTests {
+    @Test
+    public void ValueBasedEquality() {
+        // Two distinct array instances with the same content should be treated as the same digest
+        byte[] first = new byte[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+        byte[] second = first.clone();
+
+        DigestSet digestSet = new DigestSet();
+        assertTrue(digestSet.add(first));
+        assertFalse(digestSet.add(second));
+        assertEquals(1, digestSet.size());
+        assertTrue(digestSet.contains(second.clone()));
+
+        // All zero digest is tracked separately from empty table slots
+        assertFalse(digestSet.contains(new byte[16]));
+        assertTrue(digestSet.add(new byte[16]));
+        assertTrue(digestSet.contains(new byte[16]));
+        assertEquals(2, digestSet.size());
+    }
+
+    @Test
+    public void SortedOrderIsUnsigned() {
+        DigestSet digestSet = new DigestSet();
+        digestSet.add(0xFF00000000000000L, 0L);
+        digestSet.add(0x0100000000000000L, 5L);
+        digestSet.add(0x0100000000000000L, -1L);
+        long[] sorted = digestSet.toSortedArray();
+        assertEquals(0x0100000000000000L, sorted[0]);
+        assertEquals(5L, sorted[1]);
+        assertEquals(-1L, sorted[3]);
+        assertEquals(0xFF00000000000000L, sorted[4]);
+    }
+
+    @Test
+    public void MemoryFootprintAt50Million() {
+        int count = 50_000_000;
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        DigestSet digestSet = new DigestSet(count);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < count; i++) {
+            digestSet.add(random.nextLong(), random.nextLong());
+        }
+
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        long footprint = digestSet.getMemoryFootprint();
+        System.out.println(String.format("DigestSet with %,d digests: table %,d bytes (%.1f bytes/digest), heap delta %,d bytes",
+                count, footprint, footprint / (double) count, usedAfter - usedBefore));
+
+        assertEquals(count, digestSet.size());
+        // 16 bytes of payload per digest plus open addressing slack, HashSet<byte[]> needs well over 80
+        assertTrue(footprint / (double) count <= 24.0);
+
+        // Replay the same sequence to verify membership and that re-adding does not grow the set
+        random = new SplittableRandom(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            long high = random.nextLong();
+            long low = random.nextLong();
+            assertTrue(digestSet.contains(high, low));
+            assertFalse(digestSet.add(high, low));
+        }
+        assertEquals(count, digestSet.size());
+    }
+}
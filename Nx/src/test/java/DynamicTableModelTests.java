@@ -0,0 +1,318 @@
+import com.nuix.nx.controls.models.DynamicTableModel;
+import com.nuix.nx.controls.models.DynamicTableValueCallback;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.SwingUtilities;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DynamicTableModelTests {
+    // Records are String arrays, each column displays the matching element and editing a column replaces it
+    private static final DynamicTableValueCallback arrayValues = (record, column, setValue, value) -> {
+        String[] values = (String[]) record;
+        if (setValue) {
+            values[column] = (String) value;
+        }
+        return values[column];
+    };
+
+    private static List<Object> createRecords(String... firstColumnValues) {
+        List<Object> records = new ArrayList<>();
+        for (String value : firstColumnValues) {
+            records.add(new String[]{value, ""});
+        }
+        return records;
+    }
+
+    private static DynamicTableModel createModel(List<Object> records, DynamicTableValueCallback callback) throws Exception {
+        DynamicTableModel[] model = new DynamicTableModel[1];
+        SwingUtilities.invokeAndWait(() -> model[0] = new DynamicTableModel(List.of("First", "Second"), records, callback, false));
+        return model[0];
+    }
+
+    private static List<String> displayedFirstColumn(DynamicTableModel model) throws Exception {
+        List<String> displayed = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            for (int row = 0; row < model.getRowCount(); row++) {
+                displayed.add((String) model.getValueAt(row, 1));
+            }
+        });
+        return displayed;
+    }
+
+    private static void waitForFiltering(DynamicTableModel model) throws Exception {
+        boolean[] filtering = new boolean[]{true};
+        long deadline = System.currentTimeMillis() + 10000;
+        while (filtering[0]) {
+            assertTrue(System.currentTimeMillis() < deadline, "Filtering did not finish");
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> filtering[0] = model.isFiltering());
+        }
+    }
+
+    private static void assertFiltering(DynamicTableModel model, boolean expected) throws Exception {
+        boolean[] filtering = new boolean[1];
+        SwingUtilities.invokeAndWait(() -> filtering[0] = model.isFiltering());
+        assertEquals(expected, filtering[0]);
+    }
+
+    @Test
+    public void EditDuringFilteringIsSeenByNarrowedFilter() throws Exception {
+        List<Object> records = createRecords("zzz", "ab one", "ab two", "other");
+        Object edited = records.get(0);
+
+        // Hold the background filtering once it has read the old value of the record about to be edited
+        CountDownLatch valueRead = new CountDownLatch(1);
+        CountDownLatch editStarted = new CountDownLatch(1);
+        DynamicTableValueCallback callback = (record, column, setValue, value) -> {
+            Object result = arrayValues.interact(record, column, setValue, value);
+            if (record == edited && !setValue && !SwingUtilities.isEventDispatchThread() && valueRead.getCount() > 0) {
+                valueRead.countDown();
+                try {
+                    editStarted.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return result;
+        };
+        DynamicTableModel model = createModel(records, callback);
+        model.setColumnEditable(1);
+
+        SwingUtilities.invokeAndWait(() -> model.setFilterAsync("ab", null));
+        assertTrue(valueRead.await(10, TimeUnit.SECONDS));
+        // The edit waits for the filtering to finish reading its chunk of records
+        SwingUtilities.invokeLater(() -> model.setValueAt("xabcx", 0, 2));
+        Thread.sleep(200);
+        editStarted.countDown();
+        waitForFiltering(model);
+        assertEquals(List.of("zzz", "ab one", "ab two"), displayedFirstColumn(model));
+
+        // Narrowing must consider the edited record even though it did not match when the filtering started
+        SwingUtilities.invokeAndWait(() -> model.setFilter("abc"));
+        assertEquals(List.of("zzz"), displayedFirstColumn(model));
+    }
+
+    /***
+     * Holds the first value read off the EDT until released, keeping a background filtering in progress
+     */
+    private static class HeldCallback implements DynamicTableValueCallback {
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Object interact(Object record, int column, boolean setValue, Object value) {
+            if (!SwingUtilities.isEventDispatchThread() && held.getCount() > 0) {
+                held.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return arrayValues.interact(record, column, setValue, value);
+        }
+    }
+
+    /***
+     * Releases a held filtering and gives it time to finish and reach the EDT
+     */
+    private static void releaseAndSettle(HeldCallback callback) throws Exception {
+        callback.release.countDown();
+        Thread.sleep(300);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        SwingUtilities.invokeAndWait(() -> {
+        });
+    }
+
+    @Test
+    public void SupersededFilteringIsNeverDisplayed() throws Exception {
+        HeldCallback callback = new HeldCallback();
+        DynamicTableModel model = createModel(createRecords("one a", "two a", "one b", "three"), callback);
+        AtomicInteger firstFinished = new AtomicInteger();
+        AtomicInteger secondFinished = new AtomicInteger();
+
+        SwingUtilities.invokeAndWait(() -> model.setFilterAsync("one", firstFinished::incrementAndGet));
+        assertTrue(callback.held.await(10, TimeUnit.SECONDS));
+        // The callback is not thread safe, so the second filtering waits for the held one to finish reading
+        SwingUtilities.invokeAndWait(() -> model.setFilterAsync("two", secondFinished::incrementAndGet));
+        assertEquals(4, model.getRowCount());
+        releaseAndSettle(callback);
+        waitForFiltering(model);
+
+        assertEquals(List.of("two a"), displayedFirstColumn(model));
+        assertEquals(0, firstFinished.get());
+        assertEquals(1, secondFinished.get());
+    }
+
+    @Test
+    public void CancelledFilteringSkipsWhenFinished() throws Exception {
+        HeldCallback callback = new HeldCallback();
+        DynamicTableModel model = createModel(createRecords("one a", "two a", "one b", "three"), callback);
+        AtomicInteger finished = new AtomicInteger();
+
+        SwingUtilities.invokeAndWait(() -> model.setFilterAsync("one", finished::incrementAndGet));
+        assertTrue(callback.held.await(10, TimeUnit.SECONDS));
+        assertFiltering(model, true);
+        // Filtering on the EDT cancels the held filtering, then waits for it to finish reading
+        SwingUtilities.invokeLater(() -> model.setFilter("three"));
+        Thread.sleep(200);
+        releaseAndSettle(callback);
+
+        assertFiltering(model, false);
+        assertEquals(List.of("three"), displayedFirstColumn(model));
+        assertEquals(0, finished.get());
+    }
+
+    @Test
+    public void RecordsChangedDuringFilteringLeaveConsistentView() throws Exception {
+        HeldCallback callback = new HeldCallback();
+        List<Object> records = createRecords("one a", "two a", "one b", "three");
+        DynamicTableModel model = createModel(records, callback);
+        AtomicInteger finished = new AtomicInteger();
+
+        // Adding a record waits for the held filtering to finish its chunk, then cancels it and displays every record
+        SwingUtilities.invokeAndWait(() -> model.setFilterAsync("one", finished::incrementAndGet));
+        assertTrue(callback.held.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeLater(() -> model.addRecord(new String[]{"one c", ""}));
+        Thread.sleep(200);
+        releaseAndSettle(callback);
+        assertEquals(List.of("one a", "two a", "one b", "three", "one c"), displayedFirstColumn(model));
+        assertFiltering(model, false);
+        assertEquals(0, finished.get());
+
+        // Replacing the records with fewer must not leave a view of rows which no longer exist
+        HeldCallback replacedCallback = new HeldCallback();
+        DynamicTableModel replaced = createModel(createRecords("one a", "two a", "one b", "three"), replacedCallback);
+        SwingUtilities.invokeAndWait(() -> replaced.setFilterAsync("one", finished::incrementAndGet));
+        assertTrue(replacedCallback.held.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeLater(() -> replaced.setRecords(createRecords("only")));
+        Thread.sleep(200);
+        releaseAndSettle(replacedCallback);
+        assertEquals(List.of("only"), displayedFirstColumn(replaced));
+        assertEquals(0, finished.get());
+    }
+
+    @Test
+    public void ScriptCallbackIsNotCalledFromPoolThreads() throws Exception {
+        // Enough records for a thread safe filter provider to be run in parallel
+        String[] values = new String[50_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "record " + i;
+        }
+        AtomicInteger poolThreadCalls = new AtomicInteger();
+        DynamicTableValueCallback callback = (record, column, setValue, value) -> {
+            if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+                poolThreadCalls.incrementAndGet();
+            }
+            return arrayValues.interact(record, column, setValue, value);
+        };
+        DynamicTableModel model = createModel(createRecords(values), callback);
+
+        // An enabled cache which has not been filled still calls the callback for every value
+        model.setValueCacheEnabled(true);
+        SwingUtilities.invokeAndWait(() -> model.setFilter("record 4999"));
+        assertEquals(List.of("record 4999", "record 49990", "record 49991", "record 49992", "record 49993",
+                "record 49994", "record 49995", "record 49996", "record 49997", "record 49998", "record 49999"),
+                displayedFirstColumn(model));
+        assertEquals(0, poolThreadCalls.get());
+        SwingUtilities.invokeAndWait(model::checkDisplayedRecords);
+        assertEquals(11, model.getCheckedRecordHashes().size());
+        assertEquals(0, poolThreadCalls.get());
+
+        // Once every value is cached the callback is no longer needed
+        SwingUtilities.invokeAndWait(() -> model.preloadValueCache(false));
+        long misses = model.getValueCacheMisses();
+        SwingUtilities.invokeAndWait(() -> model.setFilter("record 1234"));
+        assertEquals(11, model.getRowCount());
+        assertEquals(misses, model.getValueCacheMisses());
+        assertEquals(0, poolThreadCalls.get());
+    }
+
+    /***
+     * Exposes record hashing to the tests
+     */
+    private static class HashingModel extends DynamicTableModel {
+        HashingModel(List<Object> records) {
+            super(List.of("First", "Second"), records, arrayValues, false);
+        }
+
+        String hash(Object record) {
+            return hashRecord(record);
+        }
+    }
+
+    /***
+     * Hashes a record the way record hashes were computed before fingerprinting was optimized, which saved
+     * settings still hold
+     */
+    private static String baselineHash(Object record) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        StringBuffer hashBuffer = new StringBuffer();
+        StringBuffer recordContent = new StringBuffer();
+        for (int i = 0; i < 2; i++) {
+            recordContent.append(arrayValues.interact(record, i, false, null).toString());
+        }
+        md.update(recordContent.toString().getBytes());
+        for (byte b : md.digest()) {
+            hashBuffer.append(String.format("%02x", b & 0xff));
+        }
+        return hashBuffer.toString();
+    }
+
+    @Test
+    public void RecordHashesMatchBaseline() throws Exception {
+        // Accented, currency, CJK and supplementary characters, some of which the default charset may not encode.
+        // Characters are picked one at a time so surrogates also appear unpaired.
+        char[] characters = "abcXYZ019 ,.\u00e9\u20ac\u00fc\u6f22\ud83d\ude00\ud800\udc00".toCharArray();
+        Random random = new Random(17);
+        List<Object> records = new ArrayList<>();
+        // Enough records to fingerprint them in parallel
+        for (int i = 0; i < 30_000; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(i % 500 == 0 ? 3000 : 20);
+            for (int c = 0; c < length; c++) {
+                value.append(characters[random.nextInt(characters.length)]);
+            }
+            // The separator keeps records distinct once their values are concatenated
+            records.add(new String[]{"#" + i + "|", value.toString()});
+        }
+        Set<String> expected = new HashSet<>();
+        for (Object record : records) {
+            expected.add(baselineHash(record));
+        }
+
+        HashingModel[] model = new HashingModel[1];
+        SwingUtilities.invokeAndWait(() -> model[0] = new HashingModel(records));
+        model[0].setValueCallbackThreadSafe(true);
+        for (int i = 0; i < records.size(); i += 101) {
+            assertEquals(baselineHash(records.get(i)), model[0].hash(records.get(i)));
+        }
+        SwingUtilities.invokeAndWait(model[0]::checkDisplayedRecords);
+        assertEquals(expected, model[0].getCheckedRecordHashes());
+
+        // Hashes saved the old way restore the same records
+        List<String> saved = new ArrayList<>();
+        for (int i = 0; i < records.size(); i += 3) {
+            saved.add(baselineHash(records.get(i)));
+        }
+        HashingModel restored = new HashingModel(records);
+        SwingUtilities.invokeAndWait(() -> restored.setCheckedRecordsFromHashes(saved));
+        assertEquals(saved.size(), restored.getCheckedValueCount());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i % 3 == 0, restored.isSelected(records.get(i)));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import com.nuix.nx.controls.models.DynamicTableTrigramIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DynamicTableTrigramIndexTests {
+    // A small alphabet with mixed case so trigrams repeat across many records
+    private static final char[] CHARACTERS = "abcABC \u00e9\u00c9".toCharArray();
+
+    private static String randomString(Random random, int maxLength) {
+        StringBuilder value = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            value.append(CHARACTERS[random.nextInt(CHARACTERS.length)]);
+        }
+        return value.toString();
+    }
+
+    private static String[] randomRecord(Random random) {
+        return new String[]{randomString(random, 12), randomString(random, 6)};
+    }
+
+    /***
+     * Finds the records with a value containing the substring, ignoring case, by checking every record
+     */
+    private static List<Integer> bruteForce(List<String[]> records, String substring) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            for (String value : records.get(i)) {
+                if (value.toLowerCase().contains(substring.toLowerCase())) {
+                    matches.add(i);
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /***
+     * Candidates must be ascending, valid and include every record which matches
+     */
+    private static void assertCandidatesCover(DynamicTableTrigramIndex index, List<String[]> records, Random random) {
+        assertEquals(records.size(), index.getRecordCount());
+        for (int q = 0; q < 50; q++) {
+            String substring = randomString(random, 5);
+            int[] candidates = index.candidates(substring);
+            if (substring.length() < 3) {
+                assertNull(candidates);
+                continue;
+            }
+            for (int i = 1; i < candidates.length; i++) {
+                assertTrue(candidates[i - 1] < candidates[i]);
+            }
+            List<Integer> candidateList = new ArrayList<>();
+            for (int candidate : candidates) {
+                assertTrue(candidate >= 0 && candidate < records.size());
+                candidateList.add(candidate);
+            }
+            assertTrue(candidateList.containsAll(bruteForce(records, substring)), "Candidates missed a match for " + substring);
+        }
+    }
+
+    @Test
+    public void CandidatesIncludeEveryMatch() {
+        Random random = new Random(23);
+        DynamicTableTrigramIndex index = new DynamicTableTrigramIndex();
+        List<String[]> records = new ArrayList<>();
+
+        for (int i = 0; i < 500; i++) {
+            records.add(randomRecord(random));
+            index.recordAdded(records.get(i));
+        }
+        assertCandidatesCover(index, records, random);
+
+        // Removals and edits anywhere in the list mixed with additions, checked against the records as they go
+        for (int round = 0; round < 200; round++) {
+            int target = random.nextInt(records.size());
+            switch (random.nextInt(3)) {
+                case 0:
+                    records.remove(target);
+                    index.recordRemoved(target);
+                    break;
+                case 1:
+                    records.set(target, randomRecord(random));
+                    index.recordChanged(target, records.get(target));
+                    break;
+                default:
+                    records.add(randomRecord(random));
+                    index.recordAdded(records.get(records.size() - 1));
+            }
+            if (round % 20 == 0) {
+                assertCandidatesCover(index, records, random);
+            }
+        }
+        assertCandidatesCover(index, records, random);
+    }
+
+    @Test
+    public void CandidatesIgnoreCaseAndValueBoundaries() {
+        DynamicTableTrigramIndex index = new DynamicTableTrigramIndex();
+        index.recordAdded(new String[]{"Hello", "World"});
+        index.recordAdded(new String[]{"hello world", ""});
+        index.recordAdded(new String[]{"lo", "wo"});
+
+        assertArrayEquals(new int[]{0, 1}, index.candidates("HELLO"));
+        // Trigrams never span two values, so only the record holding "lo w" in one value is a candidate
+        assertArrayEquals(new int[]{1}, index.candidates("lo w"));
+        assertArrayEquals(new int[0], index.candidates("xyz"));
+        assertNull(index.candidates("lo"));
+        assertNull(index.candidates(""));
+
+        // Removing a record shifts the records after it down
+        index.recordRemoved(0);
+        assertArrayEquals(new int[]{0}, index.candidates("hello"));
+        index.recordChanged(1, new String[]{"yellow", "low"});
+        assertArrayEquals(new int[]{0, 1}, index.candidates("llo"));
+        assertArrayEquals(new int[]{1}, index.candidates("low"));
+        assertArrayEquals(new int[0], index.candidates("wo "));
+
+        // Trigrams no record contains any longer are dropped
+        index.recordChanged(0, new String[]{"", ""});
+        index.recordRemoved(1);
+        assertEquals(0, index.getTrigramCount());
+    }
+}
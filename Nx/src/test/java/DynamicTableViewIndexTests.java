@@ -0,0 +1,82 @@
+import com.nuix.nx.controls.models.DynamicTableViewIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DynamicTableViewIndexTests {
+    /***
+     * Sorts the view's record indices with the JDK's stable object sort to compare against
+     */
+    private static int[] expectedSort(DynamicTableViewIndex view, int[] keys) {
+        return Arrays.stream(view.toArray()).boxed()
+                .sorted(Comparator.comparingInt(recordIndex -> keys[recordIndex]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void SortIsStableAroundInsertionCutoff() {
+        Random random = new Random(19);
+        // Runs shorter than 16 are insertion sorted, longer ones are split and merged
+        int[] sizes = new int[]{0, 1, 2, 15, 16, 17, 31, 32, 33, 63, 64, 65, 1000, 4099};
+        for (int size : sizes) {
+            // Few distinct keys so most records compare equal to others
+            int[] keys = new int[size * 2];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt(4);
+            }
+            DynamicTableViewIndex identity = DynamicTableViewIndex.identity(size);
+            assertArrayEquals(expectedSort(identity, keys), identity.sorted((a, b) -> Integer.compare(keys[a], keys[b])).toArray(), "Size " + size);
+
+            // Sorting a view which is not in record order keeps the view's order among equal records
+            int[] shuffled = new int[size + 3];
+            for (int i = 0; i < size; i++) {
+                shuffled[i] = i * 2 + random.nextInt(2);
+            }
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = swap;
+            }
+            DynamicTableViewIndex view = DynamicTableViewIndex.of(shuffled, size);
+            DynamicTableViewIndex sorted = view.sorted((a, b) -> Integer.compare(keys[a], keys[b]));
+            assertEquals(size, sorted.size());
+            assertFalse(sorted.isIdentity());
+            assertArrayEquals(expectedSort(view, keys), sorted.toArray(), "Size " + size);
+        }
+    }
+
+    @Test
+    public void SortingLeavesViewUnchanged() {
+        int[] recordIndices = new int[]{5, 3, 9, 1, 7, 0, 0};
+        DynamicTableViewIndex view = DynamicTableViewIndex.of(recordIndices, 5);
+        DynamicTableViewIndex sorted = view.sorted(Integer::compare);
+        assertArrayEquals(new int[]{1, 3, 5, 7, 9}, sorted.toArray());
+        assertArrayEquals(new int[]{5, 3, 9, 1, 7}, view.toArray());
+        assertArrayEquals(new int[]{5, 3, 9, 1, 7, 0, 0}, recordIndices);
+    }
+
+    @Test
+    public void RowsResolveToRecords() {
+        DynamicTableViewIndex identity = DynamicTableViewIndex.identity(3);
+        assertTrue(identity.isIdentity());
+        assertEquals(2, identity.getRecordIndex(2));
+        assertArrayEquals(new int[]{0, 1, 2}, identity.toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> identity.getRecordIndex(3));
+
+        // Entries past the size are not rows
+        DynamicTableViewIndex view = DynamicTableViewIndex.of(new int[]{4, 8, 15, 16}, 2);
+        assertEquals(8, view.getRecordIndex(1));
+        assertArrayEquals(new int[]{4, 8}, view.toArray());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getRecordIndex(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.getRecordIndex(-1));
+    }
+}